@@ -17,6 +17,7 @@
  */
 package org.apache.hdt.core;
 
+import org.apache.hdt.core.cluster.LocationStatusScheduler;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
 
@@ -48,6 +49,7 @@ public class Activator extends AbstractUIPlugin {
 	 * @see org.eclipse.ui.plugin.AbstractUIPlugin#stop(org.osgi.framework.BundleContext)
 	 */
 	public void stop(BundleContext context) throws Exception {
+		LocationStatusScheduler.shutdown();
 		plugin = null;
 		super.stop(context);
 	}
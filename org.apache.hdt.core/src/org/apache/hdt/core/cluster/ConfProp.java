@@ -80,6 +80,66 @@ public enum ConfProp {
    */
   PI_COLOCATE_MASTERS(true, "masters.colocate", "yes"),
 
+  /**
+   * Time in milliseconds during which the DFS browser trusts its cached
+   * metadata (file statuses and folder listings) for this location
+   */
+  PI_DFS_CACHE_TTL(true, "dfs.cache.ttl", "30000"),
+
+  /**
+   * Maximum number of file statuses kept in the DFS browser metadata cache
+   * of this location
+   */
+  PI_DFS_CACHE_SIZE(true, "dfs.cache.size", "100000"),
+
+  /**
+   * Maximum number of requests the DFS browser sends concurrently to this
+   * location
+   */
+  PI_DFS_CONCURRENT_REQUESTS(true, "dfs.concurrent.requests", "4"),
+
+  /**
+   * Number of concurrent streams used to download a single file spanning
+   * several blocks from this location (1 to download files sequentially)
+   */
+  PI_DFS_DOWNLOAD_STREAMS(true, "dfs.download.streams", "4"),
+
+  /**
+   * Number of files uploaded concurrently to this location
+   */
+  PI_DFS_UPLOAD_STREAMS(true, "dfs.upload.streams", "4"),
+
+  /**
+   * Maximum size in megabytes of the local copies of the files of this
+   * location opened in editors
+   */
+  PI_DFS_CONTENT_CACHE_SIZE(true, "dfs.content.cache.size", "512"),
+
+  /**
+   * Size in megabytes above which the DFS browser offers to copy data within
+   * this location with a DistCp job rather than through the workstation
+   */
+  PI_DFS_DISTCP_THRESHOLD(true, "dfs.distcp.threshold", "1024"),
+
+  /**
+   * Maximum number of folders a search of the DFS browser lists per second
+   * on this location
+   */
+  PI_DFS_SEARCH_RATE(true, "dfs.search.rate", "20"),
+
+  /**
+   * Time in milliseconds between two checks of a DFS folder watched for
+   * changes on this location, while the folder keeps changing
+   */
+  PI_DFS_WATCH_INTERVAL(true, "dfs.watch.interval", "5000"),
+
+  /**
+   * Maximum time in milliseconds between two checks of a DFS folder watched
+   * for changes on this location: the checks of an idle folder slow down
+   * until this interval
+   */
+  PI_DFS_WATCH_MAX_INTERVAL(true, "dfs.watch.max.interval", "120000"),
+
   /**
    * Property name for naming the job tracker (URI). This property is related
    * to {@link #PI_MASTER_HOST_NAME}
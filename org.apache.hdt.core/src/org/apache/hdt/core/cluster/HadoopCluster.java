@@ -34,7 +34,6 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hdt.core.Activator;
 import org.apache.hdt.core.cluster.ConfProp;
 import org.apache.hdt.core.cluster.HadoopJob;
 import org.apache.hdt.core.cluster.IJobListener;
@@ -46,10 +45,6 @@ import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.JobID;
 import org.apache.hadoop.mapred.JobStatus;
 import org.apache.hadoop.mapred.RunningJob;
-import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.swt.widgets.Display;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -68,132 +63,13 @@ import org.xml.sax.SAXException;
  * &lt;host&gt;</tt>)
  * 
  * <p>
- * <em> TODO </em>
- * <li> Disable the updater if a location becomes unreachable or fails for
- * tool long
- * <li> Stop the updater on location's disposal/removal
+ * The jobs of the location are observed by the
+ * {@link LocationStatusScheduler}, from the first time they are requested
+ * until the location is disposed.
  */
 
 public class HadoopCluster {
 
-  /**
-   * Frequency of location status observations expressed as the delay in ms
-   * between each observation
-   * 
-   * TODO Add a preference parameter for this
-   */
-  protected static final long STATUS_OBSERVATION_DELAY = 1500;
-
-  /**
-   * 
-   */
-  public class LocationStatusUpdater extends Job {
-
-    JobClient client = null;
-
-    /**
-     * Setup the updater
-     */
-    public LocationStatusUpdater() {
-      super("Map/Reduce location status updater");
-      this.setSystem(true);
-    }
-
-    /* @inheritDoc */
-    @Override
-    protected IStatus run(IProgressMonitor monitor) {
-      if (client == null) {
-        try {
-          client = HadoopCluster.this.getJobClient();
-
-        } catch (IOException ioe) {
-          client = null;
-          return new Status(Status.ERROR, Activator.PLUGIN_ID, 0,
-              "Cannot connect to the Map/Reduce location: "
-                            + HadoopCluster.this.getLocationName(),
-                            ioe);
-        }
-      }
-
-      try {
-        // Set of all known existing Job IDs we want fresh info of
-        Set<JobID> missingJobIds =
-            new HashSet<JobID>(runningJobs.keySet());
-
-        JobStatus[] jstatus = client.jobsToComplete();
-        for (JobStatus status : jstatus) {
-
-          JobID jobId = status.getJobID();
-          missingJobIds.remove(jobId);
-
-          HadoopJob hJob;
-          synchronized (HadoopCluster.this.runningJobs) {
-            hJob = runningJobs.get(jobId);
-            if (hJob == null) {
-              // Unknown job, create an entry
-              RunningJob running = client.getJob(jobId);
-              hJob =
-                  new HadoopJob(HadoopCluster.this, jobId, running, status);
-              newJob(hJob);
-            }
-          }
-
-          // Update HadoopJob with fresh infos
-          updateJob(hJob, status);
-        }
-
-        // Ask explicitly for fresh info for these Job IDs
-        for (JobID jobId : missingJobIds) {
-          HadoopJob hJob = runningJobs.get(jobId);
-          if (!hJob.isCompleted())
-            updateJob(hJob, null);
-        }
-
-      } catch (IOException ioe) {
-        client = null;
-        return new Status(Status.ERROR, Activator.PLUGIN_ID, 0,
-            "Cannot retrieve running Jobs on location: "
-                          + HadoopCluster.this.getLocationName(), ioe);
-      }
-
-      // Schedule the next observation
-      schedule(STATUS_OBSERVATION_DELAY);
-
-      return Status.OK_STATUS;
-    }
-
-    /**
-     * Stores and make the new job available
-     * 
-     * @param data
-     */
-    private void newJob(final HadoopJob data) {
-      runningJobs.put(data.getJobID(), data);
-
-      Display.getDefault().asyncExec(new Runnable() {
-        public void run() {
-          fireJobAdded(data);
-        }
-      });
-    }
-
-    /**
-     * Updates the status of a job
-     * 
-     * @param job the job to update
-     */
-    private void updateJob(final HadoopJob job, JobStatus status) {
-      job.update(status);
-
-      Display.getDefault().asyncExec(new Runnable() {
-        public void run() {
-          fireJobChanged(job);
-        }
-      });
-    }
-
-  }
-
   static Logger log = Logger.getLogger(HadoopCluster.class.getName());
 
   /**
@@ -214,9 +90,10 @@ public class HadoopCluster {
       Collections.synchronizedMap(new TreeMap<JobID, HadoopJob>());
 
   /**
-   * Status updater for this location
+   * Client observing the jobs of this location (see
+   * {@link LocationStatusScheduler}), null until connected
    */
-  private LocationStatusUpdater statusUpdater;
+  private transient JobClient statusClient;
 
   // state and status - transient
   private transient String state = "";
@@ -258,8 +135,17 @@ public class HadoopCluster {
     jobListeners.add(l);
   }
 
+  public void removeJobListener(IJobListener l) {
+    jobListeners.remove(l);
+  }
+
+  /**
+   * Stops observing the jobs of this location
+   */
   public void dispose() {
     // TODO close DFS connections?
+    LocationStatusScheduler.getInstance().stop(this);
+    closeStatusClient();
   }
 
   /**
@@ -269,7 +155,7 @@ public class HadoopCluster {
    * @return collection of jobs for this location
    */
   public Collection<HadoopJob> getJobs() {
-    startStatusUpdater();
+    LocationStatusScheduler.getInstance().start(this);
     return this.runningJobs.values();
   }
 
@@ -306,6 +192,25 @@ public class HadoopCluster {
     return prop.get(conf);
   }
 
+  /**
+   * Gets a numeric Hadoop configuration property value. The default value of
+   * the property is used if the configured value is not a valid number.
+   * 
+   * @param prop the configuration property
+   * @return the property value
+   */
+  public long getConfPropLong(ConfProp prop) {
+    String value = prop.get(conf);
+    if (value != null) {
+      try {
+        return Long.parseLong(value.trim());
+      } catch (NumberFormatException nfe) {
+        log.warning("Invalid value for " + prop.name + ": " + value);
+      }
+    }
+    return Long.parseLong(prop.defVal);
+  }
+
   /**
    * Gets a Hadoop configuration property value
    * 
@@ -452,15 +357,106 @@ public class HadoopCluster {
   }
 
   /**
-   * Starts the location status updater
+   * Gets fresh information on the jobs of this location, called by the
+   * {@link LocationStatusScheduler}
+   * 
+   * @return true if jobs are prepared or running on this location
+   * @throws IOException if the location cannot be reached
    */
-  private synchronized void startStatusUpdater() {
-    if (statusUpdater == null) {
-      statusUpdater = new LocationStatusUpdater();
-      statusUpdater.schedule();
+  boolean observeJobs() throws IOException {
+    JobClient client;
+    synchronized (this) {
+      if (statusClient == null)
+        statusClient = getJobClient();
+      client = statusClient;
+    }
+
+    try {
+      // Set of all known existing Job IDs we want fresh info of
+      Set<JobID> missingJobIds = new HashSet<JobID>(runningJobs.keySet());
+
+      JobStatus[] jstatus = client.jobsToComplete();
+      for (JobStatus status : jstatus) {
+
+        JobID jobId = status.getJobID();
+        missingJobIds.remove(jobId);
+
+        HadoopJob hJob;
+        synchronized (this.runningJobs) {
+          hJob = runningJobs.get(jobId);
+          if (hJob == null) {
+            // Unknown job, create an entry
+            RunningJob running = client.getJob(jobId);
+            hJob = new HadoopJob(this, jobId, running, status);
+            newJob(hJob);
+          }
+        }
+
+        // Update HadoopJob with fresh infos
+        updateJob(hJob, status);
+      }
+
+      // Ask explicitly for fresh info for these Job IDs
+      for (JobID jobId : missingJobIds) {
+        HadoopJob hJob = runningJobs.get(jobId);
+        if (!hJob.isCompleted())
+          updateJob(hJob, null);
+      }
+
+      return (jstatus.length > 0);
+
+    } catch (IOException ioe) {
+      // Connect again at the next observation
+      closeStatusClient();
+      throw ioe;
     }
   }
 
+  /**
+   * Closes the client observing the jobs: the next observation connects
+   * again, with the current settings of this location
+   */
+  synchronized void closeStatusClient() {
+    if (statusClient == null)
+      return;
+    try {
+      statusClient.close();
+    } catch (IOException ioe) {
+      log.fine("Unable to close the job client of " + this + ": " + ioe);
+    }
+    statusClient = null;
+  }
+
+  /**
+   * Stores and make the new job available
+   * 
+   * @param data
+   */
+  private void newJob(final HadoopJob data) {
+    runningJobs.put(data.getJobID(), data);
+
+    Display.getDefault().asyncExec(new Runnable() {
+      public void run() {
+        fireJobAdded(data);
+      }
+    });
+  }
+
+  /**
+   * Updates the status of a job
+   * 
+   * @param job the job to update
+   */
+  private void updateJob(final HadoopJob job, JobStatus status) {
+    job.update(status);
+
+    Display.getDefault().asyncExec(new Runnable() {
+      public void run() {
+        fireJobChanged(job);
+      }
+    });
+  }
+
   /*
    * Rewrite of the connecting and tunneling to the Hadoop location
    */
@@ -29,6 +29,7 @@ import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.JobID;
 import org.apache.hadoop.mapred.JobStatus;
 import org.apache.hadoop.mapred.RunningJob;
+import org.apache.hadoop.mapred.TaskCompletionEvent;
 
 /**
  * Representation of a Map/Reduce running job on a given location
@@ -119,6 +120,22 @@ public class HadoopJob {
 
   float reduceProgress;
 
+  /**
+   * Number of task completion events the JobTracker returns per request
+   */
+  private static final int EVENTS_PER_REQUEST = 10;
+
+  /**
+   * Maximum number of requests for task completion events per update of a
+   * running job, so a large backlog of events does not hold the updater
+   */
+  private static final int MAX_EVENT_REQUESTS = 100;
+
+  /**
+   * Task completion events received so far
+   */
+  private final TaskEventLog taskEvents;
+
   /**
    * Constructor for a Hadoop job representation
    * 
@@ -133,6 +150,7 @@ public class HadoopJob {
     this.location = location;
     this.jobId = id;
     this.running = running;
+    this.taskEvents = new TaskEventLog(id);
 
     loadJobFile();
 
@@ -286,7 +304,9 @@ public class HadoopJob {
       this.successful = running.isSuccessful();
       this.mapProgress = running.mapProgress();
       this.reduceProgress = running.reduceProgress();
-      // running.getTaskCompletionEvents(fromEvent);
+      // The last update of a completed job fetches all the remaining events
+      fetchTaskEvents(this.completed ? Integer.MAX_VALUE
+          : MAX_EVENT_REQUESTS);
 
     } catch (IOException ioe) {
       ioe.printStackTrace();
@@ -296,6 +316,33 @@ public class HadoopJob {
     this.completedReduces = (int) (this.totalReduces * this.reduceProgress);
   }
 
+  /**
+   * Returns the task completion events of this job received so far. Each
+   * update of the job only fetches the events following the last one
+   * received.
+   * 
+   * @return the task completion events of this job
+   */
+  public TaskEventLog getTaskEvents() {
+    return this.taskEvents;
+  }
+
+  /**
+   * Fetches the task completion events following the last one received
+   * 
+   * @param maxRequests the maximum number of requests to send
+   * @throws IOException
+   */
+  private void fetchTaskEvents(int maxRequests) throws IOException {
+    for (int i = 0; i < maxRequests; ++i) {
+      TaskCompletionEvent[] events =
+          running.getTaskCompletionEvents(taskEvents.getCursor());
+      taskEvents.append(events);
+      if (events.length < EVENTS_PER_REQUEST)
+        break;
+    }
+  }
+
   /**
    * Print this job counters (for debugging purpose)
    */
@@ -0,0 +1,435 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.core.cluster;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hdt.core.Activator;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+/**
+ * Scheduler of the observations of the jobs of all the Hadoop locations.
+ *
+ * <p>
+ * A single timer thread schedules the observations, which run on a pool of
+ * at most {@link #WORKERS} threads. A location has at most one observation
+ * in flight, so a slow JobTracker holds a single worker.
+ *
+ * <p>
+ * The delay between two observations of a location adapts: the minimum
+ * delay applies while jobs are prepared or running on the location, and
+ * each observation finding no such job doubles the delay, up to the maximum
+ * (see {@link #setDelays(long, long)}). The observations are suspended
+ * while no one displays the jobs: each view displaying them acquires the
+ * scheduler while it is visible (see {@link #acquire()}).
+ *
+ * <p>
+ * Each location has a circuit breaker. Failed observations back off like
+ * idle ones, and after {@link #FAILURE_THRESHOLD} consecutive failures the
+ * breaker opens: the location is left alone for the maximum delay. A single
+ * probe observation is then attempted (half-open breaker): if it succeeds
+ * the breaker closes, otherwise it opens again for twice as long, up to
+ * {@link #MAX_OPEN_DELAY}.
+ */
+public class LocationStatusScheduler {
+
+  /**
+   * Default delay in ms between two observations of a location while jobs
+   * are running on it
+   */
+  public static final long DEFAULT_MIN_DELAY = 1500;
+
+  /**
+   * Default maximum delay in ms between two observations of an idle or
+   * failing location
+   */
+  public static final long DEFAULT_MAX_DELAY = 60000;
+
+  /**
+   * Number of consecutive failures opening the circuit breaker of a
+   * location
+   */
+  public static final int FAILURE_THRESHOLD = 5;
+
+  /**
+   * Maximum time in ms an open circuit breaker waits before a probe
+   */
+  public static final long MAX_OPEN_DELAY = 10 * 60 * 1000;
+
+  /**
+   * Maximum number of locations observed at the same time
+   */
+  public static final int WORKERS = 4;
+
+  private static LocationStatusScheduler instance;
+
+  /**
+   * @return the scheduler shared by all the locations
+   */
+  public static synchronized LocationStatusScheduler getInstance() {
+    if (instance == null)
+      instance = new LocationStatusScheduler();
+    return instance;
+  }
+
+  /**
+   * Stops observing all the locations and releases the threads of the
+   * scheduler
+   */
+  public static synchronized void shutdown() {
+    if (instance != null) {
+      instance.stopAll();
+      instance.timer.shutdownNow();
+      instance.workers.shutdownNow();
+      instance = null;
+    }
+  }
+
+  /**
+   * States of the circuit breaker of a location
+   */
+  private enum Breaker {
+    /** Observations run normally */
+    CLOSED,
+    /** Too many failures: observations are suspended */
+    OPEN,
+    /** A probe observation is running */
+    HALF_OPEN
+  }
+
+  private final ScheduledExecutorService timer;
+
+  private final ThreadPoolExecutor workers;
+
+  /**
+   * Observed locations
+   */
+  private final Map<HadoopCluster, Observation> observations =
+      new HashMap<HadoopCluster, Observation>();
+
+  private volatile long minDelay = DEFAULT_MIN_DELAY;
+
+  private volatile long maxDelay = DEFAULT_MAX_DELAY;
+
+  private volatile boolean paused = false;
+
+  /**
+   * Number of visible displays of the jobs
+   */
+  private int displays = 0;
+
+  private LocationStatusScheduler() {
+    this.timer =
+        Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Map/Reduce location status timer");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    this.workers =
+        new ThreadPoolExecutor(WORKERS, WORKERS, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+              private final AtomicInteger count = new AtomicInteger();
+
+              public Thread newThread(Runnable r) {
+                Thread thread =
+                    new Thread(r, "Map/Reduce location status updater #"
+                        + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              }
+            });
+    this.workers.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Sets the delays between two observations of a location. The minimum
+   * delay applies while jobs are prepared or running on the location. Each
+   * observation finding no such job, or failing to reach the location,
+   * doubles the delay up to the maximum.
+   *
+   * @param min the delay in ms while jobs are running
+   * @param max the maximum delay in ms
+   */
+  public void setDelays(long min, long max) {
+    this.minDelay = Math.max(100, min);
+    this.maxDelay = Math.max(this.minDelay, max);
+  }
+
+  /**
+   * Suspends or resumes the observations of all the locations. When
+   * resumed, the locations are observed again immediately, except those
+   * whose circuit breaker is open.
+   *
+   * @param paused whether to suspend the observations
+   */
+  public synchronized void setPaused(boolean paused) {
+    this.paused = paused;
+    if (!paused) {
+      for (Observation observation : observations.values())
+        observation.wake();
+    }
+  }
+
+  /**
+   * Registers a visible display of the jobs, such as a view: the
+   * observations resume when the first display shows up
+   */
+  public synchronized void acquire() {
+    if (++displays == 1)
+      setPaused(false);
+  }
+
+  /**
+   * Unregisters a display of the jobs that got hidden or closed: the
+   * observations are suspended when the last display hides
+   */
+  public synchronized void release() {
+    if (displays == 0)
+      return;
+    if (--displays == 0)
+      setPaused(true);
+  }
+
+  /**
+   * Starts observing a location, unless it is already observed
+   *
+   * @param location the Hadoop location
+   */
+  public synchronized void start(HadoopCluster location) {
+    if (observations.containsKey(location))
+      return;
+    Observation observation = new Observation(location);
+    observations.put(location, observation);
+    observation.schedule(0);
+  }
+
+  /**
+   * Stops observing a location
+   *
+   * @param location the Hadoop location
+   */
+  public synchronized void stop(HadoopCluster location) {
+    Observation observation = observations.remove(location);
+    if (observation != null)
+      observation.stop();
+  }
+
+  /**
+   * Closes the circuit breaker of a location, whose settings may have been
+   * fixed, and observes it immediately
+   *
+   * @param location the Hadoop location
+   */
+  public synchronized void reset(HadoopCluster location) {
+    Observation observation = observations.get(location);
+    if (observation != null) {
+      observation.breaker = Breaker.CLOSED;
+      observation.failures = 0;
+      observation.wake();
+    }
+  }
+
+  /*
+   * Internals
+   */
+
+  private synchronized void stopAll() {
+    for (Observation observation : observations.values())
+      observation.stop();
+    observations.clear();
+  }
+
+  private static void report(int severity, String message, IOException ioe) {
+    Activator plugin = Activator.getDefault();
+    if (plugin != null)
+      plugin.getLog().log(
+          new Status(severity, Activator.PLUGIN_ID, 0, message, ioe));
+  }
+
+  /**
+   * Periodic observation of a location. All the fields are guarded by the
+   * scheduler.
+   */
+  private class Observation implements Runnable {
+
+    private final HadoopCluster location;
+
+    private long delay = minDelay;
+
+    private int failures = 0;
+
+    private Breaker breaker = Breaker.CLOSED;
+
+    /**
+     * Time in ms the breaker stays open
+     */
+    private long openDelay = 0;
+
+    /**
+     * Time (as of {@link System#currentTimeMillis()}) of the next probe of
+     * an open breaker: waking the observation up does not postpone it
+     */
+    private long probeAt = 0;
+
+    private ScheduledFuture<?> next;
+
+    /**
+     * Whether the observation is queued or running on a worker
+     */
+    private boolean inFlight = false;
+
+    private boolean stopped = false;
+
+    Observation(HadoopCluster location) {
+      this.location = location;
+    }
+
+    /* @inheritDoc */
+    public void run() {
+      synchronized (LocationStatusScheduler.this) {
+        if (stopped || paused) {
+          inFlight = false;
+          return;
+        }
+        if (breaker == Breaker.OPEN)
+          breaker = Breaker.HALF_OPEN;
+      }
+
+      boolean active = false;
+      IOException error = null;
+      try {
+        active = location.observeJobs();
+      } catch (IOException ioe) {
+        error = ioe;
+      }
+
+      boolean disposed;
+      synchronized (LocationStatusScheduler.this) {
+        inFlight = false;
+        disposed = stopped;
+        if (!disposed) {
+          if (error == null)
+            succeeded(active);
+          else
+            failed(error);
+          if (!paused)
+            schedule(delay);
+        }
+      }
+
+      // Stopped meanwhile: release the connection this observation opened
+      if (disposed)
+        location.closeStatusClient();
+    }
+
+    /**
+     * Observes the location as soon as possible, or when its breaker
+     * allows it
+     */
+    void wake() {
+      if (stopped || inFlight)
+        return;
+      if (next != null)
+        next.cancel(false);
+      if (breaker == Breaker.CLOSED) {
+        delay = minDelay;
+        schedule(0);
+      } else {
+        schedule(Math.max(0, probeAt - System.currentTimeMillis()));
+      }
+    }
+
+    void stop() {
+      stopped = true;
+      if (next != null)
+        next.cancel(false);
+    }
+
+    void schedule(long after) {
+      next = timer.schedule(new Runnable() {
+        public void run() {
+          synchronized (LocationStatusScheduler.this) {
+            if (stopped || inFlight)
+              return;
+            inFlight = true;
+          }
+          workers.execute(Observation.this);
+        }
+      }, after, TimeUnit.MILLISECONDS);
+    }
+
+    private void succeeded(boolean active) {
+      if (breaker != Breaker.CLOSED)
+        report(IStatus.INFO, "Map/Reduce location reachable again: "
+            + location.getLocationName(), null);
+      breaker = Breaker.CLOSED;
+      failures = 0;
+      openDelay = 0;
+
+      // Soon if jobs are running
+      delay = active ? minDelay : backOff(delay);
+    }
+
+    private void failed(IOException ioe) {
+      failures += 1;
+      if (breaker == Breaker.HALF_OPEN) {
+        // The probe failed
+        breaker = Breaker.OPEN;
+        openDelay = Math.min(MAX_OPEN_DELAY, 2 * openDelay);
+        delay = openDelay;
+        probeAt = System.currentTimeMillis() + openDelay;
+
+      } else if (failures >= FAILURE_THRESHOLD) {
+        breaker = Breaker.OPEN;
+        openDelay = maxDelay;
+        delay = openDelay;
+        probeAt = System.currentTimeMillis() + openDelay;
+        report(IStatus.WARNING, String.format(
+            "Map/Reduce location %s failed %d times, "
+                + "observing it less often", location.getLocationName(),
+            failures), ioe);
+
+      } else {
+        delay = backOff(delay);
+        // Only the first failure of a series is reported
+        if (failures == 1)
+          report(IStatus.ERROR, "Cannot retrieve running Jobs on location: "
+              + location.getLocationName(), ioe);
+      }
+    }
+
+    private long backOff(long current) {
+      return Math.min(maxDelay, Math.max(minDelay, 2 * current));
+    }
+  }
+
+}
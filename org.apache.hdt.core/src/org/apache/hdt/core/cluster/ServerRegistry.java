@@ -140,6 +140,7 @@ public class ServerRegistry {
     for (HadoopCluster server : getServers()) {
       server.dispose();
     }
+    LocationStatusScheduler.shutdown();
   }
 
   public synchronized HadoopCluster getServer(String location) {
@@ -172,6 +173,7 @@ public class ServerRegistry {
 
   public synchronized void removeServer(HadoopCluster server) {
     this.servers.remove(server.getLocationName());
+    server.dispose();
     store();
     fireListeners(server, SERVER_REMOVED);
   }
@@ -197,6 +199,10 @@ public class ServerRegistry {
       servers.put(server.getLocationName(), server);
     }
     store();
+
+    // The settings of the JobTracker may have been fixed
+    server.closeStatusClient();
+    LocationStatusScheduler.getInstance().reset(server);
     fireListeners(server, SERVER_STATE_CHANGED);
   }
 }
@@ -0,0 +1,236 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.core.cluster;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.mapred.JobID;
+import org.apache.hadoop.mapred.TaskAttemptID;
+import org.apache.hadoop.mapred.TaskCompletionEvent;
+import org.apache.hadoop.mapred.TaskID;
+
+/**
+ * Task completion events of a job, in the order the JobTracker reported
+ * them.
+ *
+ * <p>
+ * The events are fetched incrementally: {@link #getCursor()} is the
+ * identifier of the first event not received yet. They are stored in
+ * parallel arrays of primitives rather than as event objects, and the
+ * TaskTracker hosts are shared, so jobs with tens of thousands of tasks stay
+ * cheap to keep. {@link Event} views are built on demand.
+ */
+public class TaskEventLog {
+
+  private static final TaskCompletionEvent.Status[] STATUSES =
+      TaskCompletionEvent.Status.values();
+
+  /**
+   * A task completion event
+   */
+  public class Event {
+
+    private final int index;
+
+    private Event(int index) {
+      this.index = index;
+    }
+
+    /**
+     * @return the position of the event in the events of the job
+     */
+    public int getEventId() {
+      return index;
+    }
+
+    /**
+     * @return the identifier of the task attempt
+     */
+    public TaskAttemptID getTaskAttemptId() {
+      synchronized (TaskEventLog.this) {
+        return new TaskAttemptID(new TaskID(jobId, isMap(), tasks[index]),
+            attempts[index]);
+      }
+    }
+
+    /**
+     * @return true for a map task, false for a reduce task
+     */
+    public boolean isMap() {
+      synchronized (TaskEventLog.this) {
+        return (flags[index] & MAP) != 0;
+      }
+    }
+
+    /**
+     * @return the status of the attempt
+     */
+    public TaskCompletionEvent.Status getStatus() {
+      synchronized (TaskEventLog.this) {
+        return STATUSES[flags[index] & ~MAP];
+      }
+    }
+
+    /**
+     * @return the time the attempt ran, in milliseconds
+     */
+    public int getRunTime() {
+      synchronized (TaskEventLog.this) {
+        return runTimes[index];
+      }
+    }
+
+    /**
+     * @return the host of the TaskTracker that ran the attempt
+     */
+    public String getTrackerHost() {
+      synchronized (TaskEventLog.this) {
+        return hostNames.get(hosts[index]);
+      }
+    }
+  }
+
+  /**
+   * Flag of map tasks, combined with the ordinal of the status
+   */
+  private static final byte MAP = (byte) 0x80;
+
+  private final JobID jobId;
+
+  private int size = 0;
+
+  private int[] tasks = new int[16];
+
+  private int[] attempts = new int[16];
+
+  private byte[] flags = new byte[16];
+
+  private int[] runTimes = new int[16];
+
+  /**
+   * Indexes of the TaskTracker hosts in {@link #hostNames}
+   */
+  private int[] hosts = new int[16];
+
+  private final List<String> hostNames = new ArrayList<String>();
+
+  private final Map<String, Integer> hostIndexes =
+      new HashMap<String, Integer>();
+
+  /**
+   * @param jobId the job the events belong to
+   */
+  TaskEventLog(JobID jobId) {
+    this.jobId = jobId;
+  }
+
+  /**
+   * @return the identifier of the next event to fetch
+   */
+  public synchronized int getCursor() {
+    return size;
+  }
+
+  /**
+   * @return the number of events received
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * @param from the identifier of the first event
+   * @return the events received from the given one
+   */
+  public synchronized List<Event> getEvents(int from) {
+    List<Event> events = new ArrayList<Event>();
+    for (int i = Math.max(0, from); i < size; ++i)
+      events.add(new Event(i));
+    return events;
+  }
+
+  /**
+   * Appends the events fetched from the cursor
+   *
+   * @param events the events, in order
+   */
+  synchronized void append(TaskCompletionEvent[] events) {
+    for (TaskCompletionEvent event : events) {
+      if (size == tasks.length)
+        grow();
+
+      TaskAttemptID attempt = event.getTaskAttemptId();
+      tasks[size] = attempt.getTaskID().getId();
+      attempts[size] = attempt.getId();
+      flags[size] =
+          (byte) (event.getTaskStatus().ordinal() | (event.isMapTask() ? MAP
+              : 0));
+      runTimes[size] = event.getTaskRunTime();
+      hosts[size] = hostIndex(event.getTaskTrackerHttp());
+      size += 1;
+    }
+  }
+
+  /*
+   * Internals
+   */
+
+  private void grow() {
+    int capacity = 2 * tasks.length;
+    tasks = Arrays.copyOf(tasks, capacity);
+    attempts = Arrays.copyOf(attempts, capacity);
+    flags = Arrays.copyOf(flags, capacity);
+    runTimes = Arrays.copyOf(runTimes, capacity);
+    hosts = Arrays.copyOf(hosts, capacity);
+  }
+
+  /**
+   * @param http the HTTP address of a TaskTracker
+   * @return the index of its host name
+   */
+  private int hostIndex(String http) {
+    String host = http;
+    if (http != null) {
+      try {
+        String parsed = new URI(http).getHost();
+        if (parsed != null)
+          host = parsed;
+      } catch (URISyntaxException use) {
+        // Keep the address as is
+      }
+    }
+    if (host == null)
+      host = "";
+
+    Integer index = hostIndexes.get(host);
+    if (index == null) {
+      index = hostNames.size();
+      hostNames.add(host);
+      hostIndexes.put(host, index);
+    }
+    return index;
+  }
+
+}
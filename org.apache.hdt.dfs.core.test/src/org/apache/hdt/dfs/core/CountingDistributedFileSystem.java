@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.protocol.ClientProtocol;
+
+/**
+ * Distributed file system whose client talks to the {@link CountingNameNode}
+ * of the test instead of a NameNode. Declare it as the implementation of the
+ * hdfs scheme (fs.hdfs.impl) to use it.
+ */
+public class CountingDistributedFileSystem extends DistributedFileSystem {
+
+  /**
+   * The NameNode serving all the instances
+   */
+  static final CountingNameNode namenode = new CountingNameNode();
+
+  /* @inheritDoc */
+  @Override
+  public void initialize(URI uri, Configuration conf) throws IOException {
+    // The client created here only builds an RPC proxy: nothing is sent
+    super.initialize(uri, conf);
+
+    try {
+      Constructor<DFSClient> constructor =
+          DFSClient.class.getDeclaredConstructor(InetSocketAddress.class,
+              ClientProtocol.class, Configuration.class,
+              FileSystem.Statistics.class);
+      constructor.setAccessible(true);
+      DFSClient client =
+          constructor.newInstance(null, namenode.getProxy(), conf,
+              statistics);
+
+      Field field = DistributedFileSystem.class.getDeclaredField("dfs");
+      field.setAccessible(true);
+      ((DFSClient) field.get(this)).close();
+      field.set(this, client);
+
+    } catch (Exception e) {
+      throw new IOException("Unable to plug the counting NameNode", e);
+    }
+  }
+
+  /* @inheritDoc */
+  @Override
+  public void close() {
+    // The client has no connection to release, and its proxy cannot be
+    // stopped through the RPC engine
+  }
+
+}
@@ -0,0 +1,196 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.protocol.ClientProtocol;
+import org.apache.hadoop.hdfs.protocol.DirectoryListing;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+
+/**
+ * In-memory stand-in for the NameNode, serving the listings and file
+ * statuses of a namespace built by the test, and counting the RPCs it
+ * receives.
+ *
+ * <p>
+ * Only the read-only calls of the DFS browser are implemented, other calls
+ * fail.
+ */
+public class CountingNameNode implements InvocationHandler {
+
+  /**
+   * Number of entries per listing page, as the NameNode default
+   */
+  private int pageSize = 1000;
+
+  /**
+   * Children of the directories, sorted by name, indexed by path
+   */
+  private final Map<String, TreeMap<String, HdfsFileStatus>> directories =
+      new HashMap<String, TreeMap<String, HdfsFileStatus>>();
+
+  /**
+   * Number of calls, indexed by method name
+   */
+  private final Map<String, Integer> calls = new HashMap<String, Integer>();
+
+  public CountingNameNode() {
+    directories.put("/", new TreeMap<String, HdfsFileStatus>());
+  }
+
+  /**
+   * @return a client protocol served by this NameNode
+   */
+  public ClientProtocol getProxy() {
+    return (ClientProtocol) Proxy.newProxyInstance(
+        ClientProtocol.class.getClassLoader(),
+        new Class<?>[] { ClientProtocol.class }, this);
+  }
+
+  /**
+   * @param pageSize the number of entries per listing page
+   */
+  public synchronized void setPageSize(int pageSize) {
+    this.pageSize = pageSize;
+  }
+
+  /**
+   * Creates a directory and its missing parents
+   *
+   * @param path the absolute path of the directory
+   */
+  public synchronized void mkdirs(String path) {
+    if (directories.containsKey(path))
+      return;
+    Path p = new Path(path);
+    mkdirs(p.getParent().toUri().getPath());
+    directories.get(p.getParent().toUri().getPath()).put(p.getName(),
+        status(p.getName(), true, 0));
+    directories.put(path, new TreeMap<String, HdfsFileStatus>());
+  }
+
+  /**
+   * Creates a file and its missing parent directories
+   *
+   * @param path the absolute path of the file
+   * @param length the length of the file
+   */
+  public synchronized void createFile(String path, long length) {
+    Path p = new Path(path);
+    mkdirs(p.getParent().toUri().getPath());
+    directories.get(p.getParent().toUri().getPath()).put(p.getName(),
+        status(p.getName(), false, length));
+  }
+
+  /**
+   * @param method the name of a {@link ClientProtocol} method
+   * @return the number of calls to this method
+   */
+  public synchronized int getCalls(String method) {
+    Integer count = calls.get(method);
+    return (count == null) ? 0 : count;
+  }
+
+  /**
+   * @return the number of calls to all the methods
+   */
+  public synchronized int getCalls() {
+    int total = 0;
+    for (int count : calls.values())
+      total += count;
+    return total;
+  }
+
+  /**
+   * Forgets the calls received so far
+   */
+  public synchronized void resetCalls() {
+    calls.clear();
+  }
+
+  /* @inheritDoc */
+  public synchronized Object invoke(Object proxy, Method method,
+      Object[] args) throws Throwable {
+
+    if (method.getDeclaringClass() == Object.class)
+      return method.invoke(this, args);
+
+    Integer count = calls.get(method.getName());
+    calls.put(method.getName(), (count == null) ? 1 : count + 1);
+
+    if (method.getName().equals("getListing"))
+      return getListing((String) args[0], (byte[]) args[1]);
+    if (method.getName().equals("getFileInfo"))
+      return getFileInfo((String) args[0]);
+    throw new UnsupportedOperationException(method.getName());
+  }
+
+  /*
+   * Internals
+   */
+
+  private DirectoryListing getListing(String src, byte[] startAfter) {
+    TreeMap<String, HdfsFileStatus> children = directories.get(src);
+    if (children == null)
+      return null;
+
+    Map<String, HdfsFileStatus> remaining =
+        children.tailMap(DFSUtil.bytes2String(startAfter), false);
+    List<HdfsFileStatus> page = new ArrayList<HdfsFileStatus>();
+    for (HdfsFileStatus status : remaining.values()) {
+      if (page.size() == pageSize)
+        break;
+      page.add(status);
+    }
+    return new DirectoryListing(page.toArray(new HdfsFileStatus[page
+        .size()]), remaining.size() - page.size());
+  }
+
+  private HdfsFileStatus getFileInfo(String src) {
+    if (src.equals("/"))
+      return status("", true, 0);
+    Path p = new Path(src);
+    Map<String, HdfsFileStatus> siblings =
+        directories.get(p.getParent().toUri().getPath());
+    HdfsFileStatus status =
+        (siblings == null) ? null : siblings.get(p.getName());
+    if (status == null)
+      return null;
+    // As the NameNode, without the name already known to the client
+    return status("", status.isDir(), status.getLen());
+  }
+
+  private static HdfsFileStatus status(String name, boolean dir, long length) {
+    return new HdfsFileStatus(length, dir, dir ? 0 : 3, dir ? 0
+        : 64 * 1024 * 1024, 1000L, 1000L, FsPermission.getDefault(), "hdt",
+        "hdt", null, DFSUtil.string2Bytes(name));
+  }
+
+}
@@ -0,0 +1,170 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.apache.hdt.core.cluster.ConfProp;
+import org.apache.hdt.core.cluster.HadoopCluster;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Counts the NameNode RPCs sent to expand a DFS folder: the nodes of the
+ * children are built from the listing, without one getFileInfo per child.
+ */
+public class DFSFolderListingTest {
+
+  private static final int FILES = 2500;
+
+  private static final int FOLDERS = 10;
+
+  private final CountingNameNode namenode =
+      CountingDistributedFileSystem.namenode;
+
+  private HadoopCluster location;
+
+  private DFSFolder root;
+
+  @Before
+  public void setUp() throws IOException {
+    for (int i = 0; i < FILES; ++i)
+      namenode.createFile(String.format("/expand/part-%05d", i), i);
+    for (int i = 0; i < FOLDERS; ++i)
+      namenode.mkdirs(String.format("/expand/dir-%02d", i));
+
+    location = new HadoopCluster();
+    location.setConfProp(ConfProp.FS_DEFAULT_URI, "hdfs://counting:8020/");
+    location.setConfProp("fs.hdfs.impl", CountingDistributedFileSystem.class
+        .getName());
+    location.getConfiguration().setClassLoader(
+        CountingDistributedFileSystem.class.getClassLoader());
+
+    root = new DFSFolder(new DFSContentProvider(), location);
+  }
+
+  @After
+  public void tearDown() {
+    namenode.setPageSize(1000);
+    DFSMetadataCache.dispose(location);
+    DFSExecutor.dispose(location);
+  }
+
+  @Test
+  public void expandCostsOneListing() throws Exception {
+    namenode.setPageSize(FILES + FOLDERS);
+    DFSFolder folder = getFolder(root, "expand");
+    namenode.resetCalls();
+
+    DFSContent[] children = expand(folder);
+    assertEquals(FILES + FOLDERS, children.length);
+    assertEquals(1, namenode.getCalls("getListing"));
+    assertEquals(0, namenode.getCalls("getFileInfo"));
+    assertEquals(1, namenode.getCalls());
+
+    // The metadata comes from the listing
+    DFSFile file = (DFSFile) findChild(children, "part-00042");
+    assertEquals(42, file.getLength());
+    assertEquals(3, file.getReplication());
+    assertEquals("hdt", file.getOwner());
+    assertTrue(findChild(children, "dir-03") instanceof DFSFolder);
+  }
+
+  @Test
+  public void expandCostsOneListingPerPage() throws Exception {
+    namenode.setPageSize(1000);
+    DFSFolder folder = getFolder(root, "expand");
+    namenode.resetCalls();
+
+    assertEquals(FILES + FOLDERS, expand(folder).length);
+    assertEquals((FILES + FOLDERS + 999) / 1000, namenode
+        .getCalls("getListing"));
+    assertEquals(0, namenode.getCalls("getFileInfo"));
+  }
+
+  @Test
+  public void expandAgainUsesCachedListing() throws Exception {
+    DFSFolder folder = getFolder(root, "expand");
+    expand(folder);
+
+    // Another node of the same folder, as built after a collapse and refresh
+    // of the parent
+    DFSFolder again =
+        (DFSFolder) root.createChild(folder.getDFS().getFileStatus(
+            folder.getPath()));
+    namenode.resetCalls();
+    assertEquals(FILES + FOLDERS, expand(again).length);
+    assertEquals(0, namenode.getCalls());
+  }
+
+  /*
+   * Internals
+   */
+
+  /**
+   * Expands a folder and waits for its listing to complete
+   *
+   * @return the children of the folder
+   */
+  private static DFSContent[] expand(DFSFolder folder)
+      throws InterruptedException {
+
+    long deadline = System.currentTimeMillis() + 30000;
+    DFSContent[] children = folder.getChildren();
+    while (isLoading(children)) {
+      if (System.currentTimeMillis() > deadline)
+        fail("Listing of " + folder.getPath() + " did not complete");
+      Thread.sleep(10);
+      children = folder.getChildren();
+    }
+    for (DFSContent child : children)
+      assertFalse(child.toString(), child instanceof DFSMessage);
+    return children;
+  }
+
+  private static boolean isLoading(DFSContent[] children) {
+    if (children.length == 0)
+      return false;
+    DFSContent last = children[children.length - 1];
+    return (last instanceof DFSMessage)
+        && !last.toString().startsWith("Error");
+  }
+
+  private static DFSFolder getFolder(DFSFolder parent, String name)
+      throws InterruptedException {
+    return (DFSFolder) findChild(expand(parent), name);
+  }
+
+  private static DFSContent findChild(DFSContent[] children, String name) {
+    for (DFSContent child : children) {
+      if ((child instanceof DFSPath)
+          && ((DFSPath) child).getPath().getName().equals(name))
+        return child;
+    }
+    fail("No child named " + name);
+    return null;
+  }
+
+}
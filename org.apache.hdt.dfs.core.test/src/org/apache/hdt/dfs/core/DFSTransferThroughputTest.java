@@ -0,0 +1,257 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Benchmark of the DFS transfers against the local file system: the
+ * transfers of {@link DFSTransfer}, through large buffers and FileChannels,
+ * are compared with the former copy loop through a 1 KB array reporting one
+ * unit of work per kilobyte.
+ *
+ * <p>
+ * The throughputs are logged, not asserted, as they depend on the machine.
+ * The test checks that the data is copied completely and that the progress
+ * monitor receives far fewer updates. It copies several 64 MB files, so it
+ * is left out of the build: remove the {@link Ignore} annotation to run it.
+ */
+@Ignore("Benchmark, run on demand")
+public class DFSTransferThroughputTest {
+
+  static Logger log =
+      Logger.getLogger(DFSTransferThroughputTest.class.getName());
+
+  private static final long SIZE = 64L * 1024 * 1024;
+
+  private static final int RUNS = 3;
+
+  private FileSystem fs;
+
+  private File dir;
+
+  private File local;
+
+  private Path remote;
+
+  @Before
+  public void setUp() throws IOException {
+    fs = FileSystem.getLocal(new Configuration());
+    dir = File.createTempFile("hdt-transfer", "");
+    dir.delete();
+    dir.mkdirs();
+
+    local = new File(dir, "data");
+    byte[] block = new byte[1024 * 1024];
+    new Random(42).nextBytes(block);
+    OutputStream out = new FileOutputStream(local);
+    try {
+      for (long written = 0; written < SIZE; written += block.length)
+        out.write(block);
+    } finally {
+      out.close();
+    }
+    remote = new Path(dir.getAbsolutePath(), "remote");
+  }
+
+  @After
+  public void tearDown() {
+    FileUtil.fullyDelete(dir);
+  }
+
+  @Test
+  public void upload() throws IOException {
+    CountingMonitor before = new CountingMonitor();
+    CountingMonitor after = new CountingMonitor();
+    long loop = Long.MAX_VALUE;
+    long transfer = Long.MAX_VALUE;
+
+    for (int run = 0; run <= RUNS; ++run) {
+      long start = System.nanoTime();
+      loopUpload(before.reset());
+      long end = System.nanoTime();
+      if (run > 0)
+        loop = Math.min(loop, end - start);
+      assertEquals(SIZE, fs.getFileStatus(remote).getLen());
+      fs.delete(remote, false);
+
+      start = System.nanoTime();
+      DFSProgressMonitor monitor = new DFSProgressMonitor(after.reset());
+      monitor.beginTask("upload", SIZE);
+      assertTrue(DFSTransfer.upload(fs, local, remote, monitor));
+      monitor.done();
+      end = System.nanoTime();
+      if (run > 0)
+        transfer = Math.min(transfer, end - start);
+      assertEquals(SIZE, fs.getFileStatus(remote).getLen());
+      fs.delete(remote, false);
+    }
+
+    report("upload", loop, before, transfer, after);
+  }
+
+  @Test
+  public void download() throws IOException {
+    DFSTransfer.upload(fs, local, remote, new NullProgressMonitor());
+    File copy = new File(dir, "copy");
+    CountingMonitor before = new CountingMonitor();
+    CountingMonitor after = new CountingMonitor();
+    long loop = Long.MAX_VALUE;
+    long transfer = Long.MAX_VALUE;
+
+    for (int run = 0; run <= RUNS; ++run) {
+      long start = System.nanoTime();
+      loopDownload(copy, before.reset());
+      long end = System.nanoTime();
+      if (run > 0)
+        loop = Math.min(loop, end - start);
+      assertEquals(SIZE, copy.length());
+      copy.delete();
+
+      start = System.nanoTime();
+      DFSProgressMonitor monitor = new DFSProgressMonitor(after.reset());
+      monitor.beginTask("download", SIZE);
+      InputStream in = fs.open(remote, DFSTransfer.BUFFER_SIZE);
+      RandomAccessFile out = new RandomAccessFile(copy, "rw");
+      try {
+        assertEquals(SIZE, DFSTransfer.copy(in, out.getChannel(), monitor));
+      } finally {
+        out.close();
+        in.close();
+      }
+      monitor.done();
+      end = System.nanoTime();
+      if (run > 0)
+        transfer = Math.min(transfer, end - start);
+      assertEquals(SIZE, copy.length());
+      copy.delete();
+    }
+
+    report("download", loop, before, transfer, after);
+  }
+
+  /*
+   * Internals
+   */
+
+  /**
+   * Upload as formerly done by DFSFile
+   */
+  private void loopUpload(IProgressMonitor monitor) throws IOException {
+    InputStream in = new BufferedInputStream(new FileInputStream(local));
+    OutputStream out = fs.create(remote);
+    try {
+      byte[] buffer = new byte[1024];
+      int bytes;
+      while ((bytes = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, bytes);
+        monitor.worked(1);
+      }
+    } finally {
+      in.close();
+      out.close();
+    }
+  }
+
+  /**
+   * Download as formerly done by DFSFile
+   */
+  private void loopDownload(File file, IProgressMonitor monitor)
+      throws IOException {
+    InputStream in = fs.open(remote);
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+    try {
+      byte[] buffer = new byte[1024];
+      int bytes;
+      while ((bytes = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, bytes);
+        monitor.worked(1);
+      }
+    } finally {
+      in.close();
+      out.close();
+    }
+  }
+
+  private static void report(String name, long loop, CountingMonitor before,
+      long transfer, CountingMonitor after) {
+
+    log.info(String.format(
+        "%s of %d MB: 1 KB loop %.1f MB/s (%d updates), "
+            + "DFSTransfer %.1f MB/s (%d updates)", name, SIZE >> 20,
+        throughput(loop), before.updates, throughput(transfer),
+        after.updates));
+
+    assertTrue(after.updates > 0);
+    assertTrue(after.updates * 100 < before.updates);
+  }
+
+  private static double throughput(long nanos) {
+    return (SIZE / (1024.0 * 1024.0)) / (nanos / 1e9);
+  }
+
+  /**
+   * Progress monitor counting the updates it receives, as the progress
+   * dialog would
+   */
+  private static class CountingMonitor extends NullProgressMonitor {
+
+    private int updates = 0;
+
+    CountingMonitor reset() {
+      updates = 0;
+      return this;
+    }
+
+    @Override
+    public void worked(int work) {
+      updates += 1;
+    }
+
+    @Override
+    public void internalWorked(double work) {
+      updates += 1;
+    }
+  }
+
+}
@@ -0,0 +1,394 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hdt.core.cluster.ConfProp;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Placement of the blocks of a DFS file or directory tree on the DataNodes.
+ *
+ * <p>
+ * Directories are listed together with the locations of the blocks of
+ * their files, so the NameNode is sent one request per page of directory
+ * entries rather than one per file. The directories of a level of the tree
+ * are listed concurrently on the {@link DFSExecutor} of the location. The
+ * report keeps at most {@link ConfProp#PI_DFS_CONCURRENT_REQUESTS} listings
+ * submitted at a time, so the other requests of the DFS browser never queue
+ * behind a whole level of a wide tree.
+ *
+ * <p>
+ * The report counts the blocks and bytes held by each DataNode, the blocks
+ * with fewer replicas than their file requires, and the number of racks
+ * the replicas of each block span. It can be exported as CSV.
+ */
+public class DFSBlockReport {
+
+  private static final String DEFAULT_RACK = "/default-rack";
+
+  /**
+   * Blocks held by a DataNode
+   */
+  public static class Host {
+
+    private final String name;
+
+    private final String rack;
+
+    private long blocks = 0;
+
+    private long bytes = 0;
+
+    Host(String name, String rack) {
+      this.name = name;
+      this.rack = rack;
+    }
+
+    /**
+     * @return the host name of the DataNode
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return the rack of the DataNode
+     */
+    public String getRack() {
+      return rack;
+    }
+
+    /**
+     * @return the number of block replicas held by the DataNode
+     */
+    public long getBlocks() {
+      return blocks;
+    }
+
+    /**
+     * @return the number of bytes held by the DataNode
+     */
+    public long getBytes() {
+      return bytes;
+    }
+  }
+
+  private final DFSPath root;
+
+  private long files = 0;
+
+  private long blocks = 0;
+
+  private long bytes = 0;
+
+  private long underReplicated = 0;
+
+  private long missing = 0;
+
+  private long corrupt = 0;
+
+  private final Map<String, Host> hosts = new HashMap<String, Host>();
+
+  /**
+   * Number of blocks indexed by the number of racks their replicas span
+   */
+  private final Map<Integer, Long> rackSpread = new TreeMap<Integer, Long>();
+
+  private final Map<Path, IOException> errors =
+      new LinkedHashMap<Path, IOException>();
+
+  /**
+   * @param root the file or directory to analyze
+   */
+  public DFSBlockReport(DFSPath root) {
+    this.root = root;
+  }
+
+  /**
+   * Lists the blocks of the file or of all the files of the directory tree
+   *
+   * @param monitor the progress monitor
+   * @throws IOException if the root cannot be reached
+   */
+  public void run(IProgressMonitor monitor) throws IOException {
+    final DistributedFileSystem dfs = root.getDFS();
+    FileStatus status = dfs.getFileStatus(root.getPath());
+    if (!status.isDir()) {
+      add(status, dfs.getFileBlockLocations(status, 0, status.getLen()));
+      return;
+    }
+
+    DFSExecutor executor = DFSExecutor.getInstance(root.location);
+    int workers =
+        (int) Math.max(1, root.location
+            .getConfPropLong(ConfProp.PI_DFS_CONCURRENT_REQUESTS));
+    List<Future<List<Path>>> listings = Collections.emptyList();
+
+    try {
+      // One level of the tree at a time
+      List<Path> level = Collections.singletonList(root.getPath());
+      int listed = 0;
+      while (!level.isEmpty() && !monitor.isCanceled()) {
+        listings = new ArrayList<Future<List<Path>>>();
+        List<Path> next = new ArrayList<Path>();
+        for (int i = 0; i < level.size(); ++i) {
+          // Keep the listings following this one in flight
+          while ((listings.size() < level.size())
+              && (listings.size() < i + workers) && !monitor.isCanceled()) {
+            final Path dir = level.get(listings.size());
+            listings.add(executor.submit(new Callable<List<Path>>() {
+              public List<Path> call() throws IOException {
+                return list(dfs, dir);
+              }
+            }));
+          }
+          if (i >= listings.size())
+            return;
+
+          try {
+            next.addAll(listings.get(i).get());
+
+          } catch (ExecutionException e) {
+            IOException ioe =
+                (e.getCause() instanceof IOException) ? (IOException) e
+                    .getCause() : new IOException(e.getCause());
+            synchronized (this) {
+              errors.put(level.get(i), ioe);
+            }
+
+          } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+          monitor.subTask(String.format("%d directories, %d files listed",
+              ++listed, getFiles()));
+        }
+        level = next;
+      }
+
+    } finally {
+      // Listings not needed anymore once cancelled or interrupted
+      for (Future<List<Path>> listing : listings)
+        listing.cancel(true);
+    }
+  }
+
+  /**
+   * @return the file or directory analyzed
+   */
+  public DFSPath getRoot() {
+    return root;
+  }
+
+  /**
+   * @return the number of files analyzed
+   */
+  public synchronized long getFiles() {
+    return files;
+  }
+
+  /**
+   * @return the number of blocks of the files
+   */
+  public synchronized long getBlocks() {
+    return blocks;
+  }
+
+  /**
+   * @return the length of the files, in bytes
+   */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * @return the number of blocks with fewer replicas than their file
+   *         requires, missing blocks included
+   */
+  public synchronized long getUnderReplicated() {
+    return underReplicated;
+  }
+
+  /**
+   * @return the number of blocks without any replica
+   */
+  public synchronized long getMissing() {
+    return missing;
+  }
+
+  /**
+   * @return the number of blocks reported as corrupt
+   */
+  public synchronized long getCorrupt() {
+    return corrupt;
+  }
+
+  /**
+   * @return the DataNodes holding blocks, most loaded first
+   */
+  public synchronized List<Host> getHosts() {
+    List<Host> list = new ArrayList<Host>(hosts.values());
+    Collections.sort(list, new Comparator<Host>() {
+      public int compare(Host a, Host b) {
+        return (a.blocks > b.blocks) ? -1 : ((a.blocks < b.blocks) ? 1 : 0);
+      }
+    });
+    return list;
+  }
+
+  /**
+   * @return the number of blocks indexed by the number of racks their
+   *         replicas span
+   */
+  public synchronized Map<Integer, Long> getRackSpread() {
+    return new TreeMap<Integer, Long>(rackSpread);
+  }
+
+  /**
+   * @return the errors indexed by directory, empty if all the directories
+   *         could be listed
+   */
+  public synchronized Map<Path, IOException> getErrors() {
+    return new LinkedHashMap<Path, IOException>(errors);
+  }
+
+  /**
+   * Writes the report as CSV: one line per DataNode, preceded by the totals
+   * as comments
+   *
+   * @param file the local file
+   * @throws IOException
+   */
+  public void export(File file) throws IOException {
+    PrintWriter out = new PrintWriter(new FileWriter(file));
+    try {
+      synchronized (this) {
+        out.printf("# path=%s%n", root.getPath());
+        out.printf("# files=%d blocks=%d bytes=%d%n", files, blocks, bytes);
+        out.printf("# under-replicated=%d missing=%d corrupt=%d%n",
+            underReplicated, missing, corrupt);
+        for (Map.Entry<Integer, Long> entry : rackSpread.entrySet())
+          out.printf("# blocks on %d racks=%d%n", entry.getKey(), entry
+              .getValue());
+      }
+      out.println("host,rack,blocks,bytes");
+      for (Host host : getHosts())
+        out.printf("%s,%s,%d,%d%n", host.name, host.rack, host.blocks,
+            host.bytes);
+
+    } finally {
+      out.close();
+    }
+    if (out.checkError())
+      throw new IOException("Unable to write " + file);
+  }
+
+  /*
+   * Internals
+   */
+
+  /**
+   * Lists a directory with the block locations of its files
+   *
+   * @return the sub-directories
+   */
+  private List<Path> list(DistributedFileSystem dfs, Path dir)
+      throws IOException {
+    List<Path> dirs = new ArrayList<Path>();
+    RemoteIterator<LocatedFileStatus> it = dfs.listLocatedStatus(dir);
+    while (it.hasNext()) {
+      LocatedFileStatus status = it.next();
+      if (status.isDir())
+        dirs.add(status.getPath());
+      else
+        add(status, status.getBlockLocations());
+    }
+    return dirs;
+  }
+
+  private synchronized void add(FileStatus status, BlockLocation[] locations)
+      throws IOException {
+    files += 1;
+    bytes += status.getLen();
+    if (locations == null)
+      return;
+
+    for (BlockLocation block : locations) {
+      blocks += 1;
+      if (block.isCorrupt())
+        corrupt += 1;
+
+      String[] names = block.getHosts();
+      String[] topology = block.getTopologyPaths();
+      if (names.length == 0)
+        missing += 1;
+      if (names.length < status.getReplication())
+        underReplicated += 1;
+
+      Set<String> racks = new HashSet<String>();
+      for (int i = 0; i < names.length; ++i) {
+        String rack = DEFAULT_RACK;
+        if (i < topology.length) {
+          int slash = topology[i].lastIndexOf('/');
+          if (slash > 0)
+            rack = topology[i].substring(0, slash);
+        }
+        racks.add(rack);
+
+        Host host = hosts.get(names[i]);
+        if (host == null) {
+          host = new Host(names[i], rack);
+          hosts.put(names[i], host);
+        }
+        host.blocks += 1;
+        host.bytes += block.getLength();
+      }
+
+      if (names.length > 0) {
+        Long count = rackSpread.get(racks.size());
+        rackSpread.put(racks.size(), (count != null) ? count + 1 : 1L);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,269 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.MD5MD5CRC32FileChecksum;
+import org.apache.hadoop.io.MD5Hash;
+import org.apache.hadoop.util.DataChecksum;
+
+/**
+ * Checksum of a DFS file, reproduced on local data.
+ *
+ * <p>
+ * The DFS checksums a file block by block: the datanodes compute the MD5 of
+ * the CRCs of all the chunks of a block, and the checksum of the file is the
+ * MD5 of the digests of its blocks. The same computation on a local copy of
+ * the file tells whether both have the same content.
+ */
+class DFSChecksum {
+
+  /**
+   * Gets the local equivalent of a DFS file checksum
+   *
+   * @param checksum the checksum returned by the DFS
+   * @return the local checksum, or null if the checksum algorithm cannot be
+   *         reproduced locally
+   * @throws IOException
+   */
+  static DFSChecksum of(FileChecksum checksum) throws IOException {
+    if (!(checksum instanceof MD5MD5CRC32FileChecksum))
+      return null;
+
+    MD5MD5CRC32FileChecksum md5crc = (MD5MD5CRC32FileChecksum) checksum;
+    DataChecksum.Type type = md5crc.getCrcType();
+    if ((type != DataChecksum.Type.CRC32)
+        && (type != DataChecksum.Type.CRC32C))
+      return null;
+
+    // Serialized as: bytes per CRC, CRCs per block, MD5
+    DataInputStream fields =
+        new DataInputStream(new ByteArrayInputStream(md5crc.getBytes()));
+    int bytesPerCRC = fields.readInt();
+    fields.readLong();
+    return new DFSChecksum(type, bytesPerCRC, MD5Hash.read(fields));
+  }
+
+  private final DataChecksum.Type crcType;
+
+  private final int bytesPerCRC;
+
+  private final MD5Hash expected;
+
+  private DFSChecksum(DataChecksum.Type crcType, int bytesPerCRC,
+      MD5Hash expected) {
+    this.crcType = crcType;
+    this.bytesPerCRC = bytesPerCRC;
+    this.expected = expected;
+  }
+
+  /**
+   * Starts the checksum of a block
+   *
+   * @return the checksum of the block, to be fed with its content
+   */
+  Block newBlock() {
+    return new Block();
+  }
+
+  /**
+   * Tells whether the given block digests make the checksum of the DFS file
+   *
+   * @param digests the digests of all the blocks, in order
+   * @return true if the local content matches the DFS file
+   */
+  boolean matches(List<byte[]> digests) {
+    MessageDigest md5 = newDigest();
+    for (byte[] digest : digests)
+      md5.update(digest);
+    return expected.equals(new MD5Hash(md5.digest()));
+  }
+
+  /**
+   * Tells whether a local file has the same content as the DFS file
+   *
+   * @param file the local file
+   * @param blockSize the block size of the DFS file
+   * @return true if the local file matches the DFS file
+   * @throws IOException
+   */
+  boolean matches(File file, long blockSize) throws IOException {
+    if (blockSize <= 0)
+      throw new IllegalArgumentException("Invalid block size " + blockSize);
+
+    MessageDigest md5 = newDigest();
+    ByteBuffer buffer = DFSTransfer.getBuffer();
+
+    FileInputStream in = new FileInputStream(file);
+    try {
+      FileChannel channel = in.getChannel();
+      long length = channel.size();
+      for (long start = 0; start < length; start += blockSize) {
+        long end = Math.min(length, start + blockSize);
+        md5.update(digest(channel, start, end, buffer));
+      }
+    } finally {
+      in.close();
+    }
+    return expected.equals(new MD5Hash(md5.digest()));
+  }
+
+  /**
+   * Tells whether the content of a stream is the same as the DFS file, for
+   * instance a copy of the file made with other checksum parameters
+   *
+   * @param in the stream, read to its end
+   * @param blockSize the block size of the DFS file
+   * @return true if the content matches the DFS file
+   * @throws IOException
+   */
+  boolean matches(InputStream in, long blockSize) throws IOException {
+    if (blockSize <= 0)
+      throw new IllegalArgumentException("Invalid block size " + blockSize);
+
+    MessageDigest md5 = newDigest();
+    byte[] buffer = DFSTransfer.getBuffer().array();
+    Block block = newBlock();
+    long inBlock = 0;
+    int bytes;
+    while ((bytes =
+        in.read(buffer, 0, (int) Math.min(buffer.length, blockSize
+            - inBlock))) > 0) {
+      block.update(buffer, 0, bytes);
+      inBlock += bytes;
+      if (inBlock == blockSize) {
+        md5.update(block.digest());
+        block = newBlock();
+        inBlock = 0;
+      }
+    }
+    if (inBlock > 0)
+      md5.update(block.digest());
+    return expected.equals(new MD5Hash(md5.digest()));
+  }
+
+  /**
+   * Computes the digest of a block from a local file
+   *
+   * @param channel the local file
+   * @param start the offset of the block in the file
+   * @param end the offset of the end of the block
+   * @param buffer the buffer to read the file through
+   * @return the digest of the block
+   * @throws IOException
+   */
+  byte[] digest(FileChannel channel, long start, long end, ByteBuffer buffer)
+      throws IOException {
+    Block block = newBlock();
+    for (long position = start; position < end;) {
+      buffer.clear();
+      buffer.limit((int) Math.min(buffer.capacity(), end - position));
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, position + buffer.position()) < 0)
+          throw new IOException("Unexpected end of file");
+      }
+      block.update(buffer.array(), 0, buffer.limit());
+      position += buffer.limit();
+    }
+    return block.digest();
+  }
+
+  /*
+   * Internals
+   */
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Checksum of a block: MD5 of the CRCs of all the chunks of the block
+   */
+  class Block {
+
+    private final DataChecksum crc =
+        DataChecksum.newDataChecksum(crcType, bytesPerCRC);
+
+    private final MessageDigest md5 = newDigest();
+
+    private final byte[] value = new byte[4];
+
+    /**
+     * Number of bytes already checksummed in the current chunk
+     */
+    private int chunk = 0;
+
+    private Block() {
+    }
+
+    /**
+     * Checksum the next bytes of the block
+     */
+    void update(byte[] data, int offset, int length) {
+      while (length > 0) {
+        int bytes = Math.min(length, bytesPerCRC - chunk);
+        crc.update(data, offset, bytes);
+        chunk += bytes;
+        offset += bytes;
+        length -= bytes;
+        if (chunk == bytesPerCRC)
+          endChunk();
+      }
+    }
+
+    /**
+     * Completes the checksum of the block
+     *
+     * @return the digest of the block
+     */
+    byte[] digest() {
+      if (chunk > 0)
+        endChunk();
+      return md5.digest();
+    }
+
+    private void endChunk() {
+      int sum = (int) crc.getValue();
+      value[0] = (byte) (sum >>> 24);
+      value[1] = (byte) (sum >>> 16);
+      value[2] = (byte) (sum >>> 8);
+      value[3] = (byte) sum;
+      md5.update(value);
+      crc.reset();
+      chunk = 0;
+    }
+  }
+
+}
@@ -0,0 +1,485 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.PositionedReadable;
+import org.apache.hadoop.fs.Seekable;
+import org.apache.hdt.core.cluster.ConfProp;
+import org.apache.hdt.core.cluster.HadoopCluster;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+/**
+ * Local copies of the DFS files opened in viewers and editors, kept in the
+ * plug-in state location.
+ *
+ * <p>
+ * A copy is identified by the location, path, length and modification time
+ * of the file: a file that changed on the DFS gets a new copy, and the old
+ * one ages out. The copies of a location take at most
+ * {@link ConfProp#PI_DFS_CONTENT_CACHE_SIZE} megabytes, the least recently
+ * opened ones are deleted first. Files that do not fit in the cache are
+ * streamed from the DFS as before.
+ *
+ * <p>
+ * Cached copies are read through memory mappings. The viewers read the DFS
+ * the first time a file is opened, while the cache is filled in the
+ * background on the transfer pool of the location; the next openings read
+ * the copy.
+ */
+public class DFSContentCache {
+
+  private static final String DIRECTORY_NAME = "content-cache";
+
+  private static final String TMP_SUFFIX = ".tmp";
+
+  private static final Map<HadoopCluster, DFSContentCache> caches =
+      new HashMap<HadoopCluster, DFSContentCache>();
+
+  /**
+   * Gets the content cache of the given location
+   *
+   * @param location the Hadoop location
+   * @return the cache shared by all users of this location
+   */
+  public static synchronized DFSContentCache getInstance(
+      HadoopCluster location) {
+    DFSContentCache cache = caches.get(location);
+    if (cache == null) {
+      cache = new DFSContentCache(location);
+      caches.put(location, cache);
+    }
+    return cache;
+  }
+
+  /**
+   * Forgets the cache of a location that has been removed, and deletes its
+   * files
+   *
+   * @param location the Hadoop location
+   */
+  static synchronized void dispose(HadoopCluster location) {
+    DFSContentCache cache = caches.remove(location);
+    if (cache != null)
+      cache.clear();
+  }
+
+  private final HadoopCluster location;
+
+  /**
+   * Directory of the copies of this location, null if the plug-in has no
+   * state location
+   */
+  private final File directory;
+
+  /**
+   * Copies being filled in the background
+   */
+  private final Set<File> filling = new HashSet<File>();
+
+  private DFSContentCache(HadoopCluster location) {
+    this.location = location;
+
+    Activator plugin = Activator.getDefault();
+    if (plugin == null) {
+      this.directory = null;
+      return;
+    }
+
+    File root = plugin.getStateLocation().append(DIRECTORY_NAME).toFile();
+    String uri = location.getConfProp(ConfProp.FS_DEFAULT_URI);
+    this.directory = new File(root, digest(uri));
+    this.directory.mkdirs();
+
+    // Downloads interrupted by the end of the previous session
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.getName().endsWith(TMP_SUFFIX))
+          file.delete();
+      }
+    }
+  }
+
+  /**
+   * Opens the content of a DFS file, from its local copy if there is one,
+   * otherwise after copying it
+   *
+   * @param file the DFS file
+   * @return a stream on the content of the file
+   * @throws IOException
+   */
+  public InputStream open(DFSFile file) throws IOException {
+    long length = file.getLength();
+    if (!fits(length))
+      return file.open();
+
+    File copy = getCopy(file, length, file.getModificationTime());
+    InputStream in = openCopy(copy, length);
+    if (in != null)
+      return in;
+
+    fetch(file, length, copy);
+    synchronized (this) {
+      evict(copy);
+      return new MappedInputStream(map(copy));
+    }
+  }
+
+  /**
+   * Opens the local copy of a DFS file, if there is one for the given
+   * version of the file
+   *
+   * @param file the DFS file
+   * @param length the length of the file
+   * @param modificationTime the modification time of the file
+   * @return a seekable stream on the copy, or null if the file has no copy
+   * @throws IOException
+   */
+  public FSDataInputStream openCopy(DFSFile file, long length,
+      long modificationTime) throws IOException {
+    if (!fits(length))
+      return null;
+
+    File copy = getCopy(file, length, modificationTime);
+    MappedInputStream in = openCopy(copy, length);
+    return (in != null) ? new FSDataInputStream(in) : null;
+  }
+
+  /**
+   * Copies a DFS file into the cache in the background, on the transfer pool
+   * of the location, unless the file already has a copy, is being copied or
+   * does not fit in the cache
+   *
+   * @param file the DFS file
+   * @param length the length of the file
+   * @param modificationTime the modification time of the file
+   */
+  public void fill(final DFSFile file, final long length,
+      long modificationTime) {
+    if (!fits(length))
+      return;
+
+    final File copy = getCopy(file, length, modificationTime);
+    synchronized (this) {
+      if ((copy.isFile() && (copy.length() == length)) || !filling.add(copy))
+        return;
+    }
+
+    try {
+      DFSExecutor.getInstance(location).transfer(new Callable<Void>() {
+        public Void call() {
+          try {
+            fetch(file, length, copy);
+            evict(copy);
+
+          } catch (IOException ioe) {
+            // The viewers keep reading the DFS
+            ioe.printStackTrace();
+
+          } finally {
+            synchronized (DFSContentCache.this) {
+              filling.remove(copy);
+            }
+          }
+          return null;
+        }
+      });
+
+    } catch (RejectedExecutionException ree) {
+      // The location has been removed
+      synchronized (this) {
+        filling.remove(copy);
+      }
+    }
+  }
+
+  /**
+   * Deletes all the copies of this location
+   */
+  public synchronized void clear() {
+    if (directory == null)
+      return;
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files)
+        file.delete();
+    }
+  }
+
+  /*
+   * Internals
+   */
+
+  /**
+   * @return the maximum size of the copies of this location, in bytes
+   */
+  private long getMaxSize() {
+    return location.getConfPropLong(ConfProp.PI_DFS_CONTENT_CACHE_SIZE)
+        * 1024L * 1024L;
+  }
+
+  /**
+   * @return whether a file of the given length can be copied in the cache
+   */
+  private boolean fits(long length) {
+    return (directory != null) && (length <= getMaxSize())
+        && (length <= Integer.MAX_VALUE);
+  }
+
+  /**
+   * @return the local copy of the given version of a DFS file, which may
+   *         not exist
+   */
+  private File getCopy(DFSFile file, long length, long modificationTime) {
+    return new File(directory, digest(String.format("%s\n%d\n%d", file
+        .getPath(), length, modificationTime)));
+  }
+
+  /**
+   * Opens a local copy, if it exists and is complete
+   *
+   * @return a stream on the copy, null if there is no such copy
+   */
+  private MappedInputStream openCopy(File copy, long length)
+      throws IOException {
+    // Copies are only deleted while holding the lock
+    synchronized (this) {
+      if (!copy.isFile() || (copy.length() != length))
+        return null;
+
+      // Most recently used
+      copy.setLastModified(System.currentTimeMillis());
+      return new MappedInputStream(map(copy));
+    }
+  }
+
+  /**
+   * Copies the given number of bytes of a DFS file into the cache
+   */
+  private void fetch(DFSFile file, long length, File copy)
+      throws IOException {
+    // Concurrent copies of the same file each write their own temporary
+    File tmp = File.createTempFile(copy.getName(), TMP_SUFFIX, directory);
+    try {
+      InputStream in = file.open();
+      try {
+        RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+        try {
+          DFSTransfer.copy(in, out.getChannel(), length,
+              new NullProgressMonitor());
+        } finally {
+          out.close();
+        }
+      } finally {
+        in.close();
+      }
+
+      if (tmp.length() != length)
+        throw new IOException(String.format(
+            "Incomplete copy of %s: %d bytes instead of %d", file.getPath(),
+            tmp.length(), length));
+
+      synchronized (this) {
+        copy.delete();
+        if (!tmp.renameTo(copy))
+          throw new IOException("Unable to rename " + tmp + " to " + copy);
+      }
+
+    } finally {
+      tmp.delete();
+    }
+  }
+
+  /**
+   * Deletes the least recently used copies until the cache fits its
+   * maximum size
+   *
+   * @param keep a copy that must not be deleted
+   */
+  private synchronized void evict(File keep) {
+    File[] files = directory.listFiles();
+    if (files == null)
+      return;
+
+    long size = 0;
+    for (File file : files)
+      size += file.length();
+
+    long max = getMaxSize();
+    if (size <= max)
+      return;
+
+    Arrays.sort(files, new Comparator<File>() {
+      public int compare(File a, File b) {
+        long ta = a.lastModified();
+        long tb = b.lastModified();
+        return (ta < tb) ? -1 : (ta == tb) ? 0 : 1;
+      }
+    });
+    for (File file : files) {
+      if (size <= max)
+        break;
+      if (file.equals(keep) || file.getName().endsWith(TMP_SUFFIX))
+        continue;
+      long length = file.length();
+      if (file.delete())
+        size -= length;
+    }
+  }
+
+  /**
+   * Maps a local copy in memory
+   */
+  private static ByteBuffer map(File copy) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(copy, "r");
+    try {
+      FileChannel channel = file.getChannel();
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      // The mapping stays valid after the file is closed
+      file.close();
+    }
+  }
+
+  private static String digest(String text) {
+    try {
+      MessageDigest md5 = MessageDigest.getInstance("MD5");
+      byte[] hash = md5.digest(text.getBytes("UTF-8"));
+      StringBuilder hex = new StringBuilder();
+      for (byte b : hash)
+        hex.append(String.format("%02x", b & 0xff));
+      return hex.toString();
+
+    } catch (NoSuchAlgorithmException nsae) {
+      throw new RuntimeException(nsae);
+    } catch (IOException ioe) {
+      throw new RuntimeException(ioe);
+    }
+  }
+
+  /**
+   * Seekable stream reading a memory-mapped file, so that it can be wrapped
+   * into the {@link FSDataInputStream} expected by the DFS readers
+   */
+  private static class MappedInputStream extends InputStream implements
+      Seekable, PositionedReadable {
+
+    private final ByteBuffer buffer;
+
+    MappedInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    /* @inheritDoc */
+    @Override
+    public synchronized int read() {
+      return buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+    }
+
+    /* @inheritDoc */
+    @Override
+    public synchronized int read(byte[] b, int off, int len) {
+      if (len == 0)
+        return 0;
+      if (!buffer.hasRemaining())
+        return -1;
+      len = Math.min(len, buffer.remaining());
+      buffer.get(b, off, len);
+      return len;
+    }
+
+    /* @inheritDoc */
+    @Override
+    public synchronized long skip(long n) {
+      int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+      buffer.position(buffer.position() + skipped);
+      return skipped;
+    }
+
+    /* @inheritDoc */
+    @Override
+    public synchronized int available() {
+      return buffer.remaining();
+    }
+
+    /* @inheritDoc */
+    public synchronized void seek(long position) throws IOException {
+      if ((position < 0) || (position > buffer.limit()))
+        throw new IOException("Cannot seek to " + position + " in a copy of "
+            + buffer.limit() + " bytes");
+      buffer.position((int) position);
+    }
+
+    /* @inheritDoc */
+    public synchronized long getPos() {
+      return buffer.position();
+    }
+
+    /* @inheritDoc */
+    public boolean seekToNewSource(long targetPos) {
+      return false;
+    }
+
+    /* @inheritDoc */
+    public int read(long position, byte[] b, int off, int len) {
+      if (position >= buffer.limit())
+        return -1;
+      len = (int) Math.min(len, buffer.limit() - position);
+      // A view of its own, so that the position of the stream is unchanged
+      ByteBuffer view = buffer.duplicate();
+      view.position((int) position);
+      view.get(b, off, len);
+      return len;
+    }
+
+    /* @inheritDoc */
+    public void readFully(long position, byte[] b, int off, int len)
+        throws IOException {
+      if ((position < 0) || (position + len > buffer.limit()))
+        throw new EOFException("Cannot read " + len + " bytes at "
+            + position + " in a copy of " + buffer.limit() + " bytes");
+      read(position, b, off, len);
+    }
+
+    /* @inheritDoc */
+    public void readFully(long position, byte[] b) throws IOException {
+      readFully(position, b, 0, b.length);
+    }
+  }
+
+}
@@ -72,6 +72,8 @@ public class DFSContentProvider implements ITreeContentProvider,
 
   private final DFSLocationsRoot locationsRoot = new DFSLocationsRoot(this);
 
+  private final DFSRefreshQueue refreshQueue = new DFSRefreshQueue(this);
+
   /*
    * ITreeContentProvider implementation
    */
@@ -111,6 +113,9 @@ public class DFSContentProvider implements ITreeContentProvider,
     if (element instanceof DFSPath) {
       return ((DFSPath) element).getParent();
 
+    } else if (element instanceof DFSLocation) {
+      return locationsRoot;
+
     } else if (element instanceof HadoopCluster) {
       return locationsRoot;
     }
@@ -212,25 +217,74 @@ public class DFSContentProvider implements ITreeContentProvider,
     if (this.viewer == null)
       return;
 
-    Display.getDefault().asyncExec(new Runnable() {
-      public void run() {
-        DFSContentProvider.this.viewer.refresh();
-      }
-    });
+    refreshQueue.refreshAll();
   }
 
   /**
-   * Ask the viewer to refresh a single element
+   * Ask the viewer to refresh a single element. Refreshes are batched, see
+   * {@link DFSRefreshQueue}.
    * 
    * @param content what to refresh
    */
   void refresh(final DFSContent content) {
     if (this.sviewer != null) {
-      Display.getDefault().asyncExec(new Runnable() {
-        public void run() {
-          DFSContentProvider.this.sviewer.refresh(content);
-        }
-      });
+      refreshQueue.refresh(content);
+
+    } else {
+      refresh();
+    }
+  }
+
+  /**
+   * Ask the viewer to append new children to an element, without
+   * refreshing the children it already displays
+   * 
+   * @param parent the parent element
+   * @param children the children to append
+   */
+  void add(final DFSContent parent, final DFSContent[] children) {
+    if (children.length == 0)
+      return;
+
+    if (this.sviewer != null) {
+      refreshQueue.add(parent, children);
+
+    } else {
+      refresh();
+    }
+  }
+
+  /**
+   * Ask the viewer to remove children from an element, without refreshing
+   * the children it keeps
+   * 
+   * @param parent the parent element
+   * @param children the children to remove
+   */
+  void remove(final DFSContent parent, final DFSContent[] children) {
+    if (children.length == 0)
+      return;
+
+    if (this.sviewer != null) {
+      refreshQueue.remove(parent, children);
+
+    } else {
+      refresh();
+    }
+  }
+
+  /**
+   * Ask the viewer to update the labels of elements, without refreshing
+   * their children
+   * 
+   * @param contents the elements to update
+   */
+  void update(final DFSContent[] contents) {
+    if (contents.length == 0)
+      return;
+
+    if (this.sviewer != null) {
+      refreshQueue.update(contents);
 
     } else {
       refresh();
@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.jface.viewers.ViewerSorter;
+
+/**
+ * Sorts the DFS content by name, in the order of the NameNode listings.
+ * Messages, such as the listing in progress, come after the paths.
+ *
+ * <p>
+ * A tree viewer with a sorter finds where to insert new children by binary
+ * search, and the pages of a listing come after the children already
+ * displayed, whereas a viewer without sorter compares each new child with
+ * all the displayed ones. Paths are compared by name only, without
+ * rendering their labels.
+ */
+public class DFSContentSorter extends ViewerSorter {
+
+  /* @inheritDoc */
+  @Override
+  public int category(Object element) {
+    return (element instanceof DFSMessage) ? 1 : 0;
+  }
+
+  /* @inheritDoc */
+  @Override
+  public int compare(Viewer viewer, Object e1, Object e2) {
+    if ((e1 instanceof DFSPath) && (e2 instanceof DFSPath))
+      return ((DFSPath) e1).getPath().getName().compareTo(
+          ((DFSPath) e2).getPath().getName());
+
+    return super.compare(viewer, e1, e2);
+  }
+
+}
@@ -0,0 +1,286 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hdt.dfs.core.DFSTransfers.Item;
+import org.apache.hdt.dfs.core.DFSTransfers.Task;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Copy of DFS files and directories into a folder of another file system,
+ * without staging the data on the local file system.
+ *
+ * <p>
+ * The source trees are listed once. The destination directories are created
+ * first, then the files are piped from the source to the destination
+ * through a bounded number of concurrent workers, largest files first. Each
+ * worker holds a single transfer buffer, so the data in flight is bounded
+ * by the number of workers. The workers run on the transfer pool of the
+ * {@link DFSExecutor} of the destination location.
+ *
+ * <p>
+ * The copies keep the block size and replication of their source, so that
+ * both files usually end up with the same checksum: once a file is copied,
+ * the checksums of the source and of the copy are compared. When the
+ * destination checksums files with other parameters, the copy is read back
+ * and checksummed the way the source was. A copy that cannot be verified
+ * either way is kept, and reported as not verified.
+ *
+ * <p>
+ * A failure does not stop the copy: errors are collected per source path
+ * and reported once the copy is over.
+ */
+class DFSCopy {
+
+  private final FileSystem sourceFs;
+
+  private final FileSystem destinationFs;
+
+  private final Path destination;
+
+  private final DFSExecutor executor;
+
+  private final int streams;
+
+  private final List<Item<FileStatus>> directories =
+      new ArrayList<Item<FileStatus>>();
+
+  private final List<Item<FileStatus>> files =
+      new ArrayList<Item<FileStatus>>();
+
+  /**
+   * Errors indexed by source path
+   */
+  private final Map<Path, IOException> errors =
+      new LinkedHashMap<Path, IOException>();
+
+  /**
+   * @param sourceFs the file system of the files to copy
+   * @param destinationFs the file system receiving the copies
+   * @param destination the folder receiving the copies
+   * @param executor the executor of the destination location
+   * @param streams the number of concurrent workers
+   */
+  DFSCopy(FileSystem sourceFs, FileSystem destinationFs, Path destination,
+      DFSExecutor executor, int streams) {
+    this.sourceFs = sourceFs;
+    this.destinationFs = destinationFs;
+    this.destination = destination;
+    this.executor = executor;
+    this.streams = Math.max(1, streams);
+  }
+
+  /**
+   * Copies files and directories
+   *
+   * @param sources the files and directories to copy into the destination
+   *        folder
+   * @param monitor the progress monitor, whose work is counted in bytes
+   * @return the errors indexed by source path, empty if all the files have
+   *         been copied and verified
+   * @throws IOException if the copy has been interrupted
+   */
+  Map<Path, IOException> run(List<Path> sources, IProgressMonitor monitor)
+      throws IOException {
+    for (Path source : sources) {
+      try {
+        walk(sourceFs.getFileStatus(source), new Path(destination, source
+            .getName()));
+      } catch (IOException ioe) {
+        failed(source, ioe);
+      }
+    }
+
+    // Largest files first
+    Collections.sort(files, new Comparator<Item<FileStatus>>() {
+      public int compare(Item<FileStatus> a, Item<FileStatus> b) {
+        long la = a.source.getLen();
+        long lb = b.source.getLen();
+        return (la > lb) ? -1 : ((la < lb) ? 1 : 0);
+      }
+    });
+
+    List<Task> mkdirs = new ArrayList<Task>();
+    for (final Item<FileStatus> dir : DFSTransfers
+        .getDeepestDirectories(directories)) {
+      mkdirs.add(new Task() {
+        public void run(IProgressMonitor monitor) {
+          try {
+            if (!destinationFs.mkdirs(dir.path))
+              throw new IOException("Unable to create directory "
+                  + dir.path);
+          } catch (IOException ioe) {
+            failed(dir.source.getPath(), ioe);
+          }
+        }
+      });
+    }
+    DFSTransfers.runAll(executor, streams, mkdirs, monitor);
+
+    List<Task> copies = new ArrayList<Task>();
+    for (final Item<FileStatus> file : files) {
+      copies.add(new Task() {
+        public void run(IProgressMonitor monitor) {
+          try {
+            copy(file, monitor);
+          } catch (IOException ioe) {
+            failed(file.source.getPath(), ioe);
+          }
+        }
+      });
+    }
+    DFSTransfers.runAll(executor, streams, copies, monitor);
+    return errors;
+  }
+
+  /*
+   * Internals
+   */
+
+  /**
+   * Copies a single file through a temporary file renamed once complete and
+   * verified
+   */
+  private void copy(Item<FileStatus> item, IProgressMonitor monitor)
+      throws IOException {
+    FileStatus source = item.source;
+    Path tmp = item.path.suffix(DFSTransfer.COPYING_SUFFIX);
+    boolean copied = false;
+    try {
+      long bytes;
+      InputStream in =
+          sourceFs.open(source.getPath(), DFSTransfer.BUFFER_SIZE);
+      try {
+        OutputStream out =
+            destinationFs.create(tmp, true, DFSTransfer.BUFFER_SIZE, source
+                .getReplication(), source.getBlockSize(), null);
+        try {
+          bytes = DFSTransfer.copy(in, out, monitor);
+        } finally {
+          // Closing the stream completes the DFS file: errors matter here
+          out.close();
+        }
+      } finally {
+        in.close();
+      }
+
+      if (bytes < source.getLen()) {
+        if (monitor.isCanceled())
+          return;
+        throw new IOException(String.format(
+            "Incomplete copy of %s: %d bytes instead of %d", source
+                .getPath(), bytes, source.getLen()));
+      }
+
+      boolean verified = verify(source, tmp);
+
+      if (destinationFs.exists(item.path))
+        destinationFs.delete(item.path, false);
+      if (!destinationFs.rename(tmp, item.path))
+        throw new IOException("Unable to rename " + tmp + " to "
+            + item.path);
+      destinationFs.setTimes(item.path, source.getModificationTime(), -1);
+      copied = true;
+
+      if (!verified)
+        failed(source.getPath(), new IOException(String.format(
+            "Copied %s to %s, but the copy could not be verified: the "
+                + "checksums of both file systems cannot be compared",
+            source.getPath(), item.path)));
+
+    } finally {
+      if (!copied) {
+        try {
+          destinationFs.delete(tmp, false);
+        } catch (IOException ioe) {
+          ioe.printStackTrace();
+          // nothing we can do here
+        }
+      }
+    }
+  }
+
+  /**
+   * Compares the checksums of a file and of its copy. When the checksums of
+   * both file systems use different parameters, the copy is checksummed
+   * again with the parameters of the source.
+   *
+   * @return false if the copy could not be verified
+   * @throws IOException if the copy differs from the source
+   */
+  private boolean verify(FileStatus source, Path copy) throws IOException {
+    FileChecksum expected = sourceFs.getFileChecksum(source.getPath());
+    if (expected == null)
+      return false;
+
+    boolean same;
+    FileChecksum actual = destinationFs.getFileChecksum(copy);
+    if ((actual != null)
+        && expected.getAlgorithmName().equals(actual.getAlgorithmName())) {
+      same = expected.equals(actual);
+
+    } else {
+      DFSChecksum checksum = DFSChecksum.of(expected);
+      if (checksum == null)
+        return false;
+      InputStream in = destinationFs.open(copy, DFSTransfer.BUFFER_SIZE);
+      try {
+        same = checksum.matches(in, source.getBlockSize());
+      } finally {
+        in.close();
+      }
+    }
+
+    if (!same)
+      throw new IOException(String.format(
+          "Checksum mismatch between %s and its copy %s", source.getPath(),
+          copy));
+    return true;
+  }
+
+  private void walk(FileStatus status, Path path) throws IOException {
+    if (status.isDir()) {
+      directories.add(new Item<FileStatus>(status, path));
+      for (FileStatus child : sourceFs.listStatus(status.getPath()))
+        walk(child, new Path(path, child.getPath().getName()));
+
+    } else {
+      files.add(new Item<FileStatus>(status, path));
+    }
+  }
+
+  private synchronized void failed(Path path, IOException ioe) {
+    errors.put(path, ioe);
+  }
+
+}
@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hdt.core.cluster.ConfProp;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Disk usage of the children of a DFS folder.
+ *
+ * <p>
+ * The content summaries of the sub-folders are requested concurrently,
+ * through the {@link DFSExecutor} of the location (at most
+ * {@link ConfProp#PI_DFS_CONCURRENT_REQUESTS} at a time), and kept in the
+ * metadata cache for {@link ConfProp#PI_DFS_CACHE_TTL} ms. Files are sized
+ * from the listing of the folder, without further requests. Only one level
+ * is summarized at a time: drilling down into a sub-folder only lists that
+ * sub-folder.
+ */
+public class DFSDiskUsage {
+
+  /**
+   * Disk usage of a file or directory
+   */
+  public static class Entry {
+
+    private final DFSPath path;
+
+    private final ContentSummary summary;
+
+    private final IOException error;
+
+    Entry(DFSPath path, ContentSummary summary, IOException error) {
+      this.path = path;
+      this.summary = summary;
+      this.error = error;
+    }
+
+    /**
+     * @return the file or directory
+     */
+    public DFSPath getPath() {
+      return path;
+    }
+
+    /**
+     * @return the content summary, null if it could not be computed
+     */
+    public ContentSummary getSummary() {
+      return summary;
+    }
+
+    /**
+     * @return the reason why the summary could not be computed, null if it
+     *         has been computed
+     */
+    public IOException getError() {
+      return error;
+    }
+  }
+
+  private DFSDiskUsage() {
+  }
+
+  /**
+   * Summarizes the children of a folder
+   *
+   * @param folder the DFS folder
+   * @param monitor the progress monitor, whose work is counted in children
+   * @return the disk usage of the children, largest space consumed first
+   * @throws IOException if the folder cannot be listed
+   * @throws InterruptedException
+   */
+  public static List<Entry> list(DFSFolder folder, IProgressMonitor monitor)
+      throws IOException, InterruptedException {
+
+    FileStatus[] listing = folder.listStatus();
+    if (listing == null)
+      listing = new FileStatus[0];
+    monitor.beginTask("Computing the disk usage of " + folder.getPath(),
+        listing.length);
+
+    // Send all the requests first, they run concurrently
+    List<DFSPath> children = new ArrayList<DFSPath>();
+    List<Future<ContentSummary>> summaries =
+        new ArrayList<Future<ContentSummary>>();
+    for (FileStatus status : listing) {
+      DFSPath child = folder.createChild(status);
+      children.add(child);
+      if (status.isDir()) {
+        summaries.add(child.getContentSummary());
+      } else {
+        summaries.add(DFSPath.completed(new ContentSummary(status.getLen(),
+            1, 0, -1, status.getLen() * status.getReplication(), -1)));
+      }
+    }
+
+    List<Entry> entries = new ArrayList<Entry>();
+    for (int i = 0; i < children.size(); ++i) {
+      if (monitor.isCanceled())
+        throw new InterruptedException();
+      try {
+        entries.add(new Entry(children.get(i), summaries.get(i).get(), null));
+
+      } catch (ExecutionException e) {
+        IOException ioe =
+            (e.getCause() instanceof IOException) ? (IOException) e
+                .getCause() : new IOException(e.getCause());
+        entries.add(new Entry(children.get(i), null, ioe));
+      }
+      monitor.worked(1);
+    }
+
+    Collections.sort(entries, new Comparator<Entry>() {
+      public int compare(Entry a, Entry b) {
+        long sa = (a.summary != null) ? a.summary.getSpaceConsumed() : -1;
+        long sb = (b.summary != null) ? b.summary.getSpaceConsumed() : -1;
+        return (sa > sb) ? -1 : ((sa < sb) ? 1 : 0);
+      }
+    });
+    monitor.done();
+    return entries;
+  }
+
+}
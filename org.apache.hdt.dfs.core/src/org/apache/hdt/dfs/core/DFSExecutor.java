@@ -0,0 +1,236 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hdt.core.cluster.ConfProp;
+import org.apache.hdt.core.cluster.HadoopCluster;
+
+/**
+ * Executor for the requests sent by the DFS browser to a Hadoop location.
+ *
+ * <p>
+ * At most {@link ConfProp#PI_DFS_CONCURRENT_REQUESTS} requests run at the
+ * same time for a given location, so a slow NameNode cannot pile up an
+ * unbounded number of pending RPCs. Requests are identified by a key: a
+ * request submitted while an identical one is still in flight is not run
+ * again, the caller gets the request already in flight instead.
+ *
+ * <p>
+ * Data transfers run on a second pool of the location, so that long
+ * transfers do not hold back the browser requests. Each transfer uses at
+ * most its own number of streams, and all the transfers of a location
+ * share at most the larger of {@link ConfProp#PI_DFS_DOWNLOAD_STREAMS} and
+ * {@link ConfProp#PI_DFS_UPLOAD_STREAMS} threads.
+ */
+public class DFSExecutor {
+
+  private static final Map<HadoopCluster, DFSExecutor> executors =
+      new HashMap<HadoopCluster, DFSExecutor>();
+
+  /**
+   * Gets the executor of the given location
+   *
+   * @param location the Hadoop location
+   * @return the executor shared by all users of this location
+   */
+  public static synchronized DFSExecutor getInstance(HadoopCluster location) {
+    DFSExecutor executor = executors.get(location);
+    if (executor == null) {
+      executor = new DFSExecutor(location);
+      executors.put(location, executor);
+    }
+    executor.configure();
+    return executor;
+  }
+
+  /**
+   * Gets the executor of the given location, without creating it
+   *
+   * @param location the Hadoop location
+   * @return the executor of this location, null if it has none, for
+   *         instance once removed
+   */
+  static synchronized DFSExecutor getExisting(HadoopCluster location) {
+    return executors.get(location);
+  }
+
+  /**
+   * Stops the executor of a location that has been removed
+   *
+   * @param location the Hadoop location
+   */
+  static synchronized void dispose(HadoopCluster location) {
+    DFSExecutor executor = executors.remove(location);
+    if (executor != null) {
+      executor.pool.shutdownNow();
+      executor.transfers.shutdownNow();
+    }
+  }
+
+  private final HadoopCluster location;
+
+  private final ThreadPoolExecutor pool;
+
+  private final ThreadPoolExecutor transfers;
+
+  /**
+   * Requests in flight, indexed by key
+   */
+  private final ConcurrentMap<String, Runnable> inFlight =
+      new ConcurrentHashMap<String, Runnable>();
+
+  private DFSExecutor(HadoopCluster location) {
+    this.location = location;
+    this.pool =
+        createPool(getConcurrency(), new DFSThreadFactory("DFS " + location));
+    this.transfers =
+        createPool(getTransferStreams(), new DFSThreadFactory("DFS transfer "
+            + location));
+  }
+
+  /**
+   * Runs the given request unless a request with the same key is in flight
+   *
+   * @param key the identifier of the request
+   * @param request the request
+   * @return the request actually in flight for this key: either the given
+   *         request or the one that was already running
+   * @throws RejectedExecutionException if the executor has been disposed
+   */
+  @SuppressWarnings("unchecked")
+  public <R extends Runnable> R execute(final String key, final R request) {
+    Runnable running = inFlight.putIfAbsent(key, request);
+    if (running != null)
+      return (R) running;
+
+    try {
+      pool.execute(new Runnable() {
+        public void run() {
+          try {
+            request.run();
+          } finally {
+            inFlight.remove(key, request);
+          }
+        }
+      });
+
+    } catch (RejectedExecutionException ree) {
+      // Never run: later requests with this key must not wait for it
+      inFlight.remove(key, request);
+      throw ree;
+    }
+    return request;
+  }
+
+  /**
+   * Runs the given request, without looking for an identical request
+   *
+   * @param request the request
+   */
+  public void execute(Runnable request) {
+    pool.execute(request);
+  }
+
+  /**
+   * Runs the given task unless a task with the same key is in flight
+   *
+   * @param key the identifier of the task
+   * @param task the task
+   * @return the future result of the task in flight for this key
+   */
+  public <V> Future<V> submit(String key, Callable<V> task) {
+    return execute(key, new FutureTask<V>(task));
+  }
+
+  /**
+   * Runs the given task, without looking for an identical task
+   *
+   * @param task the task
+   * @return the future result of the task
+   */
+  public <V> Future<V> submit(Callable<V> task) {
+    return pool.submit(task);
+  }
+
+  /**
+   * Runs the given data transfer on the transfer pool of the location
+   *
+   * @param task the transfer, or one stream of a transfer
+   * @return the future result of the task
+   */
+  public <V> Future<V> transfer(Callable<V> task) {
+    return transfers.submit(task);
+  }
+
+  /*
+   * Internals
+   */
+
+  private static ThreadPoolExecutor createPool(int threads,
+      DFSThreadFactory factory) {
+    ThreadPoolExecutor pool =
+        new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), factory);
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  private int getConcurrency() {
+    return (int) Math.max(1,
+        location.getConfPropLong(ConfProp.PI_DFS_CONCURRENT_REQUESTS));
+  }
+
+  private int getTransferStreams() {
+    return (int) Math.max(1, Math.max(location
+        .getConfPropLong(ConfProp.PI_DFS_DOWNLOAD_STREAMS), location
+        .getConfPropLong(ConfProp.PI_DFS_UPLOAD_STREAMS)));
+  }
+
+  /**
+   * Follow changes of the location concurrency settings
+   */
+  private void configure() {
+    resize(pool, getConcurrency());
+    resize(transfers, getTransferStreams());
+  }
+
+  private static void resize(ThreadPoolExecutor pool, int threads) {
+    if (threads > pool.getMaximumPoolSize()) {
+      pool.setMaximumPoolSize(threads);
+      pool.setCorePoolSize(threads);
+
+    } else if (threads < pool.getMaximumPoolSize()) {
+      pool.setCorePoolSize(threads);
+      pool.setMaximumPoolSize(threads);
+    }
+  }
+
+}
@@ -18,19 +18,19 @@
 
 package org.apache.hdt.dfs.core;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Future;
 
 import org.apache.hdt.dfs.core.Activator;
+import org.apache.hdt.core.cluster.ConfProp;
 import org.apache.hdt.core.dialogs.ErrorMessageDialog;
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.Path;
 import org.eclipse.core.resources.IStorage;
@@ -48,10 +48,22 @@ import org.eclipse.ui.PlatformUI;
  */
 public class DFSFile extends DFSPath implements DFSContent {
 
+  /**
+   * Suffix of the local files being downloaded
+   */
+  public static final String PART_SUFFIX = ".part";
+
+  /**
+   * Number of bytes downloaded between two records in the journal
+   */
+  private static final long CHECKPOINT_SIZE = 64L * 1024 * 1024;
+
   protected long length;
 
   protected short replication;
 
+  protected long blockSize;
+
   /**
    * Constructor to upload a file on the distributed file system
    * 
@@ -71,14 +83,39 @@ public class DFSFile extends DFSPath implements DFSContent {
     super(parent, path);
 
     try {
-      FileStatus fs = getDFS().getFileStatus(path);
-      this.length = fs.getLen();
-      this.replication = fs.getReplication();
+      this.setStatus(getDFS().getFileStatus(path));
     } catch (IOException e) {
       e.printStackTrace();
     }
   }
 
+  /**
+   * Constructor for a file whose status is already known (for instance from
+   * the listing of its parent directory): does not contact the NameNode
+   * 
+   * @param parent
+   * @param status
+   */
+  public DFSFile(DFSPath parent, FileStatus status) {
+    super(parent, status);
+  }
+
+  /* @inheritDoc */
+  @Override
+  protected void setStatus(FileStatus status) {
+    super.setStatus(status);
+    this.length = status.getLen();
+    this.replication = status.getReplication();
+    this.blockSize = status.getBlockSize();
+  }
+
+  /* @inheritDoc */
+  @Override
+  protected boolean hasChanged(FileStatus status) {
+    return super.hasChanged(status) || (this.length != status.getLen())
+        || (this.replication != status.getReplication());
+  }
+
   /**
    * Download and view contents of a file
    * 
@@ -122,6 +159,21 @@ public class DFSFile extends DFSPath implements DFSContent {
     File destination = new File(dir, dfsPath.getName());
 
     if (destination.exists()) {
+      // Already downloaded by an interrupted run of this download
+      try {
+        DFSTransferJournal journal = DFSTransferJournal.getInstance();
+        DFSTransferJournal.Entry entry =
+            journal.get(DFSTransferJournal.downloadKey(destination),
+                getSource(), this.length, this.modificationTime);
+        if ((entry != null) && journal.isComplete(entry)
+            && (destination.length() == this.length)) {
+          DFSProgressMonitor.worked(monitor, this.length);
+          return;
+        }
+      } catch (IOException ioe) {
+        ioe.printStackTrace();
+      }
+
       boolean answer =
           MessageDialog.openQuestion(null, "Overwrite existing local file?",
               "The file you are attempting to download from the DFS "
@@ -168,6 +220,18 @@ public class DFSFile extends DFSPath implements DFSContent {
     return this.path.toString();
   }
 
+  public long getLength() {
+    return this.length;
+  }
+
+  public short getReplication() {
+    return this.replication;
+  }
+
+  public long getBlockSize() {
+    return this.blockSize;
+  }
+
   /*
    * 
    */
@@ -176,38 +240,100 @@ public class DFSFile extends DFSPath implements DFSContent {
    * Download the DfsFile to a local file. Use the given monitor to report
    * status of operation.
    * 
-   * @param monitor the status monitor
+   * <p>
+   * Files spanning several blocks are downloaded over
+   * {@link ConfProp#PI_DFS_DOWNLOAD_STREAMS} concurrent streams, and
+   * verified against the DFS file checksum (see {@link DFSRangedDownload}).
+   * 
+   * <p>
+   * The data is written to a partial file, renamed once complete. The
+   * progress is recorded in the {@link DFSTransferJournal}, so an
+   * interrupted download resumes where it stopped.
+   * 
+   * @param monitor the status monitor, whose work is counted in bytes (see
+   *        {@link DFSProgressMonitor})
    * @param file the local file where to put the downloaded file
    * @throws InvocationTargetException
    */
   public void downloadToLocalFile(IProgressMonitor monitor, File file)
       throws InvocationTargetException {
 
-    final int taskSize = 1024;
-
     monitor.setTaskName("Download file " + this.path);
 
-    BufferedOutputStream ostream = null;
-    DataInputStream istream = null;
-
     try {
-      istream = getDFS().open(this.path);
-      ostream = new BufferedOutputStream(new FileOutputStream(file));
-
-      int bytes;
-      byte[] buffer = new byte[taskSize];
-
-      while ((bytes = istream.read(buffer)) >= 0) {
-        if (monitor.isCanceled())
-          return;
-        ostream.write(buffer, 0, bytes);
-        monitor.worked(1);
+      FileStatus status = getDFS().getFileStatus(this.path);
+      DFSTransferJournal journal = DFSTransferJournal.getInstance();
+      DFSTransferJournal.Entry entry =
+          journal.start(DFSTransferJournal.downloadKey(file), getSource(),
+              status.getLen(), status.getModificationTime());
+
+      File part = new File(file.getPath() + PART_SUFFIX);
+      int streams =
+          (int) location.getConfPropLong(ConfProp.PI_DFS_DOWNLOAD_STREAMS);
+      boolean downloaded;
+      if (DFSRangedDownload.accepts(status.getLen(), status.getBlockSize(),
+          streams))
+        downloaded =
+            new DFSRangedDownload(getDFS(), status, part, DFSExecutor
+                .getInstance(location), streams, journal, entry).run(monitor);
+      else
+        downloaded = download(status, part, journal, entry, monitor);
+
+      if (downloaded) {
+        if (file.exists() && !file.delete())
+          throw new IOException("Unable to replace " + file);
+        if (!part.renameTo(file))
+          throw new IOException("Unable to rename " + part + " to " + file);
+        journal.setComplete(entry);
       }
 
     } catch (Exception e) {
       throw new InvocationTargetException(e);
+    }
+  }
+
+  /**
+   * Sequentially download this file to a partial local file, starting from
+   * the offset recorded in the journal
+   * 
+   * @return true if the file has been downloaded, false if the download
+   *         has been cancelled
+   */
+  private boolean download(FileStatus status, File part,
+      DFSTransferJournal journal, DFSTransferJournal.Entry entry,
+      IProgressMonitor monitor) throws IOException {
+
+    long offset = journal.getOffset(entry);
+    if (!part.exists() || (part.length() < offset)) {
+      journal.reset(entry);
+      offset = 0;
+    }
+
+    FSDataInputStream istream = null;
+    RandomAccessFile ostream = null;
+
+    try {
+      istream = getDFS().open(this.path, DFSTransfer.BUFFER_SIZE);
+      ostream = new RandomAccessFile(part, "rw");
+
+      // Drop what was written after the last checkpoint
+      ostream.setLength(offset);
+      FileChannel channel = ostream.getChannel();
+      channel.position(offset);
+      istream.seek(offset);
+      DFSProgressMonitor.worked(monitor, offset);
+
+      long copied;
+      while ((copied =
+          DFSTransfer.copy(istream, channel, CHECKPOINT_SIZE, monitor)) > 0) {
+        offset += copied;
+        channel.force(false);
+        journal.setOffset(entry, offset);
+      }
 
     } finally {
+      journal.flush();
+
       // Clean all opened resources
       if (istream != null) {
         try {
@@ -217,64 +343,47 @@ public class DFSFile extends DFSPath implements DFSContent {
           // nothing we can do here
         }
       }
-      try {
+      if (ostream != null)
         ostream.close();
-      } catch (IOException e) {
-        e.printStackTrace();
-        // nothing we can do here
-      }
     }
+
+    if (monitor.isCanceled())
+      return false;
+    if (offset != status.getLen())
+      throw new IOException(String.format(
+          "Downloaded %d bytes of %s instead of %d", offset, this.path,
+          status.getLen()));
+    return true;
+  }
+
+  /**
+   * Source of the transfers of this file, as recorded in the journal
+   */
+  private String getSource() throws IOException {
+    return getDFS().makeQualified(this.path).toString();
   }
 
   /**
    * Upload a local file to this file on the distributed file system
    * 
-   * @param monitor
+   * @param monitor the status monitor, whose work is counted in bytes (see
+   *        {@link DFSProgressMonitor})
    * @param file
    */
   public void upload(IProgressMonitor monitor, File file) {
 
-    final int taskSize = 1024;
-
     monitor.setTaskName("Upload file " + this.path);
 
-    BufferedInputStream istream = null;
-    DataOutputStream ostream = null;
-
     try {
-      istream = new BufferedInputStream(new FileInputStream(file));
-      ostream = getDFS().create(this.path);
-
-      int bytes;
-      byte[] buffer = new byte[taskSize];
-
-      while ((bytes = istream.read(buffer)) >= 0) {
-        if (monitor.isCanceled())
-          return;
-        ostream.write(buffer, 0, bytes);
-        monitor.worked(1);
-      }
+      DFSTransfer.upload(getDFS(), file, this.path, monitor);
 
-    } catch (Exception e) {
+    } catch (IOException e) {
       ErrorMessageDialog.display(String.format(
           "Unable to uploade file %s to %s", file, this.path), e
           .getLocalizedMessage());
 
     } finally {
-      try {
-        if (istream != null)
-          istream.close();
-      } catch (IOException e) {
-        e.printStackTrace();
-        // nothing we can do here
-      }
-      try {
-        if (ostream != null)
-          ostream.close();
-      } catch (IOException e) {
-        e.printStackTrace();
-        // nothing we can do here
-      }
+      getCache().invalidate(this.path);
     }
   }
 
@@ -286,8 +395,9 @@ public class DFSFile extends DFSPath implements DFSContent {
 
   /* @inheritDoc */
   @Override
-  public int computeDownloadWork() {
-    return 1 + (int) (this.length / 1024);
+  public Future<ContentSummary> getContentSummary() {
+    // The length of the file is already known
+    return completed(new ContentSummary(this.length, 1, 0));
   }
 
   /**
@@ -307,7 +417,7 @@ public class DFSFile extends DFSPath implements DFSContent {
     /* @inheritDoc */
     public InputStream getContents() throws CoreException {
       try {
-        return DFSFile.this.open();
+        return DFSContentCache.getInstance(location).open(DFSFile.this);
 
       } catch (IOException ioe) {
         throw new CoreException(new Status(Status.ERROR,
@@ -0,0 +1,331 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Random access to the content of a DFS file, for viewers that only show a
+ * window of the file at a time.
+ *
+ * <p>
+ * The file is read through positional reads on a single open stream, page
+ * by page. The most recently used pages are kept in a small LRU cache, so
+ * moving back and forth around the same region of the file does not hit
+ * the datanodes again. Searches stream over the file without going through
+ * the cache, so they never hold more than a buffer of the file in memory.
+ *
+ * <p>
+ * A file already copied in the {@link DFSContentCache} is read from its
+ * memory-mapped copy instead of the DFS. Otherwise the first opening of the
+ * file fills the cache in the background, for the next openings.
+ *
+ * <p>
+ * Files that are still being written can be followed: {@link #refresh()}
+ * checks the length of the file with a single status request, and the
+ * bytes appended since are then read like any other range.
+ */
+public class DFSFileReader {
+
+  /**
+   * Size of the pages read from the DFS
+   */
+  public static final int PAGE_SIZE = 64 * 1024;
+
+  /**
+   * Number of pages kept in the cache
+   */
+  private static final int CACHE_PAGES = 64;
+
+  /**
+   * Largest distance scanned to find the boundary of a line
+   */
+  private static final int MAX_LINE_SCAN = PAGE_SIZE;
+
+  private final DFSFile file;
+
+  private final Path path;
+
+  private final DFSContentCache cache;
+
+  private FSDataInputStream in;
+
+  private long length;
+
+  private long modificationTime;
+
+  /**
+   * Cached pages indexed by page number, in access order
+   */
+  private final Map<Long, byte[]> pages =
+      new LinkedHashMap<Long, byte[]>(CACHE_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+          return size() > CACHE_PAGES;
+        }
+      };
+
+  /**
+   * Opens a DFS file
+   *
+   * @param file the file to read
+   * @throws IOException
+   */
+  public DFSFileReader(DFSFile file) throws IOException {
+    this.file = file;
+    this.path = file.getPath();
+    this.cache = DFSContentCache.getInstance(file.location);
+
+    FileStatus status = file.getDFS().getFileStatus(path);
+    this.length = status.getLen();
+    this.modificationTime = status.getModificationTime();
+    this.in = cache.openCopy(file, length, modificationTime);
+    if (this.in == null) {
+      // The DFS for now, the copy for the next openings
+      this.in = file.getDFS().open(path, DFSTransfer.BUFFER_SIZE);
+      cache.fill(file, length, modificationTime);
+    }
+  }
+
+  /**
+   * @return the DFS file
+   */
+  public DFSFile getFile() {
+    return file;
+  }
+
+  /**
+   * @return the length of the file, as known when it was opened or last
+   *         refreshed
+   */
+  public synchronized long getLength() {
+    return length;
+  }
+
+  /**
+   * Checks the current length of the file
+   *
+   * <p>
+   * If the length changed, the stream is reopened: an open stream only
+   * knows about the blocks that were visible when it was opened, and a
+   * local copy only holds the previous content. The pages cached before the
+   * change stay valid, except the last one, which may have been partial.
+   *
+   * @return the new length of the file
+   * @throws IOException
+   */
+  public synchronized long refresh() throws IOException {
+    FileStatus status = file.getDFS().getFileStatus(path);
+    long current = status.getLen();
+    if (current == length)
+      return length;
+
+    // A file that shrank has been truncated or replaced
+    if (current < length)
+      pages.clear();
+    else
+      pages.remove(length / PAGE_SIZE);
+
+    in.close();
+    length = current;
+    modificationTime = status.getModificationTime();
+    in = open();
+    return length;
+  }
+
+  /**
+   * Reads a range of the file
+   *
+   * @param position the offset of the first byte to read
+   * @param size the maximum number of bytes to read
+   * @return the bytes read, fewer than asked only at the end of the file
+   * @throws IOException
+   */
+  public synchronized byte[] read(long position, int size)
+      throws IOException {
+    if ((position < 0) || (size < 0))
+      throw new IllegalArgumentException(String.format(
+          "Invalid range of %d bytes at %d", size, position));
+
+    int available = (int) Math.max(0, Math.min(size, length - position));
+    byte[] data = new byte[available];
+    int done = 0;
+    while (done < available) {
+      long offset = position + done;
+      byte[] page = getPage(offset / PAGE_SIZE);
+      int start = (int) (offset % PAGE_SIZE);
+      int bytes = Math.min(available - done, page.length - start);
+      System.arraycopy(page, start, data, done, bytes);
+      done += bytes;
+    }
+    return data;
+  }
+
+  /**
+   * Finds the start of the line containing the given offset
+   *
+   * @param offset an offset in the file
+   * @return the offset following the last line feed before the given
+   *         offset, or the given offset itself if the line is too long
+   * @throws IOException
+   */
+  public long lineStart(long offset) throws IOException {
+    if (offset <= 0)
+      return 0;
+
+    long from = Math.max(0, offset - MAX_LINE_SCAN);
+    byte[] data = read(from, (int) (offset - from));
+    for (int i = data.length - 1; i >= 0; --i) {
+      if (data[i] == '\n')
+        return from + i + 1;
+    }
+    return (from == 0) ? 0 : offset;
+  }
+
+  /**
+   * Finds the start of the first line starting at or after the given
+   * offset
+   *
+   * @param offset an offset in the file
+   * @return the offset following the first line feed at or after the given
+   *         offset minus one, or the given offset itself if the line is too
+   *         long
+   * @throws IOException
+   */
+  public long nextLineStart(long offset) throws IOException {
+    if (offset <= 0)
+      return 0;
+
+    byte[] data = read(offset - 1, MAX_LINE_SCAN);
+    for (int i = 0; i < data.length; ++i) {
+      if (data[i] == '\n')
+        return offset + i;
+    }
+    return offset;
+  }
+
+  /**
+   * Searches the file for a sequence of bytes
+   *
+   * @param pattern the bytes to search for
+   * @param from the offset where the search starts
+   * @param monitor the progress monitor, whose work is counted in bytes
+   * @return the offset of the first occurrence at or after the given
+   *         offset, -1 if there is none or if the search has been cancelled
+   * @throws IOException
+   */
+  public long find(byte[] pattern, long from, IProgressMonitor monitor)
+      throws IOException {
+    if (pattern.length == 0)
+      return from;
+
+    long end = getLength();
+    byte[] buffer = new byte[DFSTransfer.BUFFER_SIZE + pattern.length - 1];
+
+    // A stream of its own, so that a refresh cannot close it midway
+    FSDataInputStream search;
+    synchronized (this) {
+      search = open();
+    }
+    try {
+      // Consecutive reads overlap so that matches across reads are found
+      long position = Math.max(0, from);
+      while (position + pattern.length <= end) {
+        if (monitor.isCanceled())
+          return -1;
+
+        int bytes = (int) Math.min(buffer.length, end - position);
+        search.readFully(position, buffer, 0, bytes);
+        int match = indexOf(buffer, bytes, pattern);
+        if (match >= 0)
+          return position + match;
+
+        int advance = bytes - pattern.length + 1;
+        position += advance;
+        DFSProgressMonitor.worked(monitor, advance);
+      }
+      return -1;
+
+    } finally {
+      search.close();
+    }
+  }
+
+  /**
+   * Closes the file
+   *
+   * @throws IOException
+   */
+  public synchronized void close() throws IOException {
+    pages.clear();
+    in.close();
+  }
+
+  /*
+   * Internals
+   */
+
+  /**
+   * Opens a stream on the version of the file known to this reader, on its
+   * local copy if there is one
+   */
+  private FSDataInputStream open() throws IOException {
+    FSDataInputStream copy = cache.openCopy(file, length, modificationTime);
+    if (copy != null)
+      return copy;
+    return file.getDFS().open(path, DFSTransfer.BUFFER_SIZE);
+  }
+
+  private byte[] getPage(long index) throws IOException {
+    byte[] page = pages.get(index);
+    if (page == null) {
+      long offset = index * PAGE_SIZE;
+      page = new byte[(int) Math.min(PAGE_SIZE, length - offset)];
+      in.readFully(offset, page, 0, page.length);
+      pages.put(index, page);
+    }
+    return page;
+  }
+
+  /**
+   * Finds the first occurrence of a pattern in the first bytes of an array
+   */
+  private static int indexOf(byte[] data, int length, byte[] pattern) {
+    byte first = pattern[0];
+    int last = length - pattern.length;
+    for (int i = 0; i <= last; ++i) {
+      if (data[i] != first)
+        continue;
+      int j = 1;
+      while ((j < pattern.length) && (data[i + j] == pattern[j]))
+        ++j;
+      if (j == pattern.length)
+        return i;
+    }
+    return -1;
+  }
+
+}
@@ -21,16 +21,27 @@ package org.apache.hdt.dfs.core;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.ContentSummary;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.tools.DistCp;
+import org.apache.hadoop.tools.DistCpOptions;
+import org.apache.hdt.core.cluster.ConfProp;
 import org.apache.hdt.core.cluster.HadoopCluster;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.dialogs.MessageDialog;
 
 /**
@@ -38,12 +49,28 @@ import org.eclipse.jface.dialogs.MessageDialog;
  * 
  * The constructor creates an empty representation of the folder and spawn a
  * thread that will fill
+ * 
+ * <p>
+ * The content of the folder is listed page by page (as served by the
+ * NameNode) and each page is appended to the viewer as soon as it arrives, so
+ * very large directories show up incrementally. The viewer sorts the
+ * children in the order of the listing (see {@link DFSContentSorter}), so
+ * appending a page does not compare it with every child already displayed.
+ * Folders of the same path share a single listing (see {@link DFSListing}).
  */
 public class DFSFolder extends DFSPath implements DFSContent {
 
   static Logger log = Logger.getLogger(DFSFolder.class.getName());
 
-  private DFSContent[] children;
+  private volatile DFSContent[] children;
+
+  /**
+   * Children received so far while a listing is in progress, null otherwise
+   */
+  private List<DFSContent> loading;
+
+  private final DFSMessage loadingMessage =
+      new DFSMessage("Listing folder content...");
 
   protected DFSFolder(DFSContentProvider provider, HadoopCluster location)
       throws IOException {
@@ -55,18 +82,102 @@ public class DFSFolder extends DFSPath implements DFSContent {
     super(parent, path);
   }
 
-  protected void loadDFSFolderChildren() throws IOException {
-    List<DFSPath> list = new ArrayList<DFSPath>();
+  private DFSFolder(DFSPath parent, FileStatus status) {
+    super(parent, status);
+  }
 
-    for (FileStatus status : getDFS().listStatus(this.getPath())) {
-      if (status.isDir()) {
-        list.add(new DFSFolder(this, status.getPath()));
-      } else {
-        list.add(new DFSFile(this, status.getPath()));
+  /**
+   * Subscribe to the listing of this folder, publishing each page of
+   * children to the viewer as it arrives
+   * 
+   * @param list the list receiving the children for this listing; the
+   *        listing is abandoned if the folder starts another one meanwhile
+   */
+  protected void loadDFSFolderChildren(final List<DFSContent> list) {
+    DFSListing.Listener listener = new DFSListing.Listener() {
+      public void pageListed(FileStatus[] page) {
+        DFSContent[] batch = createChildren(page);
+        synchronized (DFSFolder.this) {
+          if (loading != list)
+            return;
+          list.addAll(Arrays.asList(batch));
+        }
+        provider.add(DFSFolder.this, batch);
       }
+
+      public void listingDone(IOException error) {
+        synchronized (DFSFolder.this) {
+          if (loading != list)
+            return;
+          if (error == null)
+            children = list.toArray(new DFSContent[list.size()]);
+          else
+            children =
+                new DFSContent[] { new DFSMessage("Error: "
+                    + error.getLocalizedMessage()) };
+          loading = null;
+        }
+
+        if (error == null) {
+          // The children are displayed already: only drop the loading
+          // message, and update the number of children in the label
+          provider.remove(DFSFolder.this,
+              new DFSContent[] { loadingMessage });
+          provider.update(new DFSContent[] { DFSFolder.this });
+
+        } else {
+          provider.refresh(DFSFolder.this);
+        }
+      }
+    };
+
+    try {
+      DFSListing.list(this).addListener(listener);
+
+    } catch (IOException ioe) {
+      listener.listingDone(ioe);
     }
+  }
 
-    this.children = list.toArray(new DFSContent[list.size()]);
+  /**
+   * Build the children nodes from a cached listing
+   * 
+   * @param listing the statuses of the children
+   * @return the children nodes
+   */
+  private DFSContent[] createChildren(FileStatus[] listing) {
+    DFSContent[] nodes = new DFSContent[listing.length];
+    for (int i = 0; i < listing.length; ++i)
+      nodes[i] = createChild(listing[i]);
+    return nodes;
+  }
+
+  /**
+   * Build the node for a child of this folder from its listing entry: the
+   * status already carries all the metadata so no further RPC is needed
+   * 
+   * @param status the status of the child
+   * @return the child node
+   */
+  DFSPath createChild(FileStatus status) {
+    if (status.isDir())
+      return new DFSFolder(this, status);
+    else
+      return new DFSFile(this, status);
+  }
+
+  /**
+   * Build the node for a folder below this one, and the nodes of the
+   * folders in between, from their paths only: no RPC is sent
+   * 
+   * @param descendant the path of a folder below this one
+   * @return the folder node
+   */
+  DFSFolder createFolder(Path descendant) {
+    if ((descendant == null)
+        || descendant.toUri().getPath().equals(this.path.toUri().getPath()))
+      return this;
+    return new DFSFolder(createFolder(descendant.getParent()), descendant);
   }
 
   /**
@@ -78,23 +189,43 @@ public class DFSFolder extends DFSPath implements DFSContent {
   public void upload(IProgressMonitor monitor, final File file)
       throws IOException {
 
-    if (file.isDirectory()) {
-      Path filePath = new Path(this.path, file.getName());
-      getDFS().mkdirs(filePath);
-      DFSFolder newFolder = new DFSFolder(this, filePath);
-      monitor.worked(1);
-      for (File child : file.listFiles()) {
-        if (monitor.isCanceled())
-          return;
-        newFolder.upload(monitor, child);
-      }
+    Map<File, IOException> errors =
+        upload(monitor, Collections.singletonList(file));
+    if (!errors.isEmpty())
+      throw errors.values().iterator().next();
+  }
 
-    } else if (file.isFile()) {
-      Path filePath = new Path(this.path, file.getName());
-      DFSFile newFile = new DFSFile(this, filePath, file, monitor);
+  /**
+   * Upload the given files and directories into this DfsFolder, through
+   * {@link ConfProp#PI_DFS_UPLOAD_STREAMS} concurrent writers (see
+   * {@link DFSUpload})
+   * 
+   * @param monitor the status monitor, whose work is counted in bytes
+   * @param files the local files and directories to upload
+   * @return the errors indexed by local file, empty if all the files have
+   *         been uploaded
+   * @throws IOException if the file system cannot be reached
+   */
+  public Map<File, IOException> upload(IProgressMonitor monitor,
+      List<File> files) throws IOException {
+
+    int streams =
+        (int) location.getConfPropLong(ConfProp.PI_DFS_UPLOAD_STREAMS);
+    try {
+      Map<File, IOException> errors =
+          new DFSUpload(getDFS(), this.path, DFSExecutor
+              .getInstance(location), streams).run(files, monitor);
+
+      // Nothing left to resume
+      if (errors.isEmpty() && !monitor.isCanceled()) {
+        for (File file : files)
+          DFSTransferJournal.getInstance().removeCompleted(file);
+      }
+      return errors;
 
-    } else {
-      // XXX don't know what the file is?
+    } finally {
+      for (File file : files)
+        getCache().invalidateTree(new Path(this.path, file.getName()));
     }
   }
 
@@ -121,25 +252,143 @@ public class DFSFolder extends DFSPath implements DFSContent {
       }
     }
 
-    // Download all DfsPath children
-    for (Object childObj : getChildren()) {
-      if (childObj instanceof DFSPath) {
-        ((DFSPath) childObj).downloadToLocalDirectory(monitor, destination);
-        monitor.worked(1);
-      }
+    // Download all DfsPath children: the viewer may not have listed this
+    // folder yet, so list it now
+    FileStatus[] listing;
+    try {
+      listing = listStatus();
+
+    } catch (IOException ioe) {
+      ioe.printStackTrace();
+      MessageDialog.openWarning(null, "Download to local directory",
+          "Unable to list the content of \"" + this.path + "\"\n" + ioe);
+      return;
+    }
+
+    for (FileStatus status : listing) {
+      if (monitor.isCanceled())
+        return;
+      createChild(status).downloadToLocalDirectory(monitor, destination);
     }
   }
 
   /* @inheritDoc */
   @Override
-  public int computeDownloadWork() {
-    int work = 1;
-    for (DFSContent child : getChildren()) {
-      if (child instanceof DFSPath)
-        work += ((DFSPath) child).computeDownloadWork();
+  public Future<ContentSummary> getContentSummary() {
+    final DFSMetadataCache cache = getCache();
+    ContentSummary cached = cache.getSummary(this.path);
+    if (cached != null)
+      return completed(cached);
+
+    // One RPC for the whole sub-tree, shared by concurrent requests
+    return DFSExecutor.getInstance(this.location).submit(
+        "summary " + this.path.toUri().getPath(),
+        new Callable<ContentSummary>() {
+          public ContentSummary call() throws IOException {
+            ContentSummary summary = getDFS().getContentSummary(path);
+            cache.putSummary(path, summary);
+            return summary;
+          }
+        });
+  }
+
+  /**
+   * Synchronously list the content of this folder, using the cached
+   * listing if any
+   * 
+   * @return the statuses of the children of this folder
+   * @throws IOException
+   */
+  FileStatus[] listStatus() throws IOException {
+    FileStatus[] listing = getCache().getListing(this.path);
+    if (listing == null) {
+      listing = getDFS().listStatus(this.path);
+      getCache().putListing(this.path, listing);
     }
+    return listing;
+  }
+
+  /**
+   * Moves files and directories of the same location into this folder. A
+   * move only renames the paths on the NameNode: no data is transferred.
+   * Paths whose name is already taken in this folder are not moved.
+   * 
+   * @param paths the files and directories to move
+   * @return the errors indexed by path, empty if all the paths have been
+   *         moved
+   */
+  public Map<Path, IOException> move(Collection<? extends DFSPath> paths) {
+    Map<Path, IOException> errors = new LinkedHashMap<Path, IOException>();
+    for (DFSPath source : paths) {
+      Path destination = new Path(this.path, source.path.getName());
+      try {
+        if (source.location != this.location)
+          throw new IOException("Cannot move " + source.path
+              + " to another location");
+        // A rename onto an existing folder would move the path inside it
+        if (getDFS().exists(destination))
+          throw new IOException("Cannot move " + source.path + ": "
+              + destination + " already exists");
+        if (!getDFS().rename(source.path, destination))
+          throw new IOException("Unable to rename " + source.path + " to "
+              + destination);
+
+      } catch (IOException ioe) {
+        errors.put(source.path, ioe);
+
+      } finally {
+        getCache().invalidateTree(source.path);
+        getCache().invalidateTree(destination);
+      }
+    }
+    return errors;
+  }
+
+  /**
+   * Copies files and directories into this folder, streaming the data
+   * through this workstation (see {@link DFSPath#copy})
+   * 
+   * @param monitor the progress monitor, whose work is counted in bytes
+   * @param paths the files and directories to copy
+   * @return the errors indexed by source path, empty if all the files have
+   *         been copied
+   * @throws IOException if a file system cannot be reached
+   */
+  public Map<Path, IOException> copy(IProgressMonitor monitor,
+      Collection<? extends DFSPath> paths) throws IOException {
+    return copy(paths, this.location, this.path, monitor);
+  }
 
-    return work;
+  /**
+   * Submits a DistCp job copying files and directories of this location
+   * into this folder: the data is copied by the cluster itself. The job
+   * keeps the block size and replication of the files.
+   * 
+   * @param paths the files and directories to copy
+   * @return the job submitted, still running
+   * @throws IOException if the job cannot be submitted
+   */
+  public Job distCp(Collection<? extends DFSPath> paths) throws IOException {
+    List<Path> sources = new ArrayList<Path>();
+    for (DFSPath source : paths)
+      sources.add(source.path);
+
+    DistCpOptions options = new DistCpOptions(sources, this.path);
+    options.preserve(DistCpOptions.FileAttribute.BLOCKSIZE);
+    options.preserve(DistCpOptions.FileAttribute.REPLICATION);
+    options.setBlocking(false);
+
+    try {
+      Configuration conf = new Configuration(location.getConfiguration());
+      return new DistCp(conf, options).execute();
+
+    } catch (IOException ioe) {
+      throw ioe;
+
+    } catch (Exception e) {
+      throw new IOException("Unable to submit DistCp job: " + e.getMessage(),
+          e);
+    }
   }
 
   /**
@@ -149,11 +398,13 @@ public class DFSFolder extends DFSPath implements DFSContent {
    */
   public void mkdir(String folderName) {
     try {
-      getDFS().mkdirs(new Path(this.path, folderName));
+      Path folderPath = new Path(this.path, folderName);
+      getDFS().mkdirs(folderPath);
+      getCache().invalidate(folderPath);
     } catch (IOException ioe) {
       ioe.printStackTrace();
     }
-    doRefresh();
+    refresh();
   }
 
   /*
@@ -162,52 +413,155 @@ public class DFSFolder extends DFSPath implements DFSContent {
 
   /* @inheritDoc */
   public boolean hasChildren() {
-    if (this.children == null)
+    DFSContent[] loaded = this.children;
+    if (loaded == null)
       return true;
     else
-      return (this.children.length > 0);
+      return (loaded.length > 0);
   }
 
   /* @inheritDoc */
   public DFSContent[] getChildren() {
-    if (children == null) {
-      new Job("Connecting to DFS " + location) {
-        @Override
-        protected IStatus run(IProgressMonitor monitor) {
-          try {
-            loadDFSFolderChildren();
-            return Status.OK_STATUS;
-
-          } catch (IOException ioe) {
-            children =
-                new DFSContent[] { new DFSMessage("Error: "
-                    + ioe.getLocalizedMessage()) };
-            return Status.CANCEL_STATUS;
+    DFSContent[] loaded = this.children;
+    if (loaded != null)
+      return loaded;
+
+    final List<DFSContent> list;
+    synchronized (this) {
+      if (this.children != null)
+        return this.children;
+
+      FileStatus[] cached = getCache().getListing(this.path);
+      if (cached != null) {
+        this.children = createChildren(cached);
+        return this.children;
+      }
 
-          } finally {
-            // Under all circumstances, update the UI
-            provider.refresh(DFSFolder.this);
-          }
+      if (this.loading != null) {
+        // Listing in progress: show what we already have
+        List<DFSContent> partial = new ArrayList<DFSContent>(this.loading);
+        partial.add(this.loadingMessage);
+        return partial.toArray(new DFSContent[partial.size()]);
+      }
+
+      list = new ArrayList<DFSContent>();
+      this.loading = list;
+    }
+
+    loadDFSFolderChildren(list);
+
+    return new DFSContent[] { this.loadingMessage };
+  }
+
+  /**
+   * Updates the children of this folder from a new listing. The nodes of the
+   * children that did not change are kept, and only the added, removed and
+   * changed children are pushed to the viewer (see {@link DFSWatcher}).
+   * 
+   * @param listing the statuses of the children, as now known by the
+   *        NameNode
+   */
+  void childrenListed(FileStatus[] listing) {
+    List<DFSContent> added = new ArrayList<DFSContent>();
+    List<DFSContent> removed = new ArrayList<DFSContent>();
+    List<DFSContent> changed = new ArrayList<DFSContent>();
+
+    synchronized (this) {
+      // Not displayed yet: the next expansion uses the cached listing
+      if (this.children == null)
+        return;
+
+      Map<Path, DFSPath> previous = new HashMap<Path, DFSPath>();
+      for (DFSContent child : this.children) {
+        if (child instanceof DFSPath)
+          previous.put(((DFSPath) child).path, (DFSPath) child);
+        else
+          removed.add(child);
+      }
+
+      DFSContent[] nodes = new DFSContent[listing.length];
+      for (int i = 0; i < listing.length; ++i) {
+        FileStatus status = listing[i];
+        DFSPath node = previous.remove(status.getPath());
+        if ((node == null) || ((node instanceof DFSFolder) != status.isDir())) {
+          if (node != null)
+            removed.add(node);
+          node = createChild(status);
+          added.add(node);
+
+        } else if (node.hasChanged(status)) {
+          node.setStatus(status);
+          changed.add(node);
+        }
+        nodes[i] = node;
+      }
+      removed.addAll(previous.values());
+      this.children = nodes;
+    }
+
+    DFSWatcher watcher = DFSWatcher.getInstance(this.location);
+    for (DFSContent child : removed) {
+      if (child instanceof DFSPath)
+        watcher.unwatchTree(((DFSPath) child).path, true);
+    }
+
+    // The label of this folder shows the number of children
+    changed.add(this);
+    provider.remove(this, removed.toArray(new DFSContent[removed.size()]));
+    provider.add(this, added.toArray(new DFSContent[added.size()]));
+    provider.update(changed.toArray(new DFSContent[changed.size()]));
+  }
+
+  /**
+   * Removes deleted children from this folder without listing it again
+   * 
+   * @param deleted the paths of the deleted children
+   */
+  void childrenDeleted(Collection<Path> deleted) {
+    DFSWatcher watcher = DFSWatcher.getInstance(this.location);
+    for (Path path : deleted)
+      watcher.unwatchTree(path, true);
+
+    synchronized (this) {
+      if (this.children != null) {
+        List<DFSContent> remaining = new ArrayList<DFSContent>();
+        for (DFSContent child : this.children) {
+          if (!(child instanceof DFSPath)
+              || !deleted.contains(((DFSPath) child).path))
+            remaining.add(child);
         }
-      }.schedule();
+        this.children = remaining.toArray(new DFSContent[remaining.size()]);
 
-      return new DFSContent[] { new DFSMessage("Listing folder content...") };
+      } else {
+        // A listing in progress may still report the deleted children
+        this.loading = null;
+      }
     }
-    return this.children;
+    this.doRefresh();
   }
 
   /* @inheritDoc */
   @Override
   public void refresh() {
-    this.children = null;
+    getCache().forget(this.path);
+    // The nodes of the children are rebuilt: their watches would be orphans
+    DFSWatcher.getInstance(this.location).unwatchTree(this.path, false);
+    synchronized (this) {
+      this.children = null;
+      this.loading = null;
+    }
     this.doRefresh();
   }
 
   /* @inheritDoc */
   @Override
   public String toString() {
-    return String.format("%s (%s)", super.toString(),
-        this.getChildren().length);
+    // Do not trigger a listing only to render a label
+    DFSContent[] loaded = this.children;
+    if (loaded == null)
+      return super.toString();
+
+    return String.format("%s (%s)", super.toString(), loaded.length);
   }
 
 }
@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.protocol.DirectoryListing;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+
+/**
+ * Listing of a DFS folder, fetched one page at a time as served by the
+ * NameNode.
+ *
+ * <p>
+ * Listings run on the {@link DFSExecutor} of the location and are shared:
+ * all the folders asking for the content of the same path while it is being
+ * listed subscribe to the same listing. A new subscriber first receives the
+ * entries already fetched as a single page, then the following pages as they
+ * arrive. Only the complete listing is kept once done: the same array is
+ * stored in the {@link DFSMetadataCache}.
+ */
+class DFSListing implements Runnable {
+
+  /**
+   * Subscriber of a listing. Notifications are sent from the thread running
+   * the listing.
+   */
+  interface Listener {
+
+    /**
+     * A new page of the listing is available
+     *
+     * @param page the statuses of the entries in this page
+     */
+    void pageListed(FileStatus[] page);
+
+    /**
+     * The listing is over
+     *
+     * @param error the error that stopped the listing, or null if the
+     *        listing completed
+     */
+    void listingDone(IOException error);
+  }
+
+  /**
+   * Gets the listing of the given folder, starting it unless it is already
+   * in progress
+   *
+   * @param folder the folder to list
+   * @return the listing in progress for this folder
+   * @throws IOException if the file system cannot be reached
+   */
+  static DFSListing list(DFSPath folder) throws IOException {
+    DFSListing listing =
+        new DFSListing(folder.getDFS(), folder.getCache(), folder.getPath());
+    return DFSExecutor.getInstance(folder.location).execute(
+        "list " + listing.src, listing);
+  }
+
+  private final DistributedFileSystem dfs;
+
+  private final DFSMetadataCache cache;
+
+  private final Path path;
+
+  private final String src;
+
+  /**
+   * Entries fetched so far, while the listing is in progress
+   */
+  private List<FileStatus> received = new ArrayList<FileStatus>();
+
+  /**
+   * The complete listing once done, as stored in the metadata cache
+   */
+  private FileStatus[] result = null;
+
+  private final List<Listener> listeners = new ArrayList<Listener>();
+
+  private boolean done = false;
+
+  private IOException error = null;
+
+  private DFSListing(DistributedFileSystem dfs, DFSMetadataCache cache,
+      Path path) {
+    this.dfs = dfs;
+    this.cache = cache;
+    this.path = path;
+    this.src = dfs.makeQualified(path).toUri().getPath();
+  }
+
+  /**
+   * Subscribe to this listing
+   *
+   * @param listener the subscriber
+   */
+  void addListener(Listener listener) {
+    synchronized (this) {
+      // Replay what has already been fetched, as a single page
+      FileStatus[] fetched = result;
+      if ((fetched == null) && (received != null))
+        fetched = received.toArray(new FileStatus[received.size()]);
+      if ((fetched != null) && (fetched.length > 0))
+        listener.pageListed(fetched);
+
+      if (!done) {
+        listeners.add(listener);
+        return;
+      }
+    }
+    listener.listingDone(error);
+  }
+
+  /* @inheritDoc */
+  public void run() {
+    try {
+      byte[] startAfter = HdfsFileStatus.EMPTY_NAME;
+      DirectoryListing listing;
+      do {
+        listing = dfs.getClient().listPaths(src, startAfter, false);
+        if (listing == null)
+          throw new FileNotFoundException("File " + path
+              + " does not exist.");
+
+        HdfsFileStatus[] entries = listing.getPartialListing();
+        FileStatus[] page = new FileStatus[entries.length];
+        for (int i = 0; i < entries.length; ++i)
+          page[i] = toFileStatus(entries[i]);
+
+        for (Listener listener : publish(page))
+          listener.pageListed(page);
+
+        startAfter = listing.getLastName();
+      } while (listing.hasMore());
+
+      complete(null);
+
+    } catch (IOException ioe) {
+      complete(ioe);
+    }
+  }
+
+  /*
+   * Internals
+   */
+
+  private synchronized List<Listener> publish(FileStatus[] page) {
+    received.addAll(Arrays.asList(page));
+    return new ArrayList<Listener>(listeners);
+  }
+
+  private void complete(IOException ioe) {
+    List<Listener> subscribers;
+    synchronized (this) {
+      // Only the complete listing is kept, and shared with the cache
+      if (ioe == null)
+        this.result = received.toArray(new FileStatus[received.size()]);
+      this.received = null;
+      this.done = true;
+      this.error = ioe;
+      subscribers = new ArrayList<Listener>(listeners);
+      listeners.clear();
+    }
+    if (ioe == null)
+      cache.putListing(path, result);
+    for (Listener listener : subscribers)
+      listener.listingDone(ioe);
+  }
+
+  /**
+   * Convert a raw listing entry into a qualified {@link FileStatus}
+   */
+  private FileStatus toFileStatus(HdfsFileStatus status) {
+    return new FileStatus(status.getLen(), status.isDir(), status
+        .getReplication(), status.getBlockSize(), status
+        .getModificationTime(), status.getAccessTime(), status
+        .getPermission(), status.getOwner(), status.getGroup(), status
+        .getFullPath(path).makeQualified(dfs));
+  }
+
+}
@@ -21,10 +21,6 @@ package org.apache.hdt.dfs.core;
 import java.io.IOException;
 
 import org.apache.hdt.core.cluster.HadoopCluster;
-import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.jobs.Job;
 
 /**
  * DFS Content representation of a HDFS location
@@ -35,7 +31,12 @@ public class DFSLocation implements DFSContent {
 
   private final HadoopCluster location;
 
-  private DFSContent rootFolder = null;
+  private volatile DFSContent rootFolder = null;
+
+  /**
+   * Whether a connection to the DFS is in progress
+   */
+  private boolean connecting = false;
 
   DFSLocation(DFSContentProvider provider, HadoopCluster server) {
     this.provider = provider;
@@ -54,34 +55,43 @@ public class DFSLocation implements DFSContent {
 
   /* @inheritDoc */
   public DFSContent[] getChildren() {
-    if (this.rootFolder == null) {
-      /*
-       * DfsFolder constructor might block as it contacts the NameNode: work
-       * asynchronously here or this will potentially freeze the UI
-       */
-      new Job("Connecting to DFS " + location) {
-        @Override
-        protected IStatus run(IProgressMonitor monitor) {
-          try {
-            rootFolder = new DFSFolder(provider, location);
-            return Status.OK_STATUS;
-
-          } catch (IOException ioe) {
-            rootFolder =
-                new DFSMessage("Error: " + ioe.getLocalizedMessage());
-            return Status.CANCEL_STATUS;
-
-          } finally {
-            // Under all circumstances, update the UI
-            provider.refresh(DFSLocation.this);
+    DFSContent root = this.rootFolder;
+    if (root != null)
+      return new DFSContent[] { root };
+
+    synchronized (this) {
+      if (!this.connecting) {
+        this.connecting = true;
+
+        /*
+         * Connecting to the DFS might block as it contacts the NameNode: work
+         * asynchronously here or this will potentially freeze the UI
+         */
+        DFSExecutor.getInstance(location).execute(new Runnable() {
+          public void run() {
+            try {
+              DFSFolder folder = new DFSFolder(provider, location);
+              folder.getDFS();
+              rootFolder = folder;
+
+            } catch (IOException ioe) {
+              rootFolder =
+                  new DFSMessage("Error: " + ioe.getLocalizedMessage());
+
+            } finally {
+              synchronized (DFSLocation.this) {
+                connecting = false;
+              }
+              // Under all circumstances, update the UI
+              provider.refresh(DFSLocation.this);
+            }
           }
-        }
-      }.schedule();
-
-      return new DFSContent[] { new DFSMessage("Connecting to DFS "
-          + toString()) };
+        });
+      }
     }
-    return new DFSContent[] { this.rootFolder };
+
+    return new DFSContent[] { new DFSMessage("Connecting to DFS "
+        + toString()) };
   }
 
   /* @inheritDoc */
@@ -92,9 +102,19 @@ public class DFSLocation implements DFSContent {
   /* @inheritDoc */
   public void refresh() {
     this.rootFolder = null;
+    DFSWatcher.dispose(location);
     this.provider.refresh(this);
   }
 
+  /**
+   * @return the root folder of this location, null if the location is not
+   *         connected yet
+   */
+  public DFSFolder getRootFolder() {
+    DFSContent root = this.rootFolder;
+    return (root instanceof DFSFolder) ? (DFSFolder) root : null;
+  }
+
   /*
    * Actions
    */
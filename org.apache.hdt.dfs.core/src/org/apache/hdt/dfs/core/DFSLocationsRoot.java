@@ -63,6 +63,9 @@ public class DFSLocationsRoot implements DFSContent, IHadoopClusterListener {
 
     switch (type) {
       case ServerRegistry.SERVER_STATE_CHANGED: {
+        // The location might now point to another file system
+        DFSMetadataCache.getInstance(location).clear();
+        DFSWatcher.dispose(location);
         this.provider.refresh(map.get(location));
         break;
       }
@@ -76,6 +79,10 @@ public class DFSLocationsRoot implements DFSContent, IHadoopClusterListener {
 
       case ServerRegistry.SERVER_REMOVED: {
         map.remove(location);
+        DFSMetadataCache.dispose(location);
+        DFSWatcher.dispose(location);
+        DFSExecutor.dispose(location);
+        DFSContentCache.dispose(location);
         this.provider.refresh(this);
         break;
       }
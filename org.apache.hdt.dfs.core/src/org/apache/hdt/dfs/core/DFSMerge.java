@@ -0,0 +1,397 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hdt.core.cluster.ConfProp;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Download of the part files of a DFS folder, typically the output of a
+ * job, into a single local file.
+ *
+ * <p>
+ * The parts are the files of the folder, in name order, except the hidden
+ * ones whose name starts with "_" or "." (_SUCCESS, _logs...), as for the
+ * inputs of a job. They are fetched concurrently, largest first, over
+ * {@link ConfProp#PI_DFS_DOWNLOAD_STREAMS} streams of the transfer pool of
+ * the {@link DFSExecutor} of the location.
+ *
+ * <p>
+ * The offset of each part in the local file is known from the lengths of
+ * the parts: the local file is preallocated and each part is written at its
+ * offset. Parts decompressed on the fly do not have a known length, so each
+ * one is decompressed into a local temporary file, and the temporary files
+ * are appended in order once all of them are complete.
+ *
+ * <p>
+ * The merged file is written to a partial file renamed once complete.
+ */
+public class DFSMerge {
+
+  private final DFSFolder folder;
+
+  /**
+   * @param folder the DFS folder holding the parts
+   */
+  public DFSMerge(DFSFolder folder) {
+    this.folder = folder;
+  }
+
+  /**
+   * Lists the parts to merge
+   *
+   * @return the status of the parts, in name order
+   * @throws IOException
+   */
+  public List<FileStatus> listParts() throws IOException {
+    FileStatus[] listing = folder.getDFS().listStatus(folder.getPath());
+    List<FileStatus> parts = new ArrayList<FileStatus>();
+    if (listing == null)
+      return parts;
+
+    for (FileStatus status : listing) {
+      String name = status.getPath().getName();
+      if (!status.isDir() && !name.startsWith("_") && !name.startsWith("."))
+        parts.add(status);
+    }
+    Collections.sort(parts, new Comparator<FileStatus>() {
+      public int compare(FileStatus a, FileStatus b) {
+        return a.getPath().getName().compareTo(b.getPath().getName());
+      }
+    });
+    return parts;
+  }
+
+  /**
+   * Tells whether some parts are compressed with a codec known to the
+   * location
+   *
+   * @param parts the parts, as listed by {@link #listParts()}
+   * @return true if at least one of the parts can be decompressed
+   */
+  public boolean isCompressed(List<FileStatus> parts) {
+    CompressionCodecFactory codecs =
+        new CompressionCodecFactory(folder.location.getConfiguration());
+    for (FileStatus part : parts) {
+      if (codecs.getCodec(part.getPath()) != null)
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Merges parts into a local file, replacing it if it exists
+   *
+   * @param parts the parts, as listed by {@link #listParts()}
+   * @param file the local file
+   * @param decompress whether compressed parts are decompressed
+   * @param monitor the progress monitor, whose work is counted in bytes of
+   *        the parts
+   * @return true if the parts have been merged, false if the merge has been
+   *         cancelled
+   * @throws IOException
+   */
+  public boolean merge(List<FileStatus> parts, File file, boolean decompress,
+      IProgressMonitor monitor) throws IOException {
+
+    final CompressionCodec[] codecs = new CompressionCodec[parts.size()];
+    boolean compressed = false;
+    if (decompress) {
+      CompressionCodecFactory factory =
+          new CompressionCodecFactory(folder.location.getConfiguration());
+      for (int i = 0; i < codecs.length; ++i) {
+        codecs[i] = factory.getCodec(parts.get(i).getPath());
+        compressed |= (codecs[i] != null);
+      }
+    }
+
+    File part = new File(file.getPath() + DFSFile.PART_SUFFIX);
+    boolean merged = false;
+    try {
+      if (compressed)
+        merged = decompress(parts, codecs, part, monitor);
+      else
+        merged = fetch(parts, part, monitor);
+
+      if (merged) {
+        if (file.exists() && !file.delete())
+          throw new IOException("Unable to replace " + file);
+        if (!part.renameTo(file))
+          throw new IOException("Unable to rename " + part + " to " + file);
+      }
+      return merged;
+
+    } finally {
+      if (!merged)
+        part.delete();
+    }
+  }
+
+  /*
+   * Internals
+   */
+
+  /**
+   * Writes each part at its offset in the local file
+   */
+  private boolean fetch(final List<FileStatus> parts, File part,
+      IProgressMonitor monitor) throws IOException {
+
+    final long[] offsets = new long[parts.size()];
+    long length = 0;
+    for (int i = 0; i < offsets.length; ++i) {
+      offsets[i] = length;
+      length += parts.get(i).getLen();
+    }
+
+    final DistributedFileSystem dfs = folder.getDFS();
+    RandomAccessFile local = new RandomAccessFile(part, "rw");
+    try {
+      local.setLength(length);
+      final FileChannel channel = local.getChannel();
+
+      runAll(parts, new Task() {
+        public void run(int index, IProgressMonitor monitor)
+            throws IOException {
+          fetch(dfs, parts.get(index), channel, offsets[index], monitor);
+        }
+      }, monitor);
+
+      if (monitor.isCanceled())
+        return false;
+      channel.force(false);
+
+    } finally {
+      local.close();
+    }
+
+    if (part.length() != length)
+      throw new IOException(String.format(
+          "Merged file %s has %d bytes instead of %d", part, part.length(),
+          length));
+    return true;
+  }
+
+  /**
+   * Decompresses each part into a temporary file, then appends the
+   * temporary files in order
+   */
+  private boolean decompress(final List<FileStatus> parts,
+      final CompressionCodec[] codecs, File part, IProgressMonitor monitor)
+      throws IOException {
+
+    final DistributedFileSystem dfs = folder.getDFS();
+    final File[] tmps = new File[parts.size()];
+    try {
+      for (int i = 0; i < tmps.length; ++i)
+        tmps[i] =
+            File.createTempFile(part.getName() + "-", DFSFile.PART_SUFFIX,
+                part.getAbsoluteFile().getParentFile());
+
+      runAll(parts, new Task() {
+        public void run(int index, IProgressMonitor monitor)
+            throws IOException {
+          decompress(dfs, parts.get(index), codecs[index], tmps[index],
+              monitor);
+        }
+      }, monitor);
+
+      if (monitor.isCanceled())
+        return false;
+
+      monitor.subTask("Appending the parts to " + part);
+      RandomAccessFile out = new RandomAccessFile(part, "rw");
+      try {
+        out.setLength(0);
+        FileChannel channel = out.getChannel();
+        for (File tmp : tmps) {
+          FileInputStream in = new FileInputStream(tmp);
+          try {
+            FileChannel source = in.getChannel();
+            long size = source.size();
+            long position = 0;
+            while (position < size)
+              position +=
+                  source.transferTo(position, size - position, channel);
+          } finally {
+            in.close();
+          }
+          tmp.delete();
+        }
+        channel.force(false);
+
+      } finally {
+        out.close();
+      }
+      return true;
+
+    } finally {
+      for (File tmp : tmps) {
+        if (tmp != null)
+          tmp.delete();
+      }
+    }
+  }
+
+  /**
+   * Copies a part at its offset in the local file
+   */
+  private static void fetch(DistributedFileSystem dfs, FileStatus status,
+      FileChannel channel, long offset, IProgressMonitor monitor)
+      throws IOException {
+
+    ByteBuffer buffer = DFSTransfer.getBuffer();
+    byte[] array = buffer.array();
+    FSDataInputStream in =
+        dfs.open(status.getPath(), DFSTransfer.BUFFER_SIZE);
+    try {
+      long position = 0;
+      while (position < status.getLen()) {
+        if (monitor.isCanceled())
+          return;
+
+        int bytes = (int) Math.min(array.length, status.getLen() - position);
+        in.readFully(array, 0, bytes);
+
+        buffer.clear();
+        buffer.limit(bytes);
+        while (buffer.hasRemaining())
+          channel.write(buffer, offset + position + buffer.position());
+
+        position += bytes;
+        monitor.worked(bytes);
+      }
+
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Decompresses a part into a local file. Progress is counted in bytes of
+   * the part, not of the decompressed data.
+   *
+   * @param codec the codec of the part, null to copy it as is
+   */
+  private static void decompress(DistributedFileSystem dfs,
+      FileStatus status, CompressionCodec codec, File tmp,
+      IProgressMonitor monitor) throws IOException {
+
+    ByteBuffer buffer = DFSTransfer.getBuffer();
+    byte[] array = buffer.array();
+    FSDataInputStream raw =
+        dfs.open(status.getPath(), DFSTransfer.BUFFER_SIZE);
+    Decompressor decompressor =
+        (codec != null) ? CodecPool.getDecompressor(codec) : null;
+    try {
+      InputStream in =
+          (codec != null) ? codec.createInputStream(raw, decompressor) : raw;
+      RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+      try {
+        FileChannel channel = out.getChannel();
+        long read = 0;
+        int bytes;
+        while (!monitor.isCanceled() && ((bytes = in.read(array)) > 0)) {
+          buffer.clear();
+          buffer.limit(bytes);
+          while (buffer.hasRemaining())
+            channel.write(buffer);
+
+          long position = raw.getPos();
+          DFSProgressMonitor.worked(monitor, position - read);
+          read = position;
+        }
+
+      } finally {
+        out.close();
+      }
+
+    } finally {
+      raw.close();
+      if (decompressor != null)
+        CodecPool.returnDecompressor(decompressor);
+    }
+  }
+
+  /**
+   * Work done on one part
+   */
+  private interface Task {
+    void run(int index, IProgressMonitor monitor) throws IOException;
+  }
+
+  /**
+   * Runs a task on every part over concurrent streams, largest parts first,
+   * and waits for all of them to complete
+   *
+   * @throws IOException the first failure of a task
+   */
+  private void runAll(List<FileStatus> parts, final Task task,
+      IProgressMonitor monitor) throws IOException {
+
+    Integer[] order = new Integer[parts.size()];
+    for (int i = 0; i < order.length; ++i)
+      order[i] = i;
+    final long[] lengths = new long[parts.size()];
+    for (int i = 0; i < lengths.length; ++i)
+      lengths[i] = parts.get(i).getLen();
+    Arrays.sort(order, new Comparator<Integer>() {
+      public int compare(Integer a, Integer b) {
+        long la = lengths[a];
+        long lb = lengths[b];
+        return (la > lb) ? -1 : ((la < lb) ? 1 : 0);
+      }
+    });
+
+    List<DFSTransfers.Task> tasks = new ArrayList<DFSTransfers.Task>();
+    for (final int index : order) {
+      tasks.add(new DFSTransfers.Task() {
+        public void run(IProgressMonitor monitor) throws IOException {
+          task.run(index, monitor);
+        }
+      });
+    }
+
+    int streams =
+        (int) folder.location.getConfPropLong(ConfProp.PI_DFS_DOWNLOAD_STREAMS);
+    DFSTransfers.runAll(DFSExecutor.getInstance(folder.location), streams,
+        tasks, monitor);
+  }
+
+}
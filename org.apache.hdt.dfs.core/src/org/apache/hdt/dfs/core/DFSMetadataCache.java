@@ -0,0 +1,383 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hdt.core.cluster.ConfProp;
+import org.apache.hdt.core.cluster.HadoopCluster;
+
+/**
+ * Metadata cache of a Hadoop location: file statuses, folder listings and
+ * content summaries recently retrieved from the NameNode.
+ *
+ * <p>
+ * The cache is shared by all the DFS browsers showing the location. Entries
+ * expire after {@link ConfProp#PI_DFS_CACHE_TTL} milliseconds, and the least
+ * recently used entries are evicted once more than
+ * {@link ConfProp#PI_DFS_CACHE_SIZE} file statuses are cached. Operations
+ * modifying the file system must invalidate the entries they affect.
+ */
+public class DFSMetadataCache {
+
+  private static final Map<HadoopCluster, DFSMetadataCache> caches =
+      new HashMap<HadoopCluster, DFSMetadataCache>();
+
+  /**
+   * Gets the metadata cache of the given location
+   *
+   * @param location the Hadoop location
+   * @return the cache shared by all users of this location
+   */
+  public static synchronized DFSMetadataCache getInstance(
+      HadoopCluster location) {
+
+    DFSMetadataCache cache = caches.get(location);
+    if (cache == null) {
+      cache = new DFSMetadataCache(location);
+      caches.put(location, cache);
+    }
+    return cache;
+  }
+
+  /**
+   * Drops the metadata cache of a location that has been removed
+   *
+   * @param location the Hadoop location
+   */
+  static synchronized void dispose(HadoopCluster location) {
+    caches.remove(location);
+  }
+
+  /**
+   * Cached metadata of a single path. Each kind of metadata keeps the time
+   * it was retrieved and expires on its own: storing one does not extend
+   * the life of the others.
+   */
+  private static class Entry {
+
+    static final Entry EMPTY = new Entry(null, 0, null, 0, null, 0);
+
+    final FileStatus status;
+
+    final long statusTime;
+
+    final FileStatus[] listing;
+
+    final long listingTime;
+
+    final ContentSummary summary;
+
+    final long summaryTime;
+
+    private Entry(FileStatus status, long statusTime, FileStatus[] listing,
+        long listingTime, ContentSummary summary, long summaryTime) {
+      this.status = status;
+      this.statusTime = statusTime;
+      this.listing = listing;
+      this.listingTime = listingTime;
+      this.summary = summary;
+      this.summaryTime = summaryTime;
+    }
+
+    Entry withStatus(FileStatus status) {
+      return new Entry(status, System.currentTimeMillis(), listing,
+          listingTime, summary, summaryTime);
+    }
+
+    Entry withListing(FileStatus[] listing, long listingTime) {
+      return new Entry(status, statusTime, listing, listingTime, summary,
+          summaryTime);
+    }
+
+    Entry withSummary(ContentSummary summary) {
+      return new Entry(status, statusTime, listing, listingTime, summary,
+          System.currentTimeMillis());
+    }
+
+    /**
+     * Copy of this entry without the content summary
+     */
+    Entry withoutSummary() {
+      return new Entry(status, statusTime, listing, listingTime, null, 0);
+    }
+
+    /**
+     * Time the most recent metadata of this entry was retrieved
+     */
+    long timestamp() {
+      return Math.max(statusTime, Math.max(listingTime, summaryTime));
+    }
+
+    int weight() {
+      return 1 + ((listing != null) ? listing.length : 0);
+    }
+  }
+
+  private final HadoopCluster location;
+
+  /**
+   * Entries indexed by path, in access order
+   */
+  private final LinkedHashMap<String, Entry> entries =
+      new LinkedHashMap<String, Entry>(256, 0.75f, true);
+
+  /**
+   * Number of file statuses currently held by the entries
+   */
+  private long weight = 0;
+
+  private DFSMetadataCache(HadoopCluster location) {
+    this.location = location;
+  }
+
+  /**
+   * Gets the cached status of a path
+   *
+   * @param path the path
+   * @return the status, or null if it is unknown or expired
+   */
+  public synchronized FileStatus getStatus(Path path) {
+    Entry entry = lookup(path);
+    return ((entry != null) && !expired(entry.statusTime)) ? entry.status
+        : null;
+  }
+
+  /**
+   * Gets the cached listing of a folder
+   *
+   * @param path the folder path
+   * @return the statuses of the folder children, or null if the listing is
+   *         unknown or expired
+   */
+  public synchronized FileStatus[] getListing(Path path) {
+    Entry entry = lookup(path);
+    return ((entry != null) && !expired(entry.listingTime)) ? entry.listing
+        : null;
+  }
+
+  /**
+   * Gets the cached content summary of a path
+   *
+   * @param path the path
+   * @return the content summary, or null if it is unknown or expired
+   */
+  public synchronized ContentSummary getSummary(Path path) {
+    Entry entry = lookup(path);
+    return ((entry != null) && !expired(entry.summaryTime)) ? entry.summary
+        : null;
+  }
+
+  /**
+   * Stores the status of a path, keeping its other cached metadata
+   *
+   * @param status the status
+   */
+  public synchronized void putStatus(FileStatus status) {
+    store(status.getPath(), lookupOrEmpty(status.getPath()).withStatus(
+        status));
+  }
+
+  /**
+   * Stores the listing of a folder, keeping its other cached metadata
+   *
+   * @param path the folder path
+   * @param listing the statuses of the folder children
+   */
+  public synchronized void putListing(Path path, FileStatus[] listing) {
+    store(path, lookupOrEmpty(path).withListing(listing,
+        System.currentTimeMillis()));
+  }
+
+  /**
+   * Stores the content summary of a path, keeping its other cached metadata
+   *
+   * @param path the path
+   * @param summary the content summary
+   */
+  public synchronized void putSummary(Path path, ContentSummary summary) {
+    store(path, lookupOrEmpty(path).withSummary(summary));
+  }
+
+  /**
+   * Forgets the metadata of a path that has been created or modified: its
+   * own entry, the listing of its parent folder and the content summaries
+   * of all its ancestors.
+   *
+   * @param path the modified path
+   */
+  public synchronized void invalidate(Path path) {
+    remove(key(path));
+    invalidateAncestors(path);
+  }
+
+  /**
+   * Forgets the metadata of a path that has been deleted or renamed: the
+   * entries of the whole sub-tree, the listing of its parent folder and the
+   * content summaries of all its ancestors.
+   *
+   * @param path the root of the modified tree
+   */
+  public synchronized void invalidateTree(Path path) {
+    String root = key(path);
+    String prefix = root.endsWith("/") ? root : root + "/";
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<String, Entry> entry = it.next();
+      if (entry.getKey().equals(root) || entry.getKey().startsWith(prefix)) {
+        weight -= entry.getValue().weight();
+        it.remove();
+      }
+    }
+    invalidateAncestors(path);
+  }
+
+  /**
+   * Forgets the metadata of a path that has been deleted, like
+   * {@link #invalidateTree}, but keeps the cached listing of its parent
+   * folder: the path is only removed from it, so the parent does not need
+   * to be listed again.
+   *
+   * @param path the root of the deleted tree
+   */
+  public synchronized void invalidateDeleted(Path path) {
+    Path parent = path.getParent();
+    Entry entry = (parent != null) ? lookup(parent) : null;
+
+    invalidateTree(path);
+    if ((entry == null) || (entry.listing == null)
+        || expired(entry.listingTime))
+      return;
+
+    String deleted = key(path);
+    List<FileStatus> listing = new ArrayList<FileStatus>();
+    for (FileStatus status : entry.listing) {
+      if (!key(status.getPath()).equals(deleted))
+        listing.add(status);
+    }
+
+    // The parent status changed too, the listing expires as it would have
+    store(parent, Entry.EMPTY.withListing(listing
+        .toArray(new FileStatus[listing.size()]), entry.listingTime));
+  }
+
+  /**
+   * Forgets the metadata of a single path, for instance to force a new
+   * listing of a folder
+   *
+   * @param path the path
+   */
+  public synchronized void forget(Path path) {
+    remove(key(path));
+  }
+
+  /**
+   * Forgets everything
+   */
+  public synchronized void clear() {
+    entries.clear();
+    weight = 0;
+  }
+
+  /*
+   * Internals
+   */
+
+  /**
+   * Cache key of a path: qualified and unqualified versions of the same
+   * path share an entry
+   */
+  private static String key(Path path) {
+    String key = path.toUri().getPath();
+    return (key.length() == 0) ? "/" : key;
+  }
+
+  /**
+   * Gets the entry of a path, dropping it once all its metadata expired
+   */
+  private Entry lookup(Path path) {
+    String key = key(path);
+    Entry entry = entries.get(key);
+    if (entry == null)
+      return null;
+
+    if (expired(entry.timestamp())) {
+      remove(key);
+      return null;
+    }
+    return entry;
+  }
+
+  private Entry lookupOrEmpty(Path path) {
+    Entry entry = lookup(path);
+    return (entry != null) ? entry : Entry.EMPTY;
+  }
+
+  private boolean expired(long time) {
+    long ttl = location.getConfPropLong(ConfProp.PI_DFS_CACHE_TTL);
+    return System.currentTimeMillis() - time > ttl;
+  }
+
+  private void store(Path path, Entry entry) {
+    remove(key(path));
+    entries.put(key(path), entry);
+    weight += entry.weight();
+
+    // Evict the least recently used entries
+    long max = location.getConfPropLong(ConfProp.PI_DFS_CACHE_SIZE);
+    Iterator<Entry> it = entries.values().iterator();
+    while ((weight > max) && it.hasNext()) {
+      Entry eldest = it.next();
+      if (eldest == entry)
+        break;
+      weight -= eldest.weight();
+      it.remove();
+    }
+  }
+
+  private void invalidateAncestors(Path path) {
+    Path parent = path.getParent();
+    if (parent == null)
+      return;
+    remove(key(parent));
+
+    // The sizes of all the ancestors have changed as well
+    for (Path ancestor = parent.getParent(); ancestor != null; ancestor =
+        ancestor.getParent()) {
+      Entry entry = entries.get(key(ancestor));
+      if ((entry != null) && (entry.summary != null))
+        entries.put(key(ancestor), entry.withoutSummary());
+    }
+  }
+
+  private void remove(String key) {
+    Entry entry = entries.remove(key);
+    if (entry != null)
+      weight -= entry.weight();
+  }
+
+}
@@ -20,13 +20,29 @@ package org.apache.hdt.dfs.core;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Logger;
 
 import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.apache.hdt.core.dialogs.ErrorMessageDialog;
 import org.apache.hdt.core.cluster.ConfProp;
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hdt.core.cluster.HadoopCluster;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.dialogs.MessageDialog;
@@ -46,6 +62,14 @@ public abstract class DFSPath implements DFSContent {
 
   protected final DFSPath parent;
 
+  protected long modificationTime;
+
+  protected String owner;
+
+  protected String group;
+
+  protected FsPermission permission;
+
   /**
    * For debugging purpose
    */
@@ -81,6 +105,49 @@ public abstract class DFSPath implements DFSContent {
     this.path = path;
   }
 
+  /**
+   * Create a sub-path representation for the given parent path, using the
+   * status already retrieved from the NameNode (for instance by a directory
+   * listing) so as not to issue another RPC for this path
+   * 
+   * @param parent
+   * @param status
+   */
+  protected DFSPath(DFSPath parent, FileStatus status) {
+    this(parent, status.getPath());
+    this.setStatus(status);
+  }
+
+  /**
+   * Update the cached metadata of this path
+   * 
+   * @param status the status of this path as known by the NameNode
+   */
+  protected void setStatus(FileStatus status) {
+    this.modificationTime = status.getModificationTime();
+    this.owner = status.getOwner();
+    this.group = status.getGroup();
+    this.permission = status.getPermission();
+  }
+
+  /**
+   * Tells whether the cached metadata of this path differs from a newer
+   * status
+   * 
+   * @param status the status of this path as now known by the NameNode
+   * @return true if the status differs from the cached metadata
+   */
+  protected boolean hasChanged(FileStatus status) {
+    return (this.modificationTime != status.getModificationTime())
+        || !equal(this.owner, status.getOwner())
+        || !equal(this.group, status.getGroup())
+        || !equal(this.permission, status.getPermission());
+  }
+
+  private static boolean equal(Object a, Object b) {
+    return (a == null) ? (b == null) : a.equals(b);
+  }
+
   protected void dispose() {
     // Free the DFS connection
   }
@@ -102,6 +169,7 @@ public abstract class DFSPath implements DFSContent {
   public void delete() {
     try {
       getDFS().delete(this.path, true);
+      getCache().invalidateTree(this.path);
 
     } catch (IOException e) {
       e.printStackTrace();
@@ -131,10 +199,33 @@ public abstract class DFSPath implements DFSContent {
   public abstract void downloadToLocalDirectory(IProgressMonitor monitor,
       File dir);
 
+  /**
+   * @return the Hadoop location of this path
+   */
+  public HadoopCluster getLocation() {
+    return location;
+  }
+
   public Path getPath() {
     return this.path;
   }
 
+  public long getModificationTime() {
+    return this.modificationTime;
+  }
+
+  public String getOwner() {
+    return this.owner;
+  }
+
+  public String getGroup() {
+    return this.group;
+  }
+
+  public FsPermission getPermission() {
+    return this.permission;
+  }
+
   /**
    * Gets a connection to the DFS
    * 
@@ -155,6 +246,236 @@ public abstract class DFSPath implements DFSContent {
     return this.dfs;
   }
 
-  public abstract int computeDownloadWork();
+  /**
+   * Gets the metadata cache of the location of this path
+   * 
+   * @return the metadata cache
+   */
+  DFSMetadataCache getCache() {
+    return DFSMetadataCache.getInstance(this.location);
+  }
+
+  /**
+   * Gets the content summary of this path: total length, number of files
+   * and number of directories of the whole sub-tree
+   * 
+   * @return the content summary, possibly still being computed
+   */
+  public abstract Future<ContentSummary> getContentSummary();
+
+  /**
+   * Computes the overall content summary of the given paths, typically to
+   * size a download. The summaries of all the paths are requested at once
+   * and computed concurrently.
+   * 
+   * @param paths the paths to summarize
+   * @return the sum of the content summaries of the paths
+   * @throws IOException if a content summary cannot be computed
+   * @throws InterruptedException
+   */
+  public static ContentSummary getContentSummary(
+      Collection<? extends DFSPath> paths) throws IOException,
+      InterruptedException {
+
+    List<Future<ContentSummary>> summaries =
+        new ArrayList<Future<ContentSummary>>();
+    for (DFSPath path : paths)
+      summaries.add(path.getContentSummary());
+
+    long length = 0;
+    long files = 0;
+    long directories = 0;
+    for (Future<ContentSummary> future : summaries) {
+      try {
+        ContentSummary summary = future.get();
+        length += summary.getLength();
+        files += summary.getFileCount();
+        directories += summary.getDirectoryCount();
+
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException)
+          throw (IOException) e.getCause();
+        throw new IOException(e.getCause());
+      }
+    }
+    return new ContentSummary(length, files, directories);
+  }
+
+  /**
+   * Recursively deletes DFS files and directories. The delete requests run
+   * concurrently on the {@link DFSExecutor} of their location, so at most
+   * {@link ConfProp#PI_DFS_CONCURRENT_REQUESTS} of them are in flight per
+   * location. Once all of them are over, the deleted paths are removed from
+   * their parent folders without listing the folders again.
+   * 
+   * @param paths the files and directories to delete
+   * @param monitor the progress monitor, not started yet: its work is
+   *        counted in delete requests, one per path not contained in
+   *        another deleted folder. Requests not sent yet are skipped once
+   *        it is cancelled.
+   * @return the errors indexed by path, empty if all the paths have been
+   *         deleted
+   * @throws InterruptedException
+   */
+  public static Map<Path, IOException> delete(
+      Collection<? extends DFSPath> paths, final IProgressMonitor monitor)
+      throws InterruptedException {
+
+    // Deleting a folder deletes its content: skip the selected descendants
+    Set<Path> selected = new HashSet<Path>();
+    for (DFSPath path : paths)
+      selected.add(path.path);
+    List<DFSPath> roots = new ArrayList<DFSPath>();
+    for (DFSPath path : paths) {
+      boolean covered = false;
+      for (Path p = path.path.getParent(); p != null; p = p.getParent())
+        covered |= selected.contains(p);
+      if (!covered)
+        roots.add(path);
+    }
+    monitor.beginTask(String.format(
+        "Deleting %d paths from the distributed file system", roots.size()),
+        roots.size());
+
+    final IProgressMonitor shared = DFSProgressMonitor.shared(monitor);
+    final Map<Path, IOException> errors =
+        Collections.synchronizedMap(new LinkedHashMap<Path, IOException>());
+    List<DFSPath> sent = new ArrayList<DFSPath>();
+    List<FutureTask<Boolean>> requests = new ArrayList<FutureTask<Boolean>>();
+    for (final DFSPath path : roots) {
+      FutureTask<Boolean> request =
+          new FutureTask<Boolean>(new Callable<Boolean>() {
+            public Boolean call() {
+              if (shared.isCanceled())
+                return false;
+              try {
+                if (!path.getDFS().delete(path.path, true))
+                  throw new IOException("Unable to delete " + path.path);
+                return true;
+
+              } catch (IOException ioe) {
+                errors.put(path.path, ioe);
+                return false;
+
+              } finally {
+                shared.worked(1);
+              }
+            }
+          });
+      try {
+        DFSExecutor.getInstance(path.location).execute(request);
+      } catch (RejectedExecutionException ree) {
+        errors.put(path.path, new IOException("Unable to delete "
+            + path.path + ": " + ree.getMessage()));
+        shared.worked(1);
+        continue;
+      }
+      sent.add(path);
+      requests.add(request);
+    }
+
+    // Update each parent folder once
+    Map<DFSPath, List<Path>> deleted =
+        new LinkedHashMap<DFSPath, List<Path>>();
+    for (int i = 0; i < sent.size(); ++i) {
+      DFSPath path = sent.get(i);
+      try {
+        if (!requests.get(i).get())
+          continue;
+      } catch (ExecutionException e) {
+        errors.put(path.path, (e.getCause() instanceof IOException)
+            ? (IOException) e.getCause() : new IOException(e.getCause()));
+        continue;
+      }
+
+      path.getCache().invalidateDeleted(path.path);
+      List<Path> siblings = deleted.get(path.parent);
+      if (siblings == null) {
+        siblings = new ArrayList<Path>();
+        deleted.put(path.parent, siblings);
+      }
+      siblings.add(path.path);
+    }
+    for (Map.Entry<DFSPath, List<Path>> entry : deleted.entrySet()) {
+      DFSPath parent = entry.getKey();
+      if (parent instanceof DFSFolder)
+        ((DFSFolder) parent).childrenDeleted(new HashSet<Path>(entry
+            .getValue()));
+      else if (parent != null)
+        parent.refresh();
+    }
+    return errors;
+  }
+
+  /**
+   * Copies DFS files and directories into a folder of a location, possibly
+   * another one than theirs, without staging the data locally. The files
+   * are copied through {@link ConfProp#PI_DFS_UPLOAD_STREAMS} concurrent
+   * workers of the destination location (see {@link DFSCopy}).
+   * 
+   * @param paths the files and directories to copy
+   * @param location the destination location
+   * @param destination the destination folder
+   * @param monitor the progress monitor, whose work is counted in bytes
+   * @return the errors indexed by source path, empty if all the files have
+   *         been copied
+   * @throws IOException if a file system cannot be reached
+   */
+  public static Map<Path, IOException> copy(
+      Collection<? extends DFSPath> paths, HadoopCluster location,
+      Path destination, IProgressMonitor monitor) throws IOException {
+
+    // One copy per source location
+    Map<HadoopCluster, List<DFSPath>> sources =
+        new LinkedHashMap<HadoopCluster, List<DFSPath>>();
+    for (DFSPath path : paths) {
+      List<DFSPath> list = sources.get(path.location);
+      if (list == null) {
+        list = new ArrayList<DFSPath>();
+        sources.put(path.location, list);
+      }
+      list.add(path);
+    }
+
+    FileSystem destinationFs = location.getDFS();
+    int streams =
+        (int) location.getConfPropLong(ConfProp.PI_DFS_UPLOAD_STREAMS);
+    Map<Path, IOException> errors = new LinkedHashMap<Path, IOException>();
+    try {
+      for (List<DFSPath> list : sources.values()) {
+        List<Path> sourcePaths = new ArrayList<Path>();
+        for (DFSPath path : list)
+          sourcePaths.add(path.path);
+        errors.putAll(new DFSCopy(list.get(0).getDFS(), destinationFs,
+            destination, DFSExecutor.getInstance(location), streams).run(
+            sourcePaths, monitor));
+      }
+
+    } finally {
+      DFSMetadataCache cache = DFSMetadataCache.getInstance(location);
+      for (DFSPath path : paths)
+        cache.invalidateTree(new Path(destination, path.path.getName()));
+    }
+    return errors;
+  }
+
+  /**
+   * Wraps a content summary already known into a future
+   * 
+   * @param summary the content summary
+   * @return the completed future
+   */
+  protected static Future<ContentSummary> completed(
+      final ContentSummary summary) {
+
+    FutureTask<ContentSummary> future =
+        new FutureTask<ContentSummary>(new Callable<ContentSummary>() {
+          public ContentSummary call() {
+            return summary;
+          }
+        });
+    future.run();
+    return future;
+  }
 
 }
@@ -0,0 +1,235 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
+
+/**
+ * Progress monitor for DFS transfers, where work is counted in bytes.
+ *
+ * <p>
+ * The total amount of bytes of a transfer easily exceeds the integer range
+ * of a regular progress monitor: the wrapped monitor is given a fixed amount
+ * of work and receives the bytes transferred as fractions of it. Transfers
+ * report progress very often, so the wrapped monitor is only updated every
+ * {@value #WORK_INTERVAL} ms. The transfer rate and the estimated remaining
+ * time are shown as sub-task, updated at most twice a second.
+ */
+public class DFSProgressMonitor extends ProgressMonitorWrapper {
+
+  /**
+   * Amount of work given to the wrapped monitor
+   */
+  private static final int TOTAL_WORK = 10000;
+
+  /**
+   * Minimum delay between two updates of the sub-task (in ms)
+   */
+  private static final long REPORT_INTERVAL = 500;
+
+  /**
+   * Minimum delay between two updates of the wrapped monitor (in ms)
+   */
+  private static final long WORK_INTERVAL = 100;
+
+  private long totalBytes = 0;
+
+  private long doneBytes = 0;
+
+  /**
+   * Bytes transferred but not yet reported to the wrapped monitor
+   */
+  private long pendingBytes = 0;
+
+  private long lastWorked = 0;
+
+  private long startTime;
+
+  private long lastReport = 0;
+
+  public DFSProgressMonitor(IProgressMonitor monitor) {
+    super(monitor);
+  }
+
+  /**
+   * Starts a transfer of the given amount of bytes
+   *
+   * @param name the name of the task
+   * @param totalBytes the number of bytes to transfer
+   */
+  public synchronized void beginTask(String name, long totalBytes) {
+    this.totalBytes = totalBytes;
+    this.doneBytes = 0;
+    this.pendingBytes = 0;
+    this.startTime = System.currentTimeMillis();
+    this.lastReport = 0;
+    this.lastWorked = 0;
+    super.beginTask(name, TOTAL_WORK);
+  }
+
+  /**
+   * Reports bytes transferred
+   *
+   * @param bytes the number of bytes transferred since the last report
+   */
+  public synchronized void transferred(long bytes) {
+    this.doneBytes += bytes;
+    this.pendingBytes += bytes;
+
+    long now = System.currentTimeMillis();
+    if (now - this.lastWorked >= WORK_INTERVAL) {
+      this.lastWorked = now;
+      flushWork();
+    }
+    if (now - this.lastReport >= REPORT_INTERVAL) {
+      this.lastReport = now;
+      super.subTask(getStatus(now));
+    }
+  }
+
+  /**
+   * Counts the given work as bytes transferred
+   */
+  @Override
+  public void worked(int bytes) {
+    transferred(bytes);
+  }
+
+  /* @inheritDoc */
+  @Override
+  public synchronized void done() {
+    flushWork();
+    super.done();
+  }
+
+  public synchronized long getTotalBytes() {
+    return this.totalBytes;
+  }
+
+  public synchronized long getDoneBytes() {
+    return this.doneBytes;
+  }
+
+  /**
+   * Reports bytes transferred to any monitor counting work in bytes
+   *
+   * @param monitor the monitor
+   * @param bytes the number of bytes, possibly beyond the integer range
+   */
+  static void worked(IProgressMonitor monitor, long bytes) {
+    if (monitor instanceof DFSProgressMonitor) {
+      ((DFSProgressMonitor) monitor).transferred(bytes);
+      return;
+    }
+    while (bytes > 0) {
+      int work = (int) Math.min(Integer.MAX_VALUE, bytes);
+      monitor.worked(work);
+      bytes -= work;
+    }
+  }
+
+  /**
+   * Gets a monitor that can be shared by concurrent transfers
+   *
+   * @param monitor the monitor of the whole operation
+   * @return the monitor itself if it is already thread-safe, otherwise a
+   *         wrapper serializing the progress reports
+   */
+  static IProgressMonitor shared(IProgressMonitor monitor) {
+    if (monitor instanceof DFSProgressMonitor)
+      return monitor;
+
+    return new ProgressMonitorWrapper(monitor) {
+      @Override
+      public synchronized void worked(int work) {
+        super.worked(work);
+      }
+
+      @Override
+      public synchronized void internalWorked(double work) {
+        super.internalWorked(work);
+      }
+
+      @Override
+      public synchronized void setTaskName(String name) {
+        super.setTaskName(name);
+      }
+
+      @Override
+      public synchronized void subTask(String name) {
+        super.subTask(name);
+      }
+    };
+  }
+
+  /**
+   * Formats a number of bytes
+   *
+   * @param bytes the number of bytes
+   * @return the string formatted as <tt>&lt;size&gt; &lt;unit&gt;</tt>
+   */
+  public static String formatSize(double bytes) {
+    final String[] units = { "b", "Kb", "Mb", "Gb", "Tb" };
+    int unit = 0;
+    while ((bytes >= 1024.0) && (unit < units.length - 1)) {
+      unit += 1;
+      bytes /= 1024.0;
+    }
+    return String.format("%.1f %s", bytes, units[unit]);
+  }
+
+  /*
+   * Internals
+   */
+
+  private void flushWork() {
+    if ((this.totalBytes > 0) && (this.pendingBytes > 0))
+      super.internalWorked((double) this.pendingBytes * TOTAL_WORK
+          / this.totalBytes);
+    this.pendingBytes = 0;
+  }
+
+  private String getStatus(long now) {
+    long elapsed = Math.max(1, now - this.startTime);
+    double rate = this.doneBytes * 1000.0 / elapsed;
+
+    StringBuilder status = new StringBuilder();
+    status.append(formatSize(this.doneBytes));
+    if (this.totalBytes > 0)
+      status.append(" of ").append(formatSize(this.totalBytes));
+    status.append(" at ").append(formatSize(rate)).append("/s");
+
+    if ((this.totalBytes > this.doneBytes) && (rate > 0)) {
+      long remaining = (long) ((this.totalBytes - this.doneBytes) / rate);
+      status.append(", ").append(formatTime(remaining)).append(" left");
+    }
+    return status.toString();
+  }
+
+  private static String formatTime(long seconds) {
+    if (seconds < 60)
+      return String.format("%d s", seconds);
+    if (seconds < 3600)
+      return String.format("%d min %02d s", seconds / 60, seconds % 60);
+    return String.format("%d h %02d min", seconds / 3600,
+        (seconds % 3600) / 60);
+  }
+
+}
@@ -0,0 +1,282 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Download of a DFS file over several concurrent streams.
+ *
+ * <p>
+ * The file is split into ranges aligned on its blocks. The ranges are
+ * fetched concurrently with positional reads, and each one is written at its
+ * offset into a local file preallocated to the length of the DFS file.
+ *
+ * <p>
+ * While being written, every block is checksummed the way the datanodes do
+ * it, so that once complete the local copy is verified against both the
+ * length and the checksum of the DFS file.
+ *
+ * <p>
+ * The blocks written are recorded in the {@link DFSTransferJournal}: an
+ * interrupted download only fetches the missing blocks when resumed.
+ */
+class DFSRangedDownload {
+
+  /**
+   * Tells whether a file is worth downloading over several streams
+   *
+   * @param length the length of the file
+   * @param blockSize the block size of the file
+   * @param streams the number of streams allowed
+   * @return true if the file spans several blocks and several streams are
+   *         allowed
+   */
+  static boolean accepts(long length, long blockSize, int streams) {
+    return (streams > 1) && (blockSize > 0) && (length > blockSize);
+  }
+
+  private final DistributedFileSystem dfs;
+
+  private final FileStatus status;
+
+  private final File file;
+
+  private final DFSExecutor executor;
+
+  private final int streams;
+
+  private final DFSTransferJournal journal;
+
+  private final DFSTransferJournal.Entry entry;
+
+  /**
+   * Checksum of the DFS file, null if it cannot be reproduced locally
+   */
+  private DFSChecksum checksum;
+
+  /**
+   * Digests of the blocks downloaded so far, indexed by block
+   */
+  private byte[][] digests;
+
+  /**
+   * @param dfs the file system
+   * @param status the status of the file to download
+   * @param file the local file
+   * @param executor the executor of the location, running the streams
+   * @param streams the number of concurrent streams
+   * @param journal the journal recording the progress of the download
+   * @param entry the journal entry of the download
+   */
+  DFSRangedDownload(DistributedFileSystem dfs, FileStatus status, File file,
+      DFSExecutor executor, int streams, DFSTransferJournal journal,
+      DFSTransferJournal.Entry entry) {
+    this.dfs = dfs;
+    this.status = status;
+    this.file = file;
+    this.executor = executor;
+    this.streams = streams;
+    this.journal = journal;
+    this.entry = entry;
+  }
+
+  /**
+   * Downloads the file
+   *
+   * @param monitor the progress monitor, whose work is counted in bytes
+   * @return true if the file has been downloaded and verified, false if the
+   *         download has been cancelled
+   * @throws IOException if the download failed or the local copy does not
+   *         match the DFS file
+   */
+  boolean run(IProgressMonitor monitor) throws IOException {
+    final IProgressMonitor shared = DFSProgressMonitor.shared(monitor);
+    final BlockLocation[] blocks =
+        dfs.getFileBlockLocations(status, 0, status.getLen());
+    checksum = DFSChecksum.of(dfs.getFileChecksum(status.getPath()));
+    digests = new byte[blocks.length][];
+
+    // The blocks recorded are only there if the local file is
+    if (!file.exists() || (file.length() != status.getLen()))
+      journal.reset(entry);
+
+    RandomAccessFile local = new RandomAccessFile(file, "rw");
+    final FSDataInputStream in =
+        dfs.open(status.getPath(), DFSTransfer.BUFFER_SIZE);
+    List<Future<Void>> workers = new ArrayList<Future<Void>>();
+
+    try {
+      local.setLength(status.getLen());
+      final FileChannel channel = local.getChannel();
+
+      // Each stream fetches the next block not yet taken by another one
+      final AtomicInteger next = new AtomicInteger();
+      for (int i = 0; i < Math.min(streams, blocks.length); ++i) {
+        workers.add(executor.transfer(new Callable<Void>() {
+          public Void call() throws IOException {
+            int block;
+            while (!shared.isCanceled()
+                && ((block = next.getAndIncrement()) < blocks.length)) {
+              if (journal.isBlockDone(entry, block)) {
+                resume(block, blocks[block], channel, shared);
+
+              } else if (fetch(block, blocks[block], in, channel, shared)) {
+                channel.force(false);
+                journal.setBlockDone(entry, block);
+              }
+            }
+            return null;
+          }
+        }));
+      }
+
+      for (Future<Void> worker : workers) {
+        try {
+          worker.get();
+
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof IOException)
+            throw (IOException) e.getCause();
+          throw new IOException(e.getCause());
+
+        } catch (InterruptedException e) {
+          throw new IOException("Download of " + status.getPath()
+              + " interrupted");
+        }
+      }
+
+    } finally {
+      // Streams still running after a failure
+      for (Future<Void> worker : workers)
+        worker.cancel(true);
+      try {
+        in.close();
+      } finally {
+        local.close();
+      }
+    }
+
+    journal.flush();
+    if (monitor.isCanceled())
+      return false;
+
+    try {
+      verify();
+    } catch (IOException ioe) {
+      // Do not resume from corrupted data
+      journal.reset(entry);
+      file.delete();
+      throw ioe;
+    }
+    return true;
+  }
+
+  /*
+   * Internals
+   */
+
+  /**
+   * Fetch one block of the file and write it at its offset in the local
+   * file
+   *
+   * @return true if the block has been written, false if the download has
+   *         been cancelled
+   */
+  private boolean fetch(int index, BlockLocation block,
+      FSDataInputStream in, FileChannel channel, IProgressMonitor monitor)
+      throws IOException {
+
+    ByteBuffer buffer = DFSTransfer.getBuffer();
+    byte[] array = buffer.array();
+    DFSChecksum.Block digest =
+        (checksum != null) ? checksum.newBlock() : null;
+
+    long position = block.getOffset();
+    long end = block.getOffset() + block.getLength();
+    while (position < end) {
+      if (monitor.isCanceled())
+        return false;
+
+      int bytes = (int) Math.min(array.length, end - position);
+      in.readFully(position, array, 0, bytes);
+      if (digest != null)
+        digest.update(array, 0, bytes);
+
+      buffer.clear();
+      buffer.limit(bytes);
+      while (buffer.hasRemaining())
+        channel.write(buffer, position + buffer.position());
+
+      position += bytes;
+      monitor.worked(bytes);
+    }
+
+    if (digest != null)
+      digests[index] = digest.digest();
+    return true;
+  }
+
+  /**
+   * Account for a block written by a previous run of the download: only its
+   * checksum is computed, from the local file
+   */
+  private void resume(int index, BlockLocation block, FileChannel channel,
+      IProgressMonitor monitor) throws IOException {
+
+    if (checksum != null)
+      digests[index] =
+          checksum.digest(channel, block.getOffset(), block.getOffset()
+              + block.getLength(), DFSTransfer.getBuffer());
+    DFSProgressMonitor.worked(monitor, block.getLength());
+  }
+
+  /**
+   * Check the local copy against the length and checksum of the DFS file
+   */
+  private void verify() throws IOException {
+    if (file.length() != status.getLen())
+      throw new IOException(String.format(
+          "Downloaded file %s has %d bytes instead of %d", file,
+          file.length(), status.getLen()));
+
+    if ((checksum != null) && !checksum.matches(Arrays.asList(digests)))
+      throw new IOException(String.format(
+          "Checksum of downloaded file %s does not match %s", file, status
+              .getPath()));
+  }
+
+}
@@ -0,0 +1,412 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.util.LineReader;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+ * Record by record access to the content of DFS files that cannot be shown
+ * as raw bytes: SequenceFiles, and text files compressed with one of the
+ * codecs known to the location.
+ *
+ * <p>
+ * Records are decoded as the file is streamed, and only as many as asked
+ * are read, so looking at the first records of a huge output only costs a
+ * few kilobytes of I/O. SequenceFiles can also be entered at any offset,
+ * from the first sync marker following it.
+ *
+ * <p>
+ * A file already copied in the {@link DFSContentCache} is decoded from its
+ * memory-mapped copy instead of the DFS. Otherwise the first opening of the
+ * file fills the cache in the background, for the next openings.
+ */
+public abstract class DFSRecordReader {
+
+  /**
+   * Size of the buffers used to read the file: small, because only a few
+   * records are usually read
+   */
+  private static final int BUFFER_SIZE = 4096;
+
+  /**
+   * Longest text shown for a record
+   */
+  private static final int MAX_RECORD_LENGTH = 4096;
+
+  private static final byte[] SEQUENCE_MAGIC = { 'S', 'E', 'Q' };
+
+  /**
+   * Opens a DFS file as a sequence of records
+   *
+   * @param file the file to read
+   * @return the reader of the file, or null if the file is neither a
+   *         SequenceFile nor a compressed file
+   * @throws IOException
+   */
+  public static DFSRecordReader open(DFSFile file) throws IOException {
+    Configuration conf = new Configuration(file.location.getConfiguration());
+    conf.setInt("io.file.buffer.size", BUFFER_SIZE);
+    DFSContentCache.getInstance(file.location).fill(file, file.getLength(),
+        file.getModificationTime());
+
+    try {
+      if (isSequenceFile(file))
+        return new SequenceFileRecords(file, conf);
+
+      CompressionCodec codec =
+          new CompressionCodecFactory(conf).getCodec(file.getPath());
+      if (codec != null)
+        return new CompressedTextRecords(file, codec);
+
+      return null;
+
+    } catch (RuntimeException re) {
+      // Missing native codecs or record classes show up as runtime errors
+      throw new IOException("Unable to decode " + file.getPath() + ": "
+          + re.getMessage(), re);
+    }
+  }
+
+  /**
+   * Checks whether a DFS file is better shown as records than as raw bytes
+   *
+   * @param file the file
+   * @return whether the file is a SequenceFile or a compressed file
+   * @throws IOException
+   */
+  public static boolean isRecordFile(DFSFile file) throws IOException {
+    CompressionCodecFactory codecs =
+        new CompressionCodecFactory(file.location.getConfiguration());
+    return (codecs.getCodec(file.getPath()) != null) || isSequenceFile(file);
+  }
+
+  private static boolean isSequenceFile(DFSFile file) throws IOException {
+    if (file.getLength() < SEQUENCE_MAGIC.length)
+      return false;
+
+    byte[] magic = new byte[SEQUENCE_MAGIC.length];
+    FSDataInputStream in = openStream(file);
+    try {
+      in.readFully(0, magic);
+    } finally {
+      in.close();
+    }
+    for (int i = 0; i < magic.length; ++i) {
+      if (magic[i] != SEQUENCE_MAGIC[i])
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Opens a stream on a DFS file, on its local copy if there is one
+   */
+  private static FSDataInputStream openStream(DFSFile file)
+      throws IOException {
+    FSDataInputStream copy =
+        DFSContentCache.getInstance(file.location).openCopy(file,
+            file.getLength(), file.getModificationTime());
+    if (copy != null)
+      return copy;
+    return file.getDFS().open(file.getPath(), BUFFER_SIZE);
+  }
+
+  protected final DFSFile file;
+
+  /**
+   * Number of records read so far
+   */
+  protected long count = 0;
+
+  protected DFSRecordReader(DFSFile file) {
+    this.file = file;
+  }
+
+  /**
+   * @return a description of the format of the file
+   */
+  public abstract String getFormat();
+
+  /**
+   * @return the offset in the file reached so far
+   * @throws IOException
+   */
+  public abstract long getPosition() throws IOException;
+
+  /**
+   * @return whether the reader can move to any offset with {@link #seek}
+   */
+  public abstract boolean isSeekable();
+
+  /**
+   * Moves to the first record following the first sync marker at or after
+   * the given offset
+   *
+   * @param position an offset in the file
+   * @throws IOException
+   */
+  public abstract void seek(long position) throws IOException;
+
+  /**
+   * Closes the file
+   *
+   * @throws IOException
+   */
+  public abstract void close() throws IOException;
+
+  /**
+   * Reads the next record
+   *
+   * @return the text of the record, or null at the end of the file
+   * @throws IOException
+   */
+  protected abstract String nextRecord() throws IOException;
+
+  /**
+   * @return the DFS file
+   */
+  public DFSFile getFile() {
+    return file;
+  }
+
+  /**
+   * @return the number of records read since the file was opened or last
+   *         positioned
+   */
+  public synchronized long getCount() {
+    return count;
+  }
+
+  /**
+   * Reads the next records
+   *
+   * @param max the maximum number of records to read
+   * @return the text of the records read, fewer than asked only at the end
+   *         of the file
+   * @throws IOException
+   */
+  public synchronized List<String> next(int max) throws IOException {
+    List<String> records = new ArrayList<String>(max);
+    try {
+      while (records.size() < max) {
+        String record = nextRecord();
+        if (record == null)
+          break;
+        records.add(truncate(record));
+        count += 1;
+      }
+    } catch (RuntimeException re) {
+      throw new IOException("Unable to decode " + file.getPath() + ": "
+          + re.getMessage(), re);
+    }
+    return records;
+  }
+
+  private static String truncate(String record) {
+    if (record.length() <= MAX_RECORD_LENGTH)
+      return record;
+    return record.substring(0, MAX_RECORD_LENGTH) + "... ("
+        + record.length() + " characters)";
+  }
+
+  /**
+   * Records of a SequenceFile
+   *
+   * <p>
+   * Keys and values are shown with their toString(). If their classes are
+   * not available in the workbench, only their sizes are shown.
+   */
+  private static class SequenceFileRecords extends DFSRecordReader {
+
+    private final SequenceFile.Reader reader;
+
+    private final Writable key;
+
+    private final Writable value;
+
+    private final DataOutputBuffer rawKey = new DataOutputBuffer();
+
+    private final SequenceFile.ValueBytes rawValue;
+
+    SequenceFileRecords(DFSFile file, Configuration conf) throws IOException {
+      super(file);
+      FSDataInputStream copy =
+          DFSContentCache.getInstance(file.location).openCopy(file,
+              file.getLength(), file.getModificationTime());
+      if (copy != null)
+        this.reader =
+            new SequenceFile.Reader(conf, SequenceFile.Reader.stream(copy),
+                SequenceFile.Reader.length(file.getLength()));
+      else
+        this.reader =
+            new SequenceFile.Reader(file.getDFS(), file.getPath(), conf);
+      this.rawValue = reader.createValueBytes();
+
+      Writable key = null;
+      Writable value = null;
+      try {
+        key =
+            (Writable) ReflectionUtils.newInstance(reader.getKeyClass(),
+                conf);
+        value =
+            (Writable) ReflectionUtils.newInstance(reader.getValueClass(),
+                conf);
+      } catch (RuntimeException re) {
+        key = null;
+        value = null;
+      }
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public String getFormat() {
+      String compression =
+          reader.isBlockCompressed() ? "block compressed with "
+              + reader.getCompressionCodec().getClass().getSimpleName()
+              : reader.isCompressed() ? "record compressed with "
+                  + reader.getCompressionCodec().getClass().getSimpleName()
+                  : "not compressed";
+      return String.format("SequenceFile<%s, %s>, %s", reader
+          .getKeyClassName(), reader.getValueClassName(), compression);
+    }
+
+    @Override
+    public synchronized long getPosition() throws IOException {
+      return reader.getPosition();
+    }
+
+    @Override
+    public boolean isSeekable() {
+      return true;
+    }
+
+    @Override
+    public synchronized void seek(long position) throws IOException {
+      reader.sync(position);
+      count = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      reader.close();
+    }
+
+    @Override
+    protected String nextRecord() throws IOException {
+      if (key != null) {
+        if (!reader.next(key, value))
+          return null;
+        return key + "\t" + value;
+      }
+
+      rawKey.reset();
+      if (reader.nextRaw(rawKey, rawValue) < 0)
+        return null;
+      return String.format("<%d bytes>\t<%d bytes>", rawKey.getLength(),
+          rawValue.getSize());
+    }
+  }
+
+  /**
+   * Lines of a compressed text file
+   *
+   * <p>
+   * The stream can only be decompressed from its start: this reader cannot
+   * seek.
+   */
+  private static class CompressedTextRecords extends DFSRecordReader {
+
+    private final CompressionCodec codec;
+
+    private final FSDataInputStream in;
+
+    private final Decompressor decompressor;
+
+    private final LineReader lines;
+
+    private final Text line = new Text();
+
+    CompressedTextRecords(DFSFile file, CompressionCodec codec)
+        throws IOException {
+      super(file);
+      this.codec = codec;
+      this.in = openStream(file);
+      this.decompressor = CodecPool.getDecompressor(codec);
+      try {
+        this.lines =
+            new LineReader(codec.createInputStream(in, decompressor),
+                BUFFER_SIZE);
+      } catch (IOException ioe) {
+        close();
+        throw ioe;
+      }
+    }
+
+    @Override
+    public String getFormat() {
+      return "Text compressed with " + codec.getClass().getSimpleName();
+    }
+
+    @Override
+    public synchronized long getPosition() throws IOException {
+      return in.getPos();
+    }
+
+    @Override
+    public boolean isSeekable() {
+      return false;
+    }
+
+    @Override
+    public void seek(long position) {
+      throw new UnsupportedOperationException(
+          "Compressed text can only be read from its start");
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      CodecPool.returnDecompressor(decompressor);
+      in.close();
+    }
+
+    @Override
+    protected String nextRecord() throws IOException {
+      if (lines.readLine(line) == 0)
+        return null;
+      return line.toString();
+    }
+  }
+
+}
@@ -0,0 +1,291 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hdt.ui.Activator;
+import org.apache.hdt.ui.preferences.PreferenceConstants;
+import org.eclipse.jface.viewers.AbstractTreeViewer;
+import org.eclipse.jface.viewers.StructuredViewer;
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Queue of pending updates of the DFS viewer.
+ *
+ * <p>
+ * Updates can be requested from any thread. They are collected and applied
+ * together on the UI thread, at most once every
+ * {@link PreferenceConstants#P_DFS_REFRESH_INTERVAL} milliseconds. Before
+ * being applied, the updates are simplified: an element is refreshed only
+ * once, and not at all if one of its ancestors is refreshed too. Removals
+ * are applied before additions, and label updates last.
+ */
+class DFSRefreshQueue {
+
+  private final DFSContentProvider provider;
+
+  /**
+   * Whether the whole viewer needs to be refreshed
+   */
+  private boolean all = false;
+
+  /**
+   * Elements to refresh
+   */
+  private final Set<DFSContent> dirty = new LinkedHashSet<DFSContent>();
+
+  /**
+   * Children to append, indexed by parent
+   */
+  private final Map<DFSContent, List<DFSContent>> added =
+      new LinkedHashMap<DFSContent, List<DFSContent>>();
+
+  /**
+   * Children to remove, indexed by parent
+   */
+  private final Map<DFSContent, List<DFSContent>> removed =
+      new LinkedHashMap<DFSContent, List<DFSContent>>();
+
+  /**
+   * Elements whose labels need to be updated
+   */
+  private final Set<DFSContent> updated = new LinkedHashSet<DFSContent>();
+
+  /**
+   * Whether a flush of the queue is scheduled
+   */
+  private boolean scheduled = false;
+
+  DFSRefreshQueue(DFSContentProvider provider) {
+    this.provider = provider;
+  }
+
+  /**
+   * Queue a refresh of the whole viewer
+   */
+  synchronized void refreshAll() {
+    this.all = true;
+    schedule();
+  }
+
+  /**
+   * Queue a refresh of an element
+   *
+   * @param content the element to refresh
+   */
+  synchronized void refresh(DFSContent content) {
+    this.dirty.add(content);
+    schedule();
+  }
+
+  /**
+   * Queue new children to be appended to an element
+   *
+   * @param parent the parent element
+   * @param children the children to append
+   */
+  synchronized void add(DFSContent parent, DFSContent[] children) {
+    List<DFSContent> list = this.added.get(parent);
+    if (list == null) {
+      list = new ArrayList<DFSContent>();
+      this.added.put(parent, list);
+    }
+    list.addAll(Arrays.asList(children));
+    schedule();
+  }
+
+  /**
+   * Queue children to be removed from an element
+   *
+   * @param parent the parent element
+   * @param children the children to remove
+   */
+  synchronized void remove(DFSContent parent, DFSContent[] children) {
+    // Children appended and removed before the viewer saw them
+    List<DFSContent> pending = this.added.get(parent);
+    List<DFSContent> list = this.removed.get(parent);
+    if (list == null) {
+      list = new ArrayList<DFSContent>();
+      this.removed.put(parent, list);
+    }
+    for (DFSContent child : children) {
+      if ((pending == null) || !pending.remove(child))
+        list.add(child);
+    }
+    schedule();
+  }
+
+  /**
+   * Queue an update of the labels of elements
+   *
+   * @param contents the elements to update
+   */
+  synchronized void update(DFSContent[] contents) {
+    this.updated.addAll(Arrays.asList(contents));
+    schedule();
+  }
+
+  /*
+   * Internals
+   */
+
+  private void schedule() {
+    if (this.scheduled)
+      return;
+    this.scheduled = true;
+
+    final Display display = Display.getDefault();
+    display.asyncExec(new Runnable() {
+      public void run() {
+        int interval = getInterval();
+        if (interval > 0) {
+          display.timerExec(interval, new Runnable() {
+            public void run() {
+              flush();
+            }
+          });
+        } else {
+          flush();
+        }
+      }
+    });
+  }
+
+  private static int getInterval() {
+    Activator plugin = Activator.getDefault();
+    if (plugin == null)
+      return 0;
+    return plugin.getPreferenceStore().getInt(
+        PreferenceConstants.P_DFS_REFRESH_INTERVAL);
+  }
+
+  /**
+   * Apply all pending updates to the viewer (UI thread)
+   */
+  private void flush() {
+    boolean refreshAll;
+    Set<DFSContent> refreshed;
+    Map<DFSContent, List<DFSContent>> appended;
+    Map<DFSContent, List<DFSContent>> dropped;
+    Set<DFSContent> relabeled;
+
+    synchronized (this) {
+      refreshAll = this.all;
+      refreshed = new LinkedHashSet<DFSContent>(this.dirty);
+      appended = new LinkedHashMap<DFSContent, List<DFSContent>>(this.added);
+      dropped = new LinkedHashMap<DFSContent, List<DFSContent>>(this.removed);
+      relabeled = new LinkedHashSet<DFSContent>(this.updated);
+      this.all = false;
+      this.dirty.clear();
+      this.added.clear();
+      this.removed.clear();
+      this.updated.clear();
+      this.scheduled = false;
+    }
+
+    Viewer viewer = provider.getViewer();
+    if (viewer == null)
+      return;
+    Control control = viewer.getControl();
+    if ((control == null) || control.isDisposed())
+      return;
+
+    if (refreshAll || !(viewer instanceof StructuredViewer)) {
+      viewer.refresh();
+      return;
+    }
+
+    // Drop the elements whose ancestors will be refreshed anyway
+    Set<DFSContent> roots = new LinkedHashSet<DFSContent>();
+    for (DFSContent content : refreshed) {
+      if (!hasAncestorIn(content, refreshed))
+        roots.add(content);
+    }
+
+    StructuredViewer sviewer = (StructuredViewer) viewer;
+    control.setRedraw(false);
+    try {
+      for (DFSContent content : roots)
+        sviewer.refresh(content);
+
+      for (Map.Entry<DFSContent, List<DFSContent>> entry : dropped
+          .entrySet()) {
+        DFSContent parent = entry.getKey();
+        if (roots.contains(parent) || hasAncestorIn(parent, roots))
+          continue;
+
+        List<DFSContent> children = entry.getValue();
+        if (viewer instanceof AbstractTreeViewer)
+          ((AbstractTreeViewer) viewer).remove(parent, children.toArray());
+        else
+          sviewer.refresh(parent);
+      }
+
+      for (Map.Entry<DFSContent, List<DFSContent>> entry : appended
+          .entrySet()) {
+        DFSContent parent = entry.getKey();
+        if (roots.contains(parent) || hasAncestorIn(parent, roots))
+          continue;
+
+        List<DFSContent> children = entry.getValue();
+        if (viewer instanceof AbstractTreeViewer)
+          ((AbstractTreeViewer) viewer).add(parent, children.toArray());
+        else
+          sviewer.refresh(parent);
+      }
+
+      List<DFSContent> labels = new ArrayList<DFSContent>();
+      for (DFSContent content : relabeled) {
+        if (!roots.contains(content) && !hasAncestorIn(content, roots))
+          labels.add(content);
+      }
+      if (!labels.isEmpty())
+        sviewer.update(labels.toArray(), null);
+
+    } finally {
+      control.setRedraw(true);
+    }
+  }
+
+  /**
+   * Tells whether one of the ancestors of an element is in the given set
+   */
+  private boolean hasAncestorIn(DFSContent content,
+      Collection<DFSContent> set) {
+
+    Object parent = provider.getParent(content);
+    while (parent != null) {
+      if (set.contains(parent))
+        return true;
+      parent = provider.getParent(parent);
+    }
+    return false;
+  }
+
+}
@@ -0,0 +1,458 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.GlobPattern;
+import org.apache.hadoop.fs.Path;
+import org.apache.hdt.core.cluster.ConfProp;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Search of the files and directories of a DFS folder matching a set of
+ * criteria.
+ *
+ * <p>
+ * The namespace is crawled depth first on the {@link DFSExecutor} of the
+ * location, at most {@link ConfProp#PI_DFS_CONCURRENT_REQUESTS} folders at a
+ * time: each listing reports the matching children of its folder, and puts
+ * the paths of its sub-folders on top of a backlog. The backlog thus holds
+ * the sub-folders of the folders being explored rather than a whole level of
+ * the tree, and nodes are only built for the matches. Listings still in the
+ * metadata cache are reused; the others are sent to the NameNode at most
+ * {@link ConfProp#PI_DFS_SEARCH_RATE} per second, and the crawl can be
+ * limited in depth, so that a search does not overload the NameNode.
+ *
+ * <p>
+ * Matches are reported as soon as their folder is listed, while the crawl
+ * goes on.
+ */
+public class DFSSearch {
+
+  /**
+   * A file or directory matching the search
+   */
+  public static class Match {
+
+    private final DFSPath path;
+
+    private final FileStatus status;
+
+    Match(DFSPath path, FileStatus status) {
+      this.path = path;
+      this.status = status;
+    }
+
+    /**
+     * @return the node of the matching file or directory
+     */
+    public DFSPath getPath() {
+      return path;
+    }
+
+    /**
+     * @return the status of the matching file or directory
+     */
+    public FileStatus getStatus() {
+      return status;
+    }
+  }
+
+  /**
+   * Receiver of the matches of a search
+   */
+  public interface Listener {
+
+    /**
+     * Notifies the matches found in one folder. Called from the crawl
+     * workers.
+     *
+     * @param matches the matching children of the folder
+     */
+    void found(List<Match> matches);
+  }
+
+  private final DFSFolder root;
+
+  private Pattern name = null;
+
+  private long minSize = -1;
+
+  private long maxSize = -1;
+
+  private long modifiedAfter = -1;
+
+  private long modifiedBefore = -1;
+
+  private String owner = null;
+
+  private int maxDepth = Integer.MAX_VALUE;
+
+  /**
+   * @param root the folder to search
+   */
+  public DFSSearch(DFSFolder root) {
+    this.root = root;
+  }
+
+  /**
+   * @return the folder searched
+   */
+  public DFSFolder getRoot() {
+    return root;
+  }
+
+  /**
+   * Matches the names against a glob pattern, such as "part-*.gz"
+   *
+   * @param glob the pattern, null to match all names
+   */
+  public void setGlob(String glob) {
+    this.name = (glob != null) ? GlobPattern.compile(glob) : null;
+  }
+
+  /**
+   * Matches the names against a regular expression
+   *
+   * @param regex the regular expression, null to match all names
+   */
+  public void setNameRegex(String regex) {
+    this.name = (regex != null) ? Pattern.compile(regex) : null;
+  }
+
+  /**
+   * Only matches files whose length is in the given range. Directories do
+   * not match once a range is set.
+   *
+   * @param min the minimum length in bytes, -1 for no minimum
+   * @param max the maximum length in bytes, -1 for no maximum
+   */
+  public void setSizeRange(long min, long max) {
+    this.minSize = min;
+    this.maxSize = max;
+  }
+
+  /**
+   * Only matches the files and directories modified in the given period
+   *
+   * @param after the earliest modification time (in ms), -1 for no limit
+   * @param before the modification time (in ms) before which paths must
+   *        have been modified, -1 for no limit
+   */
+  public void setModifiedRange(long after, long before) {
+    this.modifiedAfter = after;
+    this.modifiedBefore = before;
+  }
+
+  /**
+   * @param owner the owner of the files and directories to match, null to
+   *        match all owners
+   */
+  public void setOwner(String owner) {
+    this.owner = owner;
+  }
+
+  /**
+   * @param maxDepth the depth of the deepest folders listed, the searched
+   *        folder being at depth 0
+   */
+  public void setMaxDepth(int maxDepth) {
+    this.maxDepth = maxDepth;
+  }
+
+  /**
+   * Crawls the folder, until all its sub-folders have been listed or the
+   * search is cancelled
+   *
+   * @param listener the receiver of the matches
+   * @param monitor the progress monitor
+   * @return the listing errors indexed by folder, empty if all the folders
+   *         could be listed
+   */
+  public Map<Path, IOException> run(Listener listener,
+      IProgressMonitor monitor) {
+    return new Crawl(listener, DFSProgressMonitor.shared(monitor)).run();
+  }
+
+  /*
+   * Internals
+   */
+
+  private boolean matches(FileStatus status) {
+    if ((name != null) && !name.matcher(status.getPath().getName()).matches())
+      return false;
+    if ((owner != null) && !owner.equals(status.getOwner()))
+      return false;
+    if ((modifiedAfter >= 0)
+        && (status.getModificationTime() < modifiedAfter))
+      return false;
+    if ((modifiedBefore >= 0)
+        && (status.getModificationTime() >= modifiedBefore))
+      return false;
+
+    if ((minSize >= 0) || (maxSize >= 0)) {
+      if (status.isDir())
+        return false;
+      if ((minSize >= 0) && (status.getLen() < minSize))
+        return false;
+      if ((maxSize >= 0) && (status.getLen() > maxSize))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * A folder left to list
+   */
+  private static class Dir {
+
+    final Path path;
+
+    final int depth;
+
+    Dir(Path path, int depth) {
+      this.path = path;
+      this.depth = depth;
+    }
+  }
+
+  /**
+   * State of one run of the search
+   */
+  private class Crawl {
+
+    private final Listener listener;
+
+    private final IProgressMonitor monitor;
+
+    private final DFSExecutor executor;
+
+    private final DFSMetadataCache cache;
+
+    /**
+     * Maximum number of folders listed at the same time
+     */
+    private final int workers;
+
+    /**
+     * Minimum interval between two listings sent to the NameNode (in ns)
+     */
+    private final long interval;
+
+    /**
+     * Time at which the next listing may be sent (in ns)
+     */
+    private long next = System.nanoTime();
+
+    /**
+     * Folders left to list, the deepest on top
+     */
+    private final Deque<Dir> backlog = new ArrayDeque<Dir>();
+
+    /**
+     * Number of folders being listed
+     */
+    private int inFlight = 0;
+
+    /**
+     * Set once the run is over, or once the location has been removed
+     */
+    private boolean stopped = false;
+
+    private final AtomicInteger listed = new AtomicInteger();
+
+    private final AtomicInteger found = new AtomicInteger();
+
+    private final Map<Path, IOException> errors =
+        Collections.synchronizedMap(new LinkedHashMap<Path, IOException>());
+
+    Crawl(Listener listener, IProgressMonitor monitor) {
+      this.listener = listener;
+      this.monitor = monitor;
+      this.executor = DFSExecutor.getInstance(root.location);
+      this.cache = DFSMetadataCache.getInstance(root.location);
+      this.workers =
+          (int) Math.max(1, root.location
+              .getConfPropLong(ConfProp.PI_DFS_CONCURRENT_REQUESTS));
+
+      long rate = root.location.getConfPropLong(ConfProp.PI_DFS_SEARCH_RATE);
+      this.interval = (rate > 0) ? (TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+    }
+
+    Map<Path, IOException> run() {
+      synchronized (this) {
+        backlog.push(new Dir(root.getPath(), 0));
+      }
+      dispatch();
+      try {
+        synchronized (this) {
+          while (((inFlight > 0) || (!stopped && !backlog.isEmpty()))
+              && !monitor.isCanceled())
+            wait(200);
+        }
+
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+
+      } finally {
+        synchronized (this) {
+          stopped = true;
+          backlog.clear();
+        }
+      }
+      return errors;
+    }
+
+    /**
+     * Sends the folders on top of the backlog to the executor, until
+     * {@link #workers} folders are being listed
+     */
+    private void dispatch() {
+      List<Dir> dirs = new ArrayList<Dir>();
+      synchronized (this) {
+        while (!stopped && !monitor.isCanceled() && (inFlight < workers)
+            && !backlog.isEmpty()) {
+          dirs.add(backlog.pop());
+          inFlight += 1;
+        }
+      }
+
+      for (final Dir dir : dirs) {
+        try {
+          executor.execute(new Runnable() {
+            public void run() {
+              List<Dir> children = Collections.emptyList();
+              try {
+                if (!isStopped())
+                  children = crawl(dir);
+              } finally {
+                done(children);
+              }
+            }
+          });
+
+        } catch (RejectedExecutionException ree) {
+          // The location has been removed
+          synchronized (this) {
+            stopped = true;
+          }
+          done(Collections.<Dir> emptyList());
+        }
+      }
+    }
+
+    private synchronized boolean isStopped() {
+      return stopped || monitor.isCanceled();
+    }
+
+    /**
+     * Puts the sub-folders of a folder on top of the backlog, and lists the
+     * next folders
+     */
+    private void done(List<Dir> children) {
+      synchronized (this) {
+        if (!stopped) {
+          // The first sub-folder on top, so that folders are listed in order
+          for (int i = children.size() - 1; i >= 0; --i)
+            backlog.push(children.get(i));
+        }
+        inFlight -= 1;
+        notifyAll();
+      }
+      dispatch();
+    }
+
+    /**
+     * Lists a folder and reports its matching children
+     *
+     * @return the sub-folders to list
+     */
+    private List<Dir> crawl(Dir dir) {
+      FileStatus[] listing;
+      try {
+        listing = cache.getListing(dir.path);
+        if (listing == null) {
+          throttle();
+          listing = root.getDFS().listStatus(dir.path);
+          if (listing != null)
+            cache.putListing(dir.path, listing);
+        }
+
+      } catch (IOException ioe) {
+        errors.put(dir.path, ioe);
+        return Collections.emptyList();
+
+      } catch (InterruptedException ie) {
+        return Collections.emptyList();
+      }
+      if (listing == null)
+        return Collections.emptyList();
+
+      // Nodes are only built for the matches, and for their folder
+      DFSFolder folder = null;
+      List<Match> matches = new ArrayList<Match>();
+      List<Dir> children = new ArrayList<Dir>();
+      for (FileStatus status : listing) {
+        if (matches(status)) {
+          if (folder == null)
+            folder = root.createFolder(dir.path);
+          matches.add(new Match(folder.createChild(status), status));
+        }
+        if (status.isDir() && (dir.depth < maxDepth))
+          children.add(new Dir(status.getPath(), dir.depth + 1));
+      }
+
+      if (!matches.isEmpty())
+        listener.found(matches);
+
+      monitor.subTask(String.format("%d folders listed, %d matches",
+          listed.incrementAndGet(), found.addAndGet(matches.size())));
+      return children;
+    }
+
+    /**
+     * Waits for the next listing allowed by the search rate
+     */
+    private void throttle() throws InterruptedException {
+      long wait;
+      synchronized (this) {
+        long now = System.nanoTime();
+        long slot = Math.max(next, now);
+        next = slot + interval;
+        wait = slot - now;
+      }
+      if (wait > 0)
+        TimeUnit.NANOSECONDS.sleep(wait);
+    }
+  }
+
+}
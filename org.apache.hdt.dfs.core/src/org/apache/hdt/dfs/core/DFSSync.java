@@ -0,0 +1,501 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hdt.core.cluster.ConfProp;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Incremental synchronization between a DFS folder and a local directory.
+ *
+ * <p>
+ * Both trees are compared first, with a single listing per directory on
+ * each side. A file is transferred only if it is missing on the
+ * destination, or if its length or modification time differ from the
+ * source. When checksums are verified, files of the same length are
+ * compared by content instead (see {@link DFSChecksum}), so that a file
+ * touched but not modified is not transferred again.
+ *
+ * <p>
+ * Transferred files get the modification time of their source, so the next
+ * synchronization finds them unchanged. Files and directories of the
+ * destination missing from the source are deleted only when asked to.
+ */
+public class DFSSync {
+
+  /**
+   * Largest difference between two modification times considered equal (in
+   * ms): some local file systems only keep the modification time to the
+   * second
+   */
+  private static final long MTIME_TOLERANCE = 1000;
+
+  /**
+   * Outcome of a synchronization
+   */
+  public static class Result {
+
+    private int copied = 0;
+
+    private int unchanged = 0;
+
+    private int deleted = 0;
+
+    private long bytes = 0;
+
+    private final Map<File, IOException> errors =
+        new LinkedHashMap<File, IOException>();
+
+    /**
+     * @return the number of files transferred
+     */
+    public int getCopied() {
+      return copied;
+    }
+
+    /**
+     * @return the number of files already up to date
+     */
+    public int getUnchanged() {
+      return unchanged;
+    }
+
+    /**
+     * @return the number of extra files and directories deleted from the
+     *         destination
+     */
+    public int getDeleted() {
+      return deleted;
+    }
+
+    /**
+     * @return the number of bytes of the files to transfer
+     */
+    public long getBytes() {
+      return bytes;
+    }
+
+    /**
+     * @return the errors indexed by local file, empty if the
+     *         synchronization succeeded
+     */
+    public Map<File, IOException> getErrors() {
+      return errors;
+    }
+  }
+
+  private final DFSFolder folder;
+
+  private final boolean verifyChecksums;
+
+  private final boolean deleteExtras;
+
+  /**
+   * @param folder the DFS folder
+   * @param verifyChecksums whether files of the same length are compared by
+   *        content rather than by modification time
+   * @param deleteExtras whether the destination files missing from the
+   *        source are deleted
+   */
+  public DFSSync(DFSFolder folder, boolean verifyChecksums,
+      boolean deleteExtras) {
+    this.folder = folder;
+    this.verifyChecksums = verifyChecksums;
+    this.deleteExtras = deleteExtras;
+  }
+
+  /**
+   * Synchronizes a local file or directory into the DFS folder
+   *
+   * @param local the local file or directory, synchronized with the DFS
+   *        path of the same name in the folder
+   * @param monitor the progress monitor
+   * @return the outcome of the synchronization
+   * @throws IOException if the file system cannot be reached
+   */
+  public Result upload(File local, IProgressMonitor monitor)
+      throws IOException {
+
+    DistributedFileSystem dfs = folder.getDFS();
+    Path root = new Path(folder.getPath(), local.getName());
+    Result result = new Result();
+
+    // The comparison decides what to upload, not the previous uploads
+    DFSTransferJournal.getInstance().removeCompleted(local);
+
+    int streams =
+        (int) folder.location
+            .getConfPropLong(ConfProp.PI_DFS_UPLOAD_STREAMS);
+    DFSUpload upload =
+        new DFSUpload(dfs, folder.getPath(), DFSExecutor
+            .getInstance(folder.location), streams);
+    upload.setPreserveTimes(true);
+    List<Path> extras = new ArrayList<Path>();
+    List<File> files = new ArrayList<File>();
+
+    try {
+      monitor.subTask("Comparing " + local + " with " + root);
+      FileStatus status = getFileStatus(dfs, root);
+      if (local.isDirectory())
+        compareUpload(dfs, local, root, status, upload, files, extras,
+            result, monitor);
+      else if (local.isFile())
+        compareUpload(dfs, local, root, status, upload, files, result);
+      else
+        throw new FileNotFoundException(local.toString());
+
+      if (monitor.isCanceled())
+        return result;
+
+      DFSProgressMonitor progress = begin(monitor, files.size(), result);
+      try {
+        Map<File, IOException> errors = upload.run(progress);
+        result.errors.putAll(errors);
+        for (File file : files) {
+          if (!errors.containsKey(file))
+            result.copied += 1;
+        }
+
+        for (Path extra : extras) {
+          if (progress.isCanceled())
+            break;
+          try {
+            if (!dfs.delete(extra, true))
+              throw new IOException("Unable to delete " + extra);
+            result.deleted += 1;
+          } catch (IOException ioe) {
+            result.errors.put(new File(extra.toUri().getPath()), ioe);
+          }
+        }
+      } finally {
+        progress.done();
+      }
+
+      if (result.errors.isEmpty() && !monitor.isCanceled())
+        DFSTransferJournal.getInstance().removeCompleted(local);
+      return result;
+
+    } finally {
+      folder.getCache().invalidateTree(root);
+    }
+  }
+
+  /**
+   * Synchronizes the DFS folder into a local directory
+   *
+   * @param dir the local directory, the folder being synchronized with the
+   *        local directory of the same name in it
+   * @param monitor the progress monitor
+   * @return the outcome of the synchronization
+   * @throws IOException if the file system cannot be reached
+   */
+  public Result download(File dir, IProgressMonitor monitor)
+      throws IOException {
+
+    DistributedFileSystem dfs = folder.getDFS();
+    File root =
+        new File(dir, new File(folder.getPath().toString()).getName());
+    Result result = new Result();
+
+    List<File> directories = new ArrayList<File>();
+    Map<File, FileStatus> files = new LinkedHashMap<File, FileStatus>();
+    List<File> extras = new ArrayList<File>();
+
+    monitor.subTask("Comparing " + folder.getPath() + " with " + root);
+    compareDownload(dfs, dfs.getFileStatus(folder.getPath()), root,
+        directories, files, extras, result, monitor);
+    if (monitor.isCanceled())
+      return result;
+
+    DFSProgressMonitor progress = begin(monitor, files.size(), result);
+    try {
+      // Parents come first
+      for (File local : directories) {
+        if (progress.isCanceled())
+          return result;
+        if (!local.isDirectory() && !local.mkdirs())
+          result.errors.put(local, new IOException(
+              "Unable to create directory " + local));
+      }
+
+      for (Map.Entry<File, FileStatus> file : files.entrySet()) {
+        if (progress.isCanceled())
+          return result;
+        File local = file.getKey();
+        FileStatus status = file.getValue();
+        try {
+          new DFSFile(folder, status).downloadToLocalFile(progress, local);
+          if (progress.isCanceled())
+            return result;
+          local.setLastModified(status.getModificationTime());
+          result.copied += 1;
+
+        } catch (InvocationTargetException e) {
+          Throwable cause = e.getCause();
+          result.errors.put(local, (cause instanceof IOException)
+              ? (IOException) cause : new IOException(cause));
+        }
+      }
+
+      for (File extra : extras) {
+        if (progress.isCanceled())
+          return result;
+        if (delete(extra))
+          result.deleted += 1;
+        else
+          result.errors.put(extra, new IOException("Unable to delete "
+              + extra));
+      }
+    } finally {
+      progress.done();
+    }
+
+    if (result.errors.isEmpty())
+      DFSTransferJournal.getInstance().removeCompleted(root);
+    return result;
+  }
+
+  /*
+   * Internals
+   */
+
+  /**
+   * Compare a local directory with its DFS counterpart
+   *
+   * @param status the status of the DFS path, null if it does not exist
+   */
+  private void compareUpload(DistributedFileSystem dfs, File dir, Path path,
+      FileStatus status, DFSUpload upload, List<File> files,
+      List<Path> extras, Result result, IProgressMonitor monitor)
+      throws IOException {
+
+    if (monitor.isCanceled())
+      return;
+
+    if ((status != null) && !status.isDir()) {
+      conflict(dir, path, result);
+      return;
+    }
+
+    File[] children = dir.listFiles();
+    if (children == null) {
+      result.errors.put(dir, new IOException("Unable to list directory "
+          + dir));
+      return;
+    }
+
+    Map<String, FileStatus> remote = new HashMap<String, FileStatus>();
+    if (status == null)
+      upload.addDirectory(dir, path);
+    else
+      for (FileStatus child : listStatus(dfs, path))
+        remote.put(child.getPath().getName(), child);
+
+    for (File child : children) {
+      Path childPath = new Path(path, child.getName());
+      FileStatus childStatus = remote.remove(child.getName());
+      if (child.isDirectory())
+        compareUpload(dfs, child, childPath, childStatus, upload, files,
+            extras, result, monitor);
+      else if (child.isFile())
+        compareUpload(dfs, child, childPath, childStatus, upload, files,
+            result);
+    }
+
+    if (deleteExtras) {
+      for (FileStatus extra : remote.values()) {
+        // Uploads in progress are not extras
+        if (!extra.getPath().getName().endsWith(DFSTransfer.COPYING_SUFFIX))
+          extras.add(extra.getPath());
+      }
+    }
+  }
+
+  /**
+   * Compare a local file with its DFS counterpart
+   *
+   * @param status the status of the DFS path, null if it does not exist
+   */
+  private void compareUpload(DistributedFileSystem dfs, File file,
+      Path path, FileStatus status, DFSUpload upload, List<File> files,
+      Result result) throws IOException {
+
+    if ((status != null) && status.isDir()) {
+      conflict(file, path, result);
+      return;
+    }
+
+    if ((status != null) && isUnchanged(dfs, file, status, true)) {
+      result.unchanged += 1;
+      return;
+    }
+
+    upload.addFile(file, path);
+    files.add(file);
+    result.bytes += file.length();
+  }
+
+  /**
+   * Compare a DFS path with its local counterpart. Nothing is changed
+   * locally: the missing directories are only collected, and created when
+   * the files are transferred.
+   */
+  private void compareDownload(DistributedFileSystem dfs, FileStatus status,
+      File local, List<File> directories, Map<File, FileStatus> files,
+      List<File> extras, Result result, IProgressMonitor monitor)
+      throws IOException {
+
+    if (monitor.isCanceled())
+      return;
+
+    if (!status.isDir()) {
+      if (local.isDirectory()) {
+        conflict(local, status.getPath(), result);
+
+      } else if (local.isFile() && isUnchanged(dfs, local, status, false)) {
+        result.unchanged += 1;
+
+      } else {
+        files.put(local, status);
+        result.bytes += status.getLen();
+      }
+      return;
+    }
+
+    if (local.exists() && !local.isDirectory()) {
+      conflict(local, status.getPath(), result);
+      return;
+    }
+    if (!local.exists())
+      directories.add(local);
+
+    Map<String, File> locals = new HashMap<String, File>();
+    File[] children = local.listFiles();
+    if (children != null)
+      for (File child : children)
+        locals.put(child.getName(), child);
+
+    for (FileStatus child : listStatus(dfs, status.getPath())) {
+      String name = child.getPath().getName();
+      locals.remove(name);
+      locals.remove(name + DFSFile.PART_SUFFIX);
+      compareDownload(dfs, child, new File(local, name), directories, files,
+          extras, result, monitor);
+    }
+
+    if (deleteExtras)
+      extras.addAll(locals.values());
+  }
+
+  /**
+   * Tells whether a local file and a DFS file hold the same content. When
+   * the content matches but the modification times do not, the destination
+   * gets the modification time of the source.
+   *
+   * @param upload true if the local file is the source
+   */
+  private boolean isUnchanged(DistributedFileSystem dfs, File file,
+      FileStatus status, boolean upload) throws IOException {
+
+    if (file.length() != status.getLen())
+      return false;
+
+    long delta = file.lastModified() - status.getModificationTime();
+    boolean sameTime = Math.abs(delta) < MTIME_TOLERANCE;
+    if (!verifyChecksums)
+      return sameTime;
+
+    DFSChecksum checksum =
+        DFSChecksum.of(dfs.getFileChecksum(status.getPath()));
+    if (checksum == null)
+      return sameTime;
+
+    if (!checksum.matches(file, status.getBlockSize()))
+      return false;
+
+    if (!sameTime) {
+      if (upload)
+        dfs.setTimes(status.getPath(), file.lastModified(), -1);
+      else
+        file.setLastModified(status.getModificationTime());
+    }
+    return true;
+  }
+
+  private FileStatus[] listStatus(DistributedFileSystem dfs, Path path)
+      throws IOException {
+    FileStatus[] listing = dfs.listStatus(path);
+    if (listing == null)
+      throw new FileNotFoundException(path.toString());
+    folder.getCache().putListing(path, listing);
+    return listing;
+  }
+
+  private static FileStatus getFileStatus(DistributedFileSystem dfs,
+      Path path) throws IOException {
+    try {
+      return dfs.getFileStatus(path);
+    } catch (FileNotFoundException fnfe) {
+      return null;
+    }
+  }
+
+  private static void conflict(File local, Path path, Result result) {
+    result.errors.put(local, new IOException(String.format(
+        "Cannot synchronize %s with %s: one is a file, the other a directory",
+        local, path)));
+  }
+
+  private static DFSProgressMonitor begin(IProgressMonitor monitor,
+      int count, Result result) {
+    DFSProgressMonitor progress = new DFSProgressMonitor(monitor);
+    progress.beginTask(String.format(
+        "Synchronizing %d files (%s), %d unchanged", count,
+        DFSProgressMonitor.formatSize(result.bytes), result.unchanged),
+        result.bytes);
+    return progress;
+  }
+
+  /**
+   * Delete a local file or directory tree
+   *
+   * @return true if deleted
+   */
+  private static boolean delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null)
+      for (File child : children)
+        delete(child);
+    return file.delete();
+  }
+
+}
@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory of the background threads of the DFS browser: daemon threads, so
+ * that they never keep the workbench from exiting, numbered after the name
+ * of their pool.
+ */
+class DFSThreadFactory implements ThreadFactory {
+
+  private final String name;
+
+  private final AtomicInteger count = new AtomicInteger();
+
+  /**
+   * @param name the name of the pool, prefix of the thread names
+   */
+  DFSThreadFactory(String name) {
+    this.name = name;
+  }
+
+  /* @inheritDoc */
+  public Thread newThread(Runnable r) {
+    Thread thread = new Thread(r, name + " #" + count.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  }
+
+}
@@ -0,0 +1,264 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Data transfers between the DFS and the local file system, or between two
+ * file systems.
+ *
+ * <p>
+ * Data is copied through large buffers, allocated once per thread and
+ * reused by all the transfers run by this thread. The local side is
+ * accessed through a {@link FileChannel}. The DFS streams only read into
+ * and write from byte arrays, so the buffers are array-backed rather than
+ * direct: the array is filled by the DFS stream and handed over to the
+ * channel without any intermediate copy.
+ *
+ * <p>
+ * Progress is reported in bytes, once per buffer (see
+ * {@link DFSProgressMonitor}).
+ */
+public class DFSTransfer {
+
+  /**
+   * Size of the transfer buffers
+   */
+  public static final int BUFFER_SIZE = 1024 * 1024;
+
+  private static final ThreadLocal<ByteBuffer> buffers =
+      new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+          return ByteBuffer.allocate(BUFFER_SIZE);
+        }
+      };
+
+  private DFSTransfer() {
+  }
+
+  /**
+   * Suffix of the DFS files being uploaded
+   */
+  public static final String COPYING_SUFFIX = "._COPYING_";
+
+  /**
+   * Copies a DFS input stream into a local file, starting at the current
+   * position of the channel
+   *
+   * @param in the stream to read, up to its end
+   * @param out the local file
+   * @param monitor the progress monitor
+   * @return the number of bytes copied
+   * @throws IOException
+   */
+  public static long copy(InputStream in, FileChannel out,
+      IProgressMonitor monitor) throws IOException {
+    return copy(in, out, Long.MAX_VALUE, monitor);
+  }
+
+  /**
+   * Copies at most the given number of bytes from a DFS input stream into a
+   * local file, starting at the current position of the channel
+   *
+   * @param in the stream to read
+   * @param out the local file
+   * @param max the maximum number of bytes to copy
+   * @param monitor the progress monitor
+   * @return the number of bytes copied, less than max only at the end of
+   *         the stream or if the transfer has been cancelled
+   * @throws IOException
+   */
+  public static long copy(InputStream in, FileChannel out, long max,
+      IProgressMonitor monitor) throws IOException {
+
+    ByteBuffer buffer = getBuffer();
+    byte[] array = buffer.array();
+    long copied = 0;
+
+    int bytes;
+    while (!monitor.isCanceled()
+        && ((bytes = fill(in, array, (int) Math.min(array.length, max
+            - copied))) > 0)) {
+      buffer.clear();
+      buffer.limit(bytes);
+      while (buffer.hasRemaining())
+        out.write(buffer);
+
+      copied += bytes;
+      monitor.worked(bytes);
+    }
+    return copied;
+  }
+
+  /**
+   * Copies a DFS input stream into a DFS output stream, for instance to copy
+   * a file between two file systems without staging it locally
+   *
+   * @param in the stream to read, up to its end
+   * @param out the stream to write
+   * @param monitor the progress monitor
+   * @return the number of bytes copied
+   * @throws IOException
+   */
+  public static long copy(InputStream in, OutputStream out,
+      IProgressMonitor monitor) throws IOException {
+
+    byte[] array = getBuffer().array();
+    long copied = 0;
+
+    int bytes;
+    while (!monitor.isCanceled()
+        && ((bytes = fill(in, array, array.length)) > 0)) {
+      out.write(array, 0, bytes);
+      copied += bytes;
+      monitor.worked(bytes);
+    }
+    return copied;
+  }
+
+  /**
+   * Copies a local file into a DFS output stream, starting at the current
+   * position of the channel
+   *
+   * @param in the local file, read up to its end
+   * @param out the stream to write
+   * @param monitor the progress monitor
+   * @return the number of bytes copied
+   * @throws IOException
+   */
+  public static long copy(FileChannel in, OutputStream out,
+      IProgressMonitor monitor) throws IOException {
+
+    ByteBuffer buffer = getBuffer();
+    byte[] array = buffer.array();
+    long copied = 0;
+
+    while (!monitor.isCanceled()) {
+      buffer.clear();
+      while (buffer.hasRemaining() && (in.read(buffer) >= 0))
+        continue;
+      if (buffer.position() == 0)
+        break;
+
+      out.write(array, 0, buffer.position());
+      copied += buffer.position();
+      monitor.worked(buffer.position());
+    }
+    return copied;
+  }
+
+  /**
+   * Copies a local file to the DFS, replacing the DFS file if it exists.
+   * The data is written to a temporary file renamed once complete, so an
+   * interrupted upload never leaves a truncated file behind.
+   *
+   * @param fs the file system
+   * @param file the local file
+   * @param path the path of the DFS file
+   * @param monitor the progress monitor
+   * @return true if the file has been uploaded, false if the upload has
+   *         been cancelled
+   * @throws IOException
+   */
+  public static boolean upload(FileSystem fs, File file, Path path,
+      IProgressMonitor monitor) throws IOException {
+
+    Path tmp = path.suffix(COPYING_SUFFIX);
+    boolean uploaded = false;
+    try {
+      long copied;
+      FileInputStream in = new FileInputStream(file);
+      try {
+        OutputStream out = fs.create(tmp, true, BUFFER_SIZE);
+        try {
+          copied = copy(in.getChannel(), out, monitor);
+        } finally {
+          // Closing the stream completes the DFS file: errors matter here
+          out.close();
+        }
+      } finally {
+        in.close();
+      }
+
+      if ((copied < file.length()) && monitor.isCanceled())
+        return false;
+
+      if (fs.exists(path))
+        fs.delete(path, false);
+      if (!fs.rename(tmp, path))
+        throw new IOException("Unable to rename " + tmp + " to " + path);
+      uploaded = true;
+      return true;
+
+    } finally {
+      if (!uploaded) {
+        try {
+          fs.delete(tmp, false);
+        } catch (IOException ioe) {
+          ioe.printStackTrace();
+          // nothing we can do here
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the transfer buffer of the current thread
+   *
+   * @return an array-backed buffer of {@link #BUFFER_SIZE} bytes
+   */
+  static ByteBuffer getBuffer() {
+    return buffers.get();
+  }
+
+  /*
+   * Internals
+   */
+
+  /**
+   * Reads from a stream until the given number of bytes has been read or
+   * the stream is over
+   *
+   * @return the number of bytes read, 0 at the end of the stream
+   */
+  private static int fill(InputStream in, byte[] array, int length)
+      throws IOException {
+    int filled = 0;
+    while (filled < length) {
+      int bytes = in.read(array, filled, length - filled);
+      if (bytes < 0)
+        break;
+      filled += bytes;
+    }
+    return filled;
+  }
+
+}
@@ -0,0 +1,375 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Journal of the DFS transfers, persisted in the plug-in state location so
+ * that interrupted transfers can resume where they stopped.
+ *
+ * <p>
+ * Each file being transferred has an entry, identified by the transfer
+ * direction and the destination of the file. The entry records the source
+ * length and modification time, so that a transfer only resumes if its
+ * source did not change meanwhile, and how much of the file has been
+ * transferred: an offset for sequential downloads, the set of blocks
+ * received for ranged downloads, or only whether the file is complete.
+ *
+ * <p>
+ * Entries of complete files are kept until the whole operation succeeds:
+ * re-running an interrupted operation then skips the files it already
+ * transferred.
+ */
+public class DFSTransferJournal {
+
+  static Logger log = Logger.getLogger(DFSTransferJournal.class.getName());
+
+  private static final String FILE_NAME = "transfers.properties";
+
+  /**
+   * Minimum delay between two writes of the journal (in ms)
+   */
+  private static final long SAVE_INTERVAL = 1000;
+
+  private static DFSTransferJournal instance;
+
+  /**
+   * Gets the journal of this workspace
+   *
+   * @return the journal
+   */
+  public static synchronized DFSTransferJournal getInstance() {
+    if (instance == null) {
+      File file = null;
+      Activator plugin = Activator.getDefault();
+      if (plugin != null)
+        file = plugin.getStateLocation().append(FILE_NAME).toFile();
+      instance = new DFSTransferJournal(file);
+    }
+    return instance;
+  }
+
+  /**
+   * Key of the entry of a file downloaded to the given local file
+   */
+  static String downloadKey(File file) {
+    return "download:" + file.getAbsolutePath();
+  }
+
+  /**
+   * Key of the entry of a file uploaded to the given DFS path. The path is
+   * qualified with the file system, so that uploads of the same tree to the
+   * same path of different locations do not share entries.
+   */
+  static String uploadKey(FileSystem fs, Path path) {
+    return "upload:" + fs.makeQualified(path);
+  }
+
+  /**
+   * Transfer state of a single file
+   */
+  static class Entry {
+
+    final String key;
+
+    final String source;
+
+    final long length;
+
+    final long modificationTime;
+
+    private long offset = 0;
+
+    private final Set<Integer> blocks = new TreeSet<Integer>();
+
+    private boolean complete = false;
+
+    private Entry(String key, String source, long length,
+        long modificationTime) {
+      this.key = key;
+      this.source = source;
+      this.length = length;
+      this.modificationTime = modificationTime;
+    }
+
+    /**
+     * Tells whether this entry describes the transfer of the given source
+     */
+    boolean matches(String source, long length, long modificationTime) {
+      return this.source.equals(source) && (this.length == length)
+          && (this.modificationTime == modificationTime);
+    }
+  }
+
+  /**
+   * The journal file, null to keep the journal in memory only
+   */
+  private final File file;
+
+  private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+  private long lastSave = 0;
+
+  private boolean dirty = false;
+
+  private DFSTransferJournal(File file) {
+    this.file = file;
+    load();
+  }
+
+  /**
+   * Gets the entry of a transfer, if its source did not change since it
+   * was recorded
+   *
+   * @param key the key of the transfer
+   * @param source the source of the transfer
+   * @param length the length of the source
+   * @param modificationTime the modification time of the source
+   * @return the entry, or null if the transfer is unknown or outdated
+   */
+  synchronized Entry get(String key, String source, long length,
+      long modificationTime) {
+    Entry entry = entries.get(key);
+    if ((entry == null) || !entry.matches(source, length, modificationTime))
+      return null;
+    return entry;
+  }
+
+  /**
+   * Starts recording a transfer, resuming the recorded one if its source
+   * did not change
+   *
+   * @return the entry of the transfer
+   */
+  synchronized Entry start(String key, String source, long length,
+      long modificationTime) {
+    Entry entry = get(key, source, length, modificationTime);
+    if (entry == null) {
+      entry = new Entry(key, source, length, modificationTime);
+      entries.put(key, entry);
+      changed(true);
+    }
+    return entry;
+  }
+
+  synchronized long getOffset(Entry entry) {
+    return entry.offset;
+  }
+
+  synchronized boolean isBlockDone(Entry entry, int block) {
+    return entry.blocks.contains(block);
+  }
+
+  synchronized boolean isComplete(Entry entry) {
+    return entry.complete;
+  }
+
+  /**
+   * Restarts a transfer from scratch, for instance because the partial
+   * data it recorded is missing
+   */
+  synchronized void reset(Entry entry) {
+    entry.offset = 0;
+    entry.blocks.clear();
+    entry.complete = false;
+    changed(true);
+  }
+
+  /**
+   * Records the number of bytes of a sequential transfer already written
+   */
+  synchronized void setOffset(Entry entry, long offset) {
+    entry.offset = offset;
+    changed(false);
+  }
+
+  /**
+   * Records that a block of a ranged transfer has been written
+   */
+  synchronized void setBlockDone(Entry entry, int block) {
+    entry.blocks.add(block);
+    changed(false);
+  }
+
+  /**
+   * Records that a file has been completely transferred
+   */
+  synchronized void setComplete(Entry entry) {
+    entry.complete = true;
+    entry.offset = entry.length;
+    entry.blocks.clear();
+    changed(false);
+  }
+
+  /**
+   * Forgets a transfer
+   */
+  synchronized void remove(Entry entry) {
+    if (entries.get(entry.key) == entry) {
+      entries.remove(entry.key);
+      changed(true);
+    }
+  }
+
+  /**
+   * Forgets the complete transfers of an operation that succeeded
+   *
+   * @param local the local directory, for a download, or file, for an
+   *        upload, the operation transferred files to or from
+   */
+  public synchronized void removeCompleted(File local) {
+    String prefix = local.getAbsolutePath();
+    Iterator<Entry> it = entries.values().iterator();
+    while (it.hasNext()) {
+      Entry entry = it.next();
+      String path =
+          entry.key.startsWith("download:") ? entry.key.substring(9)
+              : entry.source;
+      if (entry.complete
+          && (path.equals(prefix) || path.startsWith(prefix + File.separator)))
+        it.remove();
+    }
+    changed(true);
+  }
+
+  /**
+   * Writes the pending changes of the journal
+   */
+  public synchronized void flush() {
+    if (dirty)
+      save();
+  }
+
+  /*
+   * Internals
+   */
+
+  private void changed(boolean now) {
+    this.dirty = true;
+    if (now || (System.currentTimeMillis() - lastSave >= SAVE_INTERVAL))
+      save();
+  }
+
+  private void load() {
+    if ((file == null) || !file.exists())
+      return;
+
+    Properties props = new Properties();
+    try {
+      InputStream in = new FileInputStream(file);
+      try {
+        props.load(in);
+      } finally {
+        in.close();
+      }
+
+      for (String name : props.stringPropertyNames()) {
+        if (!name.endsWith(".source"))
+          continue;
+
+        String key = name.substring(0, name.length() - ".source".length());
+        Entry entry =
+            new Entry(key, props.getProperty(name), Long.parseLong(props
+                .getProperty(key + ".length")), Long.parseLong(props
+                .getProperty(key + ".mtime")));
+        entry.offset = Long.parseLong(props.getProperty(key + ".offset"));
+        entry.complete =
+            Boolean.parseBoolean(props.getProperty(key + ".complete"));
+        String blocks = props.getProperty(key + ".blocks", "");
+        for (String block : blocks.split(",")) {
+          if (block.length() > 0)
+            entry.blocks.add(Integer.valueOf(block));
+        }
+        entries.put(key, entry);
+      }
+
+    } catch (IOException ioe) {
+      log.log(Level.WARNING, "Unable to read the transfer journal " + file,
+          ioe);
+    } catch (RuntimeException re) {
+      // Corrupted journal: start from scratch
+      log.log(Level.WARNING, "Invalid transfer journal " + file, re);
+      entries.clear();
+    }
+  }
+
+  private void save() {
+    this.lastSave = System.currentTimeMillis();
+    this.dirty = false;
+    if (file == null)
+      return;
+
+    Properties props = new Properties();
+    for (Entry entry : entries.values()) {
+      StringBuilder blocks = new StringBuilder();
+      for (Integer block : entry.blocks) {
+        if (blocks.length() > 0)
+          blocks.append(',');
+        blocks.append(block);
+      }
+      props.setProperty(entry.key + ".source", entry.source);
+      props.setProperty(entry.key + ".length", Long.toString(entry.length));
+      props.setProperty(entry.key + ".mtime", Long
+          .toString(entry.modificationTime));
+      props.setProperty(entry.key + ".offset", Long.toString(entry.offset));
+      props.setProperty(entry.key + ".blocks", blocks.toString());
+      props.setProperty(entry.key + ".complete", Boolean
+          .toString(entry.complete));
+    }
+
+    // Write a new journal then replace the previous one, so that a crash
+    // never leaves a truncated journal
+    File tmp = new File(file.getPath() + ".tmp");
+    try {
+      OutputStream out = new FileOutputStream(tmp);
+      try {
+        props.store(out, "DFS transfers in progress");
+      } finally {
+        out.close();
+      }
+      if (!tmp.renameTo(file)) {
+        file.delete();
+        if (!tmp.renameTo(file))
+          throw new IOException("Unable to replace " + file);
+      }
+
+    } catch (IOException ioe) {
+      log.log(Level.WARNING, "Unable to write the transfer journal " + file,
+          ioe);
+    }
+  }
+
+}
@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.Path;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Building blocks of the transfers of whole trees or of many files:
+ * uploads, copies between locations and merges.
+ */
+class DFSTransfers {
+
+  /**
+   * A source file or directory and its destination
+   *
+   * @param <S> the type of the source: a local file, or the status of a
+   *        DFS path
+   */
+  static class Item<S> {
+
+    final S source;
+
+    final Path path;
+
+    Item(S source, Path path) {
+      this.source = source;
+      this.path = path;
+    }
+  }
+
+  /**
+   * A task run by the streams of a transfer, typically the transfer of one
+   * file
+   */
+  interface Task {
+
+    /**
+     * @param monitor the progress monitor shared by the streams
+     * @throws IOException
+     */
+    void run(IProgressMonitor monitor) throws IOException;
+  }
+
+  private DFSTransfers() {
+  }
+
+  /**
+   * Gets the directories that have no sub-directories: creating them also
+   * creates all the others
+   *
+   * @param directories the destination directories
+   * @return the deepest directories
+   */
+  static <S> List<Item<S>> getDeepestDirectories(List<Item<S>> directories) {
+    Set<Path> parents = new HashSet<Path>();
+    for (Item<S> dir : directories)
+      parents.add(dir.path.getParent());
+
+    List<Item<S>> deepest = new ArrayList<Item<S>>();
+    for (Item<S> dir : directories) {
+      if (!parents.contains(dir.path))
+        deepest.add(dir);
+    }
+    return deepest;
+  }
+
+  /**
+   * Runs tasks in order over concurrent streams of the transfer pool of a
+   * location, and waits for all of them to complete. Each stream takes the
+   * next task not yet taken by another one; tasks not started yet are
+   * skipped once the transfer is cancelled.
+   *
+   * @param executor the executor of the location
+   * @param streams the maximum number of concurrent streams
+   * @param tasks the tasks
+   * @param monitor the progress monitor, shared by the streams
+   * @throws IOException the first failure of a task, or the interruption of
+   *         the transfer; the streams still running are then interrupted
+   */
+  static void runAll(DFSExecutor executor, int streams,
+      final List<? extends Task> tasks, IProgressMonitor monitor)
+      throws IOException {
+
+    final IProgressMonitor shared = DFSProgressMonitor.shared(monitor);
+    final AtomicInteger next = new AtomicInteger();
+    List<Future<Void>> workers = new ArrayList<Future<Void>>();
+    try {
+      for (int i = 0; i < Math.min(Math.max(1, streams), tasks.size()); ++i) {
+        workers.add(executor.transfer(new Callable<Void>() {
+          public Void call() throws IOException {
+            int index;
+            while (!shared.isCanceled()
+                && ((index = next.getAndIncrement()) < tasks.size()))
+              tasks.get(index).run(shared);
+            return null;
+          }
+        }));
+      }
+
+      for (Future<Void> worker : workers) {
+        try {
+          worker.get();
+
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof IOException)
+            throw (IOException) e.getCause();
+          throw new IOException(e.getCause());
+
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Transfer interrupted");
+        }
+      }
+
+    } finally {
+      // Streams still running after a failure
+      for (Future<Void> worker : workers)
+        worker.cancel(true);
+    }
+  }
+
+}
@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hdt.dfs.core.DFSTransfers.Item;
+import org.apache.hdt.dfs.core.DFSTransfers.Task;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Upload of local files and directories into a DFS folder.
+ *
+ * <p>
+ * The local trees are walked once. The remote directories are created first,
+ * issuing one request per deepest directory only since creating a directory
+ * also creates its parents. The files are then streamed through a bounded
+ * number of concurrent writers, largest files first so that the writers
+ * finish at about the same time. The writers run on the transfer pool of
+ * the {@link DFSExecutor} of the location.
+ *
+ * <p>
+ * A failure does not stop the upload: errors are collected per local file
+ * and reported once the upload is over.
+ *
+ * <p>
+ * The files uploaded are recorded in the {@link DFSTransferJournal}: when
+ * an interrupted upload is run again, the files it already uploaded are
+ * skipped.
+ */
+class DFSUpload {
+
+  private final FileSystem fs;
+
+  private final Path destination;
+
+  private final DFSExecutor executor;
+
+  private final int streams;
+
+  private boolean preserveTimes = false;
+
+  private final List<Item<File>> directories = new ArrayList<Item<File>>();
+
+  private final List<Item<File>> files = new ArrayList<Item<File>>();
+
+  /**
+   * Errors indexed by local file
+   */
+  private final Map<File, IOException> errors =
+      new LinkedHashMap<File, IOException>();
+
+  /**
+   * @param fs the file system
+   * @param destination the DFS folder receiving the uploaded files
+   * @param executor the executor of the location
+   * @param streams the number of concurrent writers
+   */
+  DFSUpload(FileSystem fs, Path destination, DFSExecutor executor,
+      int streams) {
+    this.fs = fs;
+    this.destination = destination;
+    this.executor = executor;
+    this.streams = Math.max(1, streams);
+  }
+
+  /**
+   * Sets whether the uploaded files get the modification time of their
+   * local file, rather than the time of the upload
+   */
+  void setPreserveTimes(boolean preserveTimes) {
+    this.preserveTimes = preserveTimes;
+  }
+
+  /**
+   * Adds a directory to create
+   *
+   * @param file the local directory
+   * @param path the DFS directory
+   */
+  void addDirectory(File file, Path path) {
+    directories.add(new Item<File>(file, path));
+  }
+
+  /**
+   * Adds a file to upload
+   *
+   * @param file the local file
+   * @param path the DFS file
+   */
+  void addFile(File file, Path path) {
+    files.add(new Item<File>(file, path));
+  }
+
+  /**
+   * Uploads local files and directories
+   *
+   * @param locals the local files and directories to upload into the
+   *        destination folder
+   * @param monitor the progress monitor, whose work is counted in bytes
+   * @return the errors indexed by local file, empty if all the files have
+   *         been uploaded
+   * @throws IOException if the upload has been interrupted
+   */
+  Map<File, IOException> run(List<File> locals, IProgressMonitor monitor)
+      throws IOException {
+    for (File local : locals)
+      walk(local, new Path(destination, local.getName()));
+    return run(monitor);
+  }
+
+  /**
+   * Creates the directories and uploads the files added so far
+   *
+   * @param monitor the progress monitor, whose work is counted in bytes
+   * @return the errors indexed by local file, empty if all the files have
+   *         been uploaded
+   * @throws IOException if the upload has been interrupted
+   */
+  Map<File, IOException> run(IProgressMonitor monitor) throws IOException {
+    // Largest files first
+    Collections.sort(files, new Comparator<Item<File>>() {
+      public int compare(Item<File> a, Item<File> b) {
+        long la = a.source.length();
+        long lb = b.source.length();
+        return (la > lb) ? -1 : ((la < lb) ? 1 : 0);
+      }
+    });
+
+    List<Task> mkdirs = new ArrayList<Task>();
+    for (final Item<File> dir : DFSTransfers
+        .getDeepestDirectories(directories)) {
+      mkdirs.add(new Task() {
+        public void run(IProgressMonitor monitor) {
+          try {
+            if (!fs.mkdirs(dir.path))
+              throw new IOException("Unable to create directory "
+                  + dir.path);
+          } catch (IOException ioe) {
+            failed(dir.source, ioe);
+          }
+        }
+      });
+    }
+    DFSTransfers.runAll(executor, streams, mkdirs, monitor);
+
+    final DFSTransferJournal journal = DFSTransferJournal.getInstance();
+    List<Task> writes = new ArrayList<Task>();
+    for (final Item<File> file : files) {
+      writes.add(new Task() {
+        public void run(IProgressMonitor monitor) {
+          try {
+            upload(file, journal, monitor);
+          } catch (IOException ioe) {
+            failed(file.source, ioe);
+          }
+        }
+      });
+    }
+    DFSTransfers.runAll(executor, streams, writes, monitor);
+    journal.flush();
+    return errors;
+  }
+
+  /*
+   * Internals
+   */
+
+  /**
+   * Upload a single file, unless an interrupted run of this upload already
+   * did it
+   */
+  private void upload(Item<File> item, DFSTransferJournal journal,
+      IProgressMonitor monitor) throws IOException {
+
+    String key = DFSTransferJournal.uploadKey(fs, item.path);
+    String source = item.source.getAbsolutePath();
+    long length = item.source.length();
+    long modificationTime = item.source.lastModified();
+
+    DFSTransferJournal.Entry entry =
+        journal.get(key, source, length, modificationTime);
+    if ((entry != null) && journal.isComplete(entry)) {
+      try {
+        if (fs.getFileStatus(item.path).getLen() == length) {
+          DFSProgressMonitor.worked(monitor, length);
+          return;
+        }
+      } catch (FileNotFoundException fnfe) {
+        // Removed meanwhile: upload it again
+      }
+    }
+
+    entry = journal.start(key, source, length, modificationTime);
+    if (DFSTransfer.upload(fs, item.source, item.path, monitor)) {
+      if (preserveTimes)
+        fs.setTimes(item.path, modificationTime, -1);
+      journal.setComplete(entry);
+    }
+  }
+
+  private void walk(File local, Path path) {
+    if (local.isDirectory()) {
+      addDirectory(local, path);
+      File[] children = local.listFiles();
+      if (children == null) {
+        failed(local, new IOException("Unable to list directory " + local));
+        return;
+      }
+      for (File child : children)
+        walk(child, new Path(path, child.getName()));
+
+    } else if (local.isFile()) {
+      addFile(local, path);
+    }
+  }
+
+  private synchronized void failed(File file, IOException ioe) {
+    errors.put(file, ioe);
+  }
+
+}
@@ -0,0 +1,295 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.core;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hdt.core.cluster.ConfProp;
+import org.apache.hdt.core.cluster.HadoopCluster;
+
+/**
+ * Watches DFS folders of a Hadoop location for changes.
+ *
+ * <p>
+ * The NameNode does not notify its clients of changes, so watched folders
+ * are polled. A check costs a single getFileStatus RPC: the folder is listed
+ * again only when its modification time changed, that is when one of its
+ * children has been created, deleted or renamed. The new listing is then
+ * compared to the children already displayed, and only the added, removed
+ * and changed children are pushed to the viewer.
+ *
+ * <p>
+ * A folder that keeps changing is checked every
+ * {@link ConfProp#PI_DFS_WATCH_INTERVAL} milliseconds. Each check finding
+ * the folder unchanged doubles the interval, up to
+ * {@link ConfProp#PI_DFS_WATCH_MAX_INTERVAL}. The checks run on the
+ * {@link DFSExecutor} of the location; the folders stop being watched once
+ * the executor is gone.
+ */
+public class DFSWatcher {
+
+  static Logger log = Logger.getLogger(DFSWatcher.class.getName());
+
+  private static final Map<HadoopCluster, DFSWatcher> watchers =
+      new HashMap<HadoopCluster, DFSWatcher>();
+
+  /**
+   * Timer shared by all the locations: it only hands the checks over to the
+   * executor of their location
+   */
+  private static final ScheduledExecutorService timer =
+      Executors.newSingleThreadScheduledExecutor(new DFSThreadFactory(
+          "DFS watcher"));
+
+  /**
+   * Gets the watcher of the given location
+   *
+   * @param location the Hadoop location
+   * @return the watcher shared by all users of this location
+   */
+  public static synchronized DFSWatcher getInstance(HadoopCluster location) {
+    DFSWatcher watcher = watchers.get(location);
+    if (watcher == null) {
+      watcher = new DFSWatcher(location);
+      watchers.put(location, watcher);
+    }
+    return watcher;
+  }
+
+  /**
+   * Stops watching the folders of a location that has been removed or
+   * whose file system has changed
+   *
+   * @param location the Hadoop location
+   */
+  static synchronized void dispose(HadoopCluster location) {
+    DFSWatcher watcher = watchers.remove(location);
+    if (watcher != null)
+      watcher.unwatchAll();
+  }
+
+  private final HadoopCluster location;
+
+  /**
+   * Watched folders, indexed by path (without scheme and authority)
+   */
+  private final Map<String, Watch> watches = new HashMap<String, Watch>();
+
+  private DFSWatcher(HadoopCluster location) {
+    this.location = location;
+  }
+
+  /**
+   * Starts watching a folder for changes
+   *
+   * @param folder the folder, displayed by the viewer
+   */
+  public synchronized void watch(DFSFolder folder) {
+    Watch previous = watches.get(key(folder.path));
+    if ((previous != null) && (previous.folder == folder))
+      return;
+    if (previous != null)
+      previous.cancel();
+
+    Watch watch = new Watch(folder);
+    watches.put(key(folder.path), watch);
+    schedule(watch);
+  }
+
+  /**
+   * Stops watching a folder
+   *
+   * @param folder the folder
+   */
+  public synchronized void unwatch(DFSFolder folder) {
+    Watch watch = watches.get(key(folder.path));
+    if ((watch != null) && (watch.folder == folder)) {
+      watches.remove(key(folder.path));
+      watch.cancel();
+    }
+  }
+
+  /**
+   * Tells whether a folder is watched
+   *
+   * @param folder the folder
+   * @return true if the folder is watched
+   */
+  public synchronized boolean isWatched(DFSFolder folder) {
+    Watch watch = watches.get(key(folder.path));
+    return (watch != null) && (watch.folder == folder);
+  }
+
+  /**
+   * Stops watching the folders below a path, whose nodes are no longer
+   * displayed
+   *
+   * @param path the root path
+   * @param included whether to stop watching the root path too
+   */
+  synchronized void unwatchTree(Path path, boolean included) {
+    String root = key(path);
+    String prefix = root.endsWith("/") ? root : root + "/";
+    Iterator<Map.Entry<String, Watch>> it = watches.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<String, Watch> entry = it.next();
+      String key = entry.getKey();
+      if ((included && key.equals(root)) || key.startsWith(prefix)) {
+        entry.getValue().cancel();
+        it.remove();
+      }
+    }
+  }
+
+  /*
+   * Internals
+   */
+
+  private static String key(Path path) {
+    String key = path.toUri().getPath();
+    return (key.length() == 0) ? "/" : key;
+  }
+
+  private synchronized void unwatchAll() {
+    for (Watch watch : watches.values())
+      watch.cancel();
+    watches.clear();
+  }
+
+  /**
+   * Schedules the next check of a folder, after its current interval
+   */
+  private synchronized void schedule(final Watch watch) {
+    if (watch.cancelled)
+      return;
+    watch.next = timer.schedule(new Runnable() {
+      public void run() {
+        if (watch.cancelled)
+          return;
+
+        // Never create an executor again for a location being removed
+        DFSExecutor executor = DFSExecutor.getExisting(location);
+        if (executor != null) {
+          try {
+            executor.execute(watch);
+            return;
+          } catch (RejectedExecutionException ree) {
+            // Disposed meanwhile
+          }
+        }
+        log.fine("Location removed, no longer watching " + watch.folder.path);
+        unwatch(watch.folder);
+      }
+    }, watch.interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Periodic check of a watched folder
+   */
+  private class Watch implements Runnable {
+
+    private final DFSFolder folder;
+
+    /**
+     * Modification time of the folder when its children were last listed
+     */
+    private long modificationTime;
+
+    private long interval;
+
+    private ScheduledFuture<?> next;
+
+    private volatile boolean cancelled = false;
+
+    Watch(DFSFolder folder) {
+      this.folder = folder;
+      this.modificationTime = folder.modificationTime;
+      this.interval = getMinInterval();
+    }
+
+    /* @inheritDoc */
+    public void run() {
+      if (cancelled)
+        return;
+
+      boolean changed = false;
+      try {
+        FileStatus status = folder.getDFS().getFileStatus(folder.path);
+        if (status.getModificationTime() != modificationTime) {
+          FileStatus[] listing = folder.getDFS().listStatus(folder.path);
+          modificationTime = status.getModificationTime();
+          changed = true;
+
+          DFSMetadataCache cache = folder.getCache();
+          cache.invalidate(folder.path);
+          cache.putListing(folder.path, listing);
+          if (!cancelled)
+            folder.childrenListed(listing);
+        }
+
+      } catch (FileNotFoundException fnfe) {
+        // The folder has been deleted meanwhile
+        unwatch(folder);
+        folder.getCache().invalidateDeleted(folder.path);
+        if (folder.getParent() instanceof DFSFolder)
+          ((DFSFolder) folder.getParent()).childrenDeleted(Collections
+              .singleton(folder.path));
+        return;
+
+      } catch (IOException ioe) {
+        // Try again later, as if the folder had not changed
+        log.log(Level.FINE, "Unable to check " + folder.path, ioe);
+      }
+
+      if (changed)
+        interval = getMinInterval();
+      else
+        interval =
+            Math.max(getMinInterval(), Math.min(2 * interval, location
+                .getConfPropLong(ConfProp.PI_DFS_WATCH_MAX_INTERVAL)));
+      schedule(this);
+    }
+
+    void cancel() {
+      cancelled = true;
+      if (next != null)
+        next.cancel(false);
+    }
+
+    private long getMinInterval() {
+      return Math.max(100, location
+          .getConfPropLong(ConfProp.PI_DFS_WATCH_INTERVAL));
+    }
+  }
+
+}
@@ -22,21 +22,35 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hdt.core.cluster.HadoopCluster;
+import org.apache.hdt.core.dialogs.ErrorMessageDialog;
 import org.apache.hdt.ui.ImageLibrary;
 import org.apache.hdt.dfs.ui.DFSActions;
+import org.apache.hdt.dfs.core.DFSBlockReport;
 import org.apache.hdt.dfs.core.DFSFile;
 import org.apache.hdt.dfs.core.DFSFolder;
 import org.apache.hdt.dfs.core.DFSLocation;
 import org.apache.hdt.dfs.core.DFSLocationsRoot;
+import org.apache.hdt.dfs.core.DFSMerge;
 import org.apache.hdt.dfs.core.DFSPath;
+import org.apache.hdt.dfs.core.DFSProgressMonitor;
+import org.apache.hdt.dfs.core.DFSRecordReader;
+import org.apache.hdt.dfs.core.DFSSync;
+import org.apache.hdt.dfs.core.DFSTransferJournal;
+import org.apache.hdt.dfs.core.DFSWatcher;
 import org.eclipse.core.resources.IStorage;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.PlatformObject;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.action.IAction;
 import org.eclipse.jface.dialogs.InputDialog;
 import org.eclipse.jface.dialogs.MessageDialog;
@@ -51,6 +65,7 @@ import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.ui.IObjectActionDelegate;
 import org.eclipse.ui.IPersistableElement;
 import org.eclipse.ui.IStorageEditorInput;
+import org.eclipse.ui.IWorkbenchPage;
 import org.eclipse.ui.IWorkbenchPart;
 import org.eclipse.ui.PartInitException;
 import org.eclipse.ui.PlatformUI;
@@ -103,14 +118,46 @@ public class DFSActionImpl implements IObjectActionDelegate {
               uploadDirectoryToDFS(ss);
               break;
             }
+            case SYNC_TO_DFS: {
+              syncToDFS(ss);
+              break;
+            }
+            case SYNC_FROM_DFS: {
+              syncFromDFS(ss);
+              break;
+            }
+            case MERGE_DOWNLOAD: {
+              mergeDownload(ss);
+              break;
+            }
+            case SEARCH: {
+              search(ss);
+              break;
+            }
+            case DISK_USAGE: {
+              diskUsage(ss);
+              break;
+            }
+            case BLOCK_REPORT: {
+              blockReport(ss);
+              break;
+            }
             case REFRESH: {
               refresh(ss);
               break;
             }
+            case WATCH: {
+              watch(ss);
+              break;
+            }
             case DOWNLOAD: {
               downloadFromDFS(ss);
               break;
             }
+            case COPY_TO_LOCATION: {
+              copyToLocation(ss);
+              break;
+            }
             case RECONNECT: {
               reconnect(ss);
               break;
@@ -224,26 +271,84 @@ public class DFSActionImpl implements IObjectActionDelegate {
           public void run(IProgressMonitor monitor)
               throws InvocationTargetException {
 
-            int work = 0;
+            long size = 0;
             for (File file : files)
-              work += computeUploadWork(file);
+              size += computeUploadSize(file);
 
-            monitor.beginTask("Uploading files to distributed file system",
-                work);
+            DFSProgressMonitor progress = new DFSProgressMonitor(monitor);
+            progress.beginTask("Uploading files to distributed file system",
+                size);
 
-            for (File file : files) {
-              try {
-                folder.upload(monitor, file);
+            try {
+              Map<File, IOException> errors = folder.upload(progress, files);
 
-              } catch (IOException ioe) {
-                ioe.printStackTrace();
-                MessageDialog.openError(null,
+              // Report all the failures at once
+              if (!errors.isEmpty())
+                ErrorMessageDialog.display(
                     "Upload files to distributed file system",
-                    "Upload failed.\n" + ioe);
-              }
+                    describeErrors(errors));
+
+            } catch (IOException ioe) {
+              ioe.printStackTrace();
+              ErrorMessageDialog.display(
+                  "Upload files to distributed file system",
+                  "Upload failed.\n" + ioe);
             }
 
-            monitor.done();
+            progress.done();
+
+            // Update the UI
+            folder.doRefresh();
+          }
+        });
+  }
+
+  /**
+   * Implements the synchronization of a local directory into the selected
+   * DFS folder: only the files that differ are uploaded
+   * 
+   * @param selection
+   * @throws InvocationTargetException
+   * @throws InterruptedException
+   */
+  private void syncToDFS(IStructuredSelection selection)
+      throws InvocationTargetException, InterruptedException {
+
+    List<DFSFolder> folders = filterSelection(DFSFolder.class, selection);
+    if (folders.size() != 1)
+      return;
+    final DFSFolder folder = folders.get(0);
+
+    DirectoryDialog dialog =
+        new DirectoryDialog(Display.getCurrent().getActiveShell());
+    dialog.setText("Select the local directory to synchronize");
+    String dirName = dialog.open();
+    if (dirName == null)
+      return;
+    final File dir = new File(dirName);
+
+    final DFSSyncDialog options =
+        new DFSSyncDialog(Display.getCurrent().getActiveShell(),
+            "Synchronize directory to DFS", String.format(
+                "Upload the files of %s missing or different in %s",
+                dir, folder.getPath()));
+    if (options.open() != DFSSyncDialog.OK)
+      return;
+
+    PlatformUI.getWorkbench().getProgressService().busyCursorWhile(
+        new IRunnableWithProgress() {
+          public void run(IProgressMonitor monitor)
+              throws InvocationTargetException {
+            try {
+              DFSSync.Result result =
+                  new DFSSync(folder, options.isVerifyChecksums(), options
+                      .isDeleteExtras()).upload(dir, monitor);
+              if (!monitor.isCanceled())
+                reportSync("Synchronize directory to DFS", result);
+
+            } catch (IOException ioe) {
+              throw new InvocationTargetException(ioe);
+            }
 
             // Update the UI
             folder.doRefresh();
@@ -251,6 +356,249 @@ public class DFSActionImpl implements IObjectActionDelegate {
         });
   }
 
+  /**
+   * Implements the synchronization of the selected DFS folder into a local
+   * directory: only the files that differ are downloaded
+   * 
+   * @param selection
+   * @throws InvocationTargetException
+   * @throws InterruptedException
+   */
+  private void syncFromDFS(IStructuredSelection selection)
+      throws InvocationTargetException, InterruptedException {
+
+    List<DFSFolder> folders = filterSelection(DFSFolder.class, selection);
+    if (folders.size() != 1)
+      return;
+    final DFSFolder folder = folders.get(0);
+
+    DirectoryDialog dialog =
+        new DirectoryDialog(Display.getCurrent().getActiveShell());
+    dialog.setText("Synchronize to local directory");
+    dialog.setMessage("Select the local directory to synchronize the "
+        + "selected folder into");
+    String directory = dialog.open();
+    if (directory == null)
+      return;
+
+    final File dir = new File(directory);
+    if (!dir.exists())
+      dir.mkdirs();
+
+    if (!dir.isDirectory()) {
+      MessageDialog.openError(null, "Synchronize to local directory",
+          "Invalid directory location: \"" + dir + "\"");
+      return;
+    }
+
+    final DFSSyncDialog options =
+        new DFSSyncDialog(Display.getCurrent().getActiveShell(),
+            "Synchronize to local directory", String.format(
+                "Download the files of %s missing or different in %s",
+                folder.getPath(), dir));
+    if (options.open() != DFSSyncDialog.OK)
+      return;
+
+    PlatformUI.getWorkbench().getProgressService().busyCursorWhile(
+        new IRunnableWithProgress() {
+          public void run(IProgressMonitor monitor)
+              throws InvocationTargetException {
+            try {
+              DFSSync.Result result =
+                  new DFSSync(folder, options.isVerifyChecksums(), options
+                      .isDeleteExtras()).download(dir, monitor);
+              if (!monitor.isCanceled())
+                reportSync("Synchronize to local directory", result);
+
+            } catch (IOException ioe) {
+              throw new InvocationTargetException(ioe);
+            }
+          }
+        });
+  }
+
+  /**
+   * Implements the download of the parts of the selected DFS folder into a
+   * single local file
+   * 
+   * @param selection
+   * @throws InvocationTargetException
+   * @throws InterruptedException
+   */
+  private void mergeDownload(IStructuredSelection selection)
+      throws InvocationTargetException, InterruptedException {
+
+    List<DFSFolder> folders = filterSelection(DFSFolder.class, selection);
+    if (folders.size() != 1)
+      return;
+    final DFSFolder folder = folders.get(0);
+
+    FileDialog dialog =
+        new FileDialog(Display.getCurrent().getActiveShell(), SWT.SAVE);
+    dialog.setText("Merge parts to local file");
+    dialog.setFileName(folder.getPath().getName());
+    dialog.setOverwrite(true);
+    String fileName = dialog.open();
+    if (fileName == null)
+      return;
+    final File file = new File(fileName);
+
+    final DFSMerge merge = new DFSMerge(folder);
+    final List<FileStatus> parts = new ArrayList<FileStatus>();
+    final boolean[] compressed = new boolean[1];
+    PlatformUI.getWorkbench().getProgressService().busyCursorWhile(
+        new IRunnableWithProgress() {
+          public void run(IProgressMonitor monitor)
+              throws InvocationTargetException {
+            monitor.beginTask("Listing " + folder.getPath(),
+                IProgressMonitor.UNKNOWN);
+            try {
+              parts.addAll(merge.listParts());
+              compressed[0] = merge.isCompressed(parts);
+            } catch (IOException ioe) {
+              throw new InvocationTargetException(ioe);
+            }
+            monitor.done();
+          }
+        });
+
+    if (parts.isEmpty()) {
+      MessageDialog.openInformation(null, "Merge parts to local file",
+          "No part to merge in " + folder.getPath());
+      return;
+    }
+
+    final boolean decompress =
+        compressed[0]
+            && MessageDialog.openQuestion(null, "Merge parts to local file",
+                "Some parts are compressed. Decompress them while merging?");
+
+    PlatformUI.getWorkbench().getProgressService().busyCursorWhile(
+        new IRunnableWithProgress() {
+          public void run(IProgressMonitor monitor)
+              throws InvocationTargetException {
+
+            long length = 0;
+            for (FileStatus part : parts)
+              length += part.getLen();
+
+            DFSProgressMonitor progress = new DFSProgressMonitor(monitor);
+            progress.beginTask(String.format("Merging %d parts (%s) into %s",
+                parts.size(), DFSProgressMonitor.formatSize(length), file),
+                length);
+            try {
+              merge.merge(parts, file, decompress, progress);
+
+            } catch (IOException ioe) {
+              throw new InvocationTargetException(ioe);
+
+            } finally {
+              progress.done();
+            }
+          }
+        });
+  }
+
+  /**
+   * Implements the search in the selected DFS folder or location: the
+   * results are shown in the search view as they are found
+   * 
+   * @param selection
+   * @throws PartInitException
+   */
+  private void search(IStructuredSelection selection)
+      throws PartInitException {
+
+    DFSFolder folder = getSelectedFolder(selection);
+    if (folder == null)
+      return;
+
+    DFSSearchDialog dialog =
+        new DFSSearchDialog(Display.getCurrent().getActiveShell(), folder);
+    if (dialog.open() != DFSSearchDialog.OK)
+      return;
+
+    DFSSearchView view =
+        (DFSSearchView) targetPart.getSite().getPage().showView(
+            DFSSearchView.ID);
+    view.search(dialog.getSearch());
+  }
+
+  /**
+   * Implements the disk usage view of the selected DFS folder or location
+   * 
+   * @param selection
+   * @throws PartInitException
+   */
+  private void diskUsage(IStructuredSelection selection)
+      throws PartInitException {
+
+    DFSFolder folder = getSelectedFolder(selection);
+    if (folder == null)
+      return;
+
+    DFSDiskUsageView view =
+        (DFSDiskUsageView) targetPart.getSite().getPage().showView(
+            DFSDiskUsageView.ID);
+    view.show(folder);
+  }
+
+  /**
+   * Implements the report of the block placement of the selected DFS file or
+   * directory tree
+   * 
+   * @param selection
+   * @throws InvocationTargetException
+   * @throws InterruptedException
+   */
+  private void blockReport(IStructuredSelection selection)
+      throws InvocationTargetException, InterruptedException {
+
+    List<DFSPath> paths = filterSelection(DFSPath.class, selection);
+    if (paths.size() != 1)
+      return;
+    final DFSBlockReport report = new DFSBlockReport(paths.get(0));
+
+    PlatformUI.getWorkbench().getProgressService().busyCursorWhile(
+        new IRunnableWithProgress() {
+          public void run(IProgressMonitor monitor)
+              throws InvocationTargetException {
+            monitor.beginTask("Listing the blocks of "
+                + report.getRoot().getPath(), IProgressMonitor.UNKNOWN);
+            try {
+              report.run(monitor);
+            } catch (IOException ioe) {
+              throw new InvocationTargetException(ioe);
+            }
+            monitor.done();
+          }
+        });
+
+    new DFSBlockReportDialog(Display.getCurrent().getActiveShell(), report)
+        .open();
+  }
+
+  /**
+   * @return the single folder selected, or the root folder of the single
+   *         location selected; null if there is none
+   */
+  private static DFSFolder getSelectedFolder(IStructuredSelection selection) {
+    if (selection.size() != 1)
+      return null;
+    Object element = selection.getFirstElement();
+    if (element instanceof DFSFolder)
+      return (DFSFolder) element;
+
+    if (element instanceof DFSLocation) {
+      DFSFolder root = ((DFSLocation) element).getRootFolder();
+      if (root == null)
+        MessageDialog.openInformation(null, "DFS location",
+            "Expand the location to connect to it first");
+      return root;
+    }
+    return null;
+  }
+
   private void reconnect(IStructuredSelection selection) {
     for (DFSLocation location : filterSelection(DFSLocation.class, selection))
       location.reconnect();
@@ -309,31 +657,118 @@ public class DFSActionImpl implements IObjectActionDelegate {
           public void run(IProgressMonitor monitor)
               throws InvocationTargetException {
 
-            int work = 0;
-            for (DFSPath path : paths)
-              work += path.computeDownloadWork();
+            // Size the whole download with one summary per selected path
+            ContentSummary summary;
+            try {
+              monitor.subTask("Computing the size of the download");
+              summary = DFSPath.getContentSummary(paths);
 
-            monitor
-                .beginTask("Downloading files to local file system", work);
+            } catch (IOException ioe) {
+              throw new InvocationTargetException(ioe);
+
+            } catch (InterruptedException ie) {
+              return;
+            }
+
+            DFSProgressMonitor progress = new DFSProgressMonitor(monitor);
+            progress.beginTask(String.format(
+                "Downloading %d files (%s) to local file system", summary
+                    .getFileCount(), DFSProgressMonitor.formatSize(summary
+                    .getLength())), summary.getLength());
 
             for (DFSPath path : paths) {
-              if (monitor.isCanceled())
+              if (progress.isCanceled())
                 return;
               try {
-                path.downloadToLocalDirectory(monitor, dir);
+                path.downloadToLocalDirectory(progress, dir);
               } catch (Exception e) {
                 // nothing we want to do here
                 e.printStackTrace();
               }
             }
 
-            monitor.done();
+            // Nothing left to resume
+            if (!progress.isCanceled())
+              DFSTransferJournal.getInstance().removeCompleted(dir);
+
+            progress.done();
+          }
+        });
+  }
+
+  /**
+   * Implements the copy of the selected files and directories into a
+   * folder of a Hadoop location, streamed from one cluster to the other
+   * without local staging
+   * 
+   * @param selection
+   * @throws InvocationTargetException
+   * @throws InterruptedException
+   */
+  private void copyToLocation(IStructuredSelection selection)
+      throws InvocationTargetException, InterruptedException {
+
+    final List<DFSPath> paths = filterSelection(DFSPath.class, selection);
+    if (paths.isEmpty())
+      return;
+
+    String folder = paths.get(0).getPath().getParent().toUri().getPath();
+    DFSCopyDialog dialog =
+        new DFSCopyDialog(Display.getCurrent().getActiveShell(),
+            String.format("Copy %d selected file(s) and directories to:",
+                paths.size()), folder);
+    if (dialog.open() != DFSCopyDialog.OK)
+      return;
+
+    final HadoopCluster location = dialog.getLocation();
+    final Path destination = new Path(dialog.getFolder());
+
+    PlatformUI.getWorkbench().getProgressService().busyCursorWhile(
+        new IRunnableWithProgress() {
+          public void run(IProgressMonitor monitor)
+              throws InvocationTargetException {
+
+            ContentSummary summary;
+            try {
+              monitor.subTask("Computing the size of the copy");
+              summary = DFSPath.getContentSummary(paths);
+
+            } catch (IOException ioe) {
+              throw new InvocationTargetException(ioe);
+
+            } catch (InterruptedException ie) {
+              return;
+            }
+
+            DFSProgressMonitor progress = new DFSProgressMonitor(monitor);
+            progress.beginTask(String.format(
+                "Copying %d files (%s) to %s", summary.getFileCount(),
+                DFSProgressMonitor.formatSize(summary.getLength()), location
+                    .getLocationName()), summary.getLength());
+
+            try {
+              Map<Path, IOException> errors =
+                  DFSPath.copy(paths, location, destination, progress);
+
+              // Report all the failures at once
+              if (!errors.isEmpty())
+                ErrorMessageDialog.display("Copy to Hadoop location",
+                    describeErrors(errors));
+
+            } catch (IOException ioe) {
+              throw new InvocationTargetException(ioe);
+
+            } finally {
+              progress.done();
+            }
           }
         });
   }
 
   /**
-   * Open the selected DfsPath in the editor window
+   * Open the selected DfsPath in the DFS file viewer, which only fetches the
+   * part of the file being displayed, or in the DFS record viewer for
+   * SequenceFiles and compressed files
    * 
    * @param selection
    * @throws JSchException
@@ -345,12 +780,46 @@ public class DFSActionImpl implements IObjectActionDelegate {
   private void open(IStructuredSelection selection) throws IOException,
       PartInitException, InvocationTargetException, InterruptedException {
 
-    for (DFSFile file : filterSelection(DFSFile.class, selection)) {
+    for (DFSFile file : filterSelection(DFSFile.class, selection))
+      openEditor(targetPart.getSite().getWorkbenchWindow().getActivePage(),
+          file);
+  }
 
-      IStorageEditorInput editorInput = new DFSFileEditorInput(file);
-      targetPart.getSite().getWorkbenchWindow().getActivePage().openEditor(
-          editorInput, "org.eclipse.ui.DefaultTextEditor");
-    }
+  /**
+   * Opens a DFS file in the viewer matching its format. The format is
+   * probed in a background job, as it may read the head of the file; the
+   * file viewer is used when the probe fails.
+   * 
+   * @param page the workbench page
+   * @param file the DFS file
+   */
+  static void openEditor(final IWorkbenchPage page, final DFSFile file) {
+    Job job = new Job("Opening " + file.getPath()) {
+      @Override
+      protected IStatus run(IProgressMonitor monitor) {
+        boolean records;
+        try {
+          records = DFSRecordReader.isRecordFile(file);
+        } catch (IOException ioe) {
+          records = false;
+        }
+
+        final String editorId =
+            records ? DFSRecordViewer.ID : DFSFileViewer.ID;
+        Display.getDefault().asyncExec(new Runnable() {
+          public void run() {
+            try {
+              page.openEditor(new DFSFileEditorInput(file), editorId);
+            } catch (PartInitException pie) {
+              ErrorMessageDialog.display("Open DFS file", pie.getMessage());
+            }
+          }
+        });
+        return Status.OK_STATUS;
+      }
+    };
+    job.setSystem(true);
+    job.schedule();
   }
 
   /**
@@ -363,30 +832,69 @@ public class DFSActionImpl implements IObjectActionDelegate {
 
   }
 
+  /**
+   * Starts or stops watching the selected folders for changes (see
+   * {@link DFSWatcher})
+   * 
+   * @param selection
+   */
+  private void watch(IStructuredSelection selection) {
+    for (DFSFolder folder : filterSelection(DFSFolder.class, selection)) {
+      DFSWatcher watcher = DFSWatcher.getInstance(folder.getLocation());
+      if (watcher.isWatched(folder))
+        watcher.unwatch(folder);
+      else
+        watcher.watch(folder);
+    }
+  }
+
+  /**
+   * Deletes the selected files and directories: the delete requests are sent
+   * concurrently, from a background job
+   * 
+   * @param selection
+   */
   private void delete(IStructuredSelection selection) {
-    List<DFSPath> list = filterSelection(DFSPath.class, selection);
+    final List<DFSPath> list = filterSelection(DFSPath.class, selection);
     if (list.isEmpty())
       return;
 
+    final int max = 20;
     StringBuffer msg = new StringBuffer();
     msg.append("Are you sure you want to delete "
         + "the following files from the distributed file system?\n");
-    for (DFSPath path : list)
-      msg.append(path.getPath()).append("\n");
+    for (int i = 0; i < Math.min(max, list.size()); ++i)
+      msg.append(list.get(i).getPath()).append("\n");
+    if (list.size() > max)
+      msg.append(String.format("... and %d more\n", list.size() - max));
 
-    if (MessageDialog.openConfirm(null, "Confirm Delete from DFS", msg
-        .toString())) {
+    if (!MessageDialog.openConfirm(null, "Confirm Delete from DFS", msg
+        .toString()))
+      return;
 
-      Set<DFSPath> toRefresh = new HashSet<DFSPath>();
-      for (DFSPath path : list) {
-        path.delete();
-        toRefresh.add(path.getParent());
-      }
+    Job job = new Job("Delete from DFS") {
+      @Override
+      protected IStatus run(IProgressMonitor monitor) {
+        try {
+          Map<Path, IOException> errors = DFSPath.delete(list, monitor);
+
+          // Report all the failures at once
+          if (!errors.isEmpty())
+            ErrorMessageDialog.display("Delete from DFS",
+                describeErrors(errors));
+          return monitor.isCanceled() ? Status.CANCEL_STATUS
+              : Status.OK_STATUS;
 
-      for (DFSPath path : toRefresh) {
-        path.refresh();
+        } catch (InterruptedException ie) {
+          return Status.CANCEL_STATUS;
+
+        } finally {
+          monitor.done();
+        }
       }
-    }
+    };
+    job.setUser(true);
+    job.schedule();
   }
 
   /* @inheritDoc */
@@ -412,15 +920,64 @@ public class DFSActionImpl implements IObjectActionDelegate {
     return list;
   }
 
-  private static int computeUploadWork(File file) {
+  /**
+   * Describe the files that could not be transferred
+   * 
+   * @param errors the errors indexed by file
+   * @return a message listing the first failures
+   */
+  static String describeErrors(Map<?, IOException> errors) {
+    final int max = 20;
+
+    StringBuilder message = new StringBuilder();
+    message.append(String.format("%d file(s) could not be transferred:\n",
+        errors.size()));
+    int count = 0;
+    for (Map.Entry<?, IOException> error : errors.entrySet()) {
+      if (++count > max) {
+        message.append(String.format("... and %d more\n", errors.size()
+            - max));
+        break;
+      }
+      message.append(String.format("%s: %s\n", error.getKey(), error
+          .getValue().getLocalizedMessage()));
+    }
+    return message.toString();
+  }
+
+  /**
+   * Report the outcome of a synchronization
+   * 
+   * @param title the title of the report
+   * @param result the outcome of the synchronization
+   */
+  private static void reportSync(final String title,
+      final DFSSync.Result result) {
+    final String summary =
+        String.format("%d file(s) copied (%s), %d unchanged, %d deleted.\n",
+            result.getCopied(), DFSProgressMonitor.formatSize(result
+                .getBytes()), result.getUnchanged(), result.getDeleted());
+    Display.getDefault().syncExec(new Runnable() {
+      public void run() {
+        if (result.getErrors().isEmpty())
+          MessageDialog.openInformation(Display.getDefault()
+              .getActiveShell(), title, summary);
+        else
+          MessageDialog.openWarning(Display.getDefault().getActiveShell(),
+              title, summary + describeErrors(result.getErrors()));
+      }
+    });
+  }
+
+  private static long computeUploadSize(File file) {
     if (file.isDirectory()) {
-      int contentWork = 1;
+      long contentSize = 0;
       for (File child : file.listFiles())
-        contentWork += computeUploadWork(child);
-      return contentWork;
+        contentSize += computeUploadSize(child);
+      return contentSize;
 
     } else if (file.isFile()) {
-      return 1 + (int) (file.length() / 1024);
+      return file.length();
 
     } else {
       return 0;
@@ -446,6 +1003,13 @@ class DFSFileEditorInput extends PlatformObject implements
     this.file = file;
   }
 
+  /**
+   * @return the DFS file
+   */
+  DFSFile getFile() {
+    return file;
+  }
+
   /* @inheritDoc */
   public String getToolTipText() {
     return file.toDetailedString();
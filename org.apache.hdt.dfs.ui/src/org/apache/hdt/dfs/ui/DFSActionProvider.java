@@ -23,6 +23,8 @@ import org.apache.hdt.dfs.core.DFSFile;
 import org.apache.hdt.dfs.core.DFSFolder;
 import org.apache.hdt.dfs.core.DFSLocation;
 import org.apache.hdt.dfs.core.DFSLocationsRoot;
+import org.apache.hdt.dfs.core.DFSPath;
+import org.apache.hdt.dfs.core.DFSWatcher;
 import org.apache.hdt.dfs.ui.DFSActionImpl;
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.action.IMenuManager;
@@ -99,6 +101,9 @@ public class DFSActionProvider extends CommonActionProvider {
     menu.appendToGroup(ICommonMenuConstants.GROUP_NEW, new DFSAction(
         DFSActions.DOWNLOAD));
 
+    menu.appendToGroup(ICommonMenuConstants.GROUP_NEW, new DFSAction(
+        DFSActions.COPY_TO_LOCATION));
+
     if (site == null)
       return;
 
@@ -115,21 +120,45 @@ public class DFSActionProvider extends CommonActionProvider {
       return;
     Object element = issel.getFirstElement();
 
+    if (element instanceof DFSPath)
+      menu.appendToGroup(ICommonMenuConstants.GROUP_SEARCH, new DFSAction(
+          DFSActions.BLOCK_REPORT));
+
     if (element instanceof DFSFile) {
       menu.appendToGroup(ICommonMenuConstants.GROUP_OPEN, new DFSAction(
           DFSActions.OPEN));
 
     } else if (element instanceof DFSFolder) {
+      DFSFolder folder = (DFSFolder) element;
+      boolean watched =
+          DFSWatcher.getInstance(folder.getLocation()).isWatched(folder);
+      menu.appendToGroup(ICommonMenuConstants.GROUP_OPEN, new DFSAction(
+          DFSActions.WATCH.id, watched ? "Stop watching for changes"
+              : DFSActions.WATCH.title));
       menu.appendToGroup(ICommonMenuConstants.GROUP_NEW, new DFSAction(
           DFSActions.MKDIR));
       menu.appendToGroup(ICommonMenuConstants.GROUP_NEW, new DFSAction(
           DFSActions.UPLOAD_FILES));
       menu.appendToGroup(ICommonMenuConstants.GROUP_NEW, new DFSAction(
           DFSActions.UPLOAD_DIR));
+      menu.appendToGroup(ICommonMenuConstants.GROUP_NEW, new DFSAction(
+          DFSActions.SYNC_TO_DFS));
+      menu.appendToGroup(ICommonMenuConstants.GROUP_NEW, new DFSAction(
+          DFSActions.SYNC_FROM_DFS));
+      menu.appendToGroup(ICommonMenuConstants.GROUP_NEW, new DFSAction(
+          DFSActions.MERGE_DOWNLOAD));
+      menu.appendToGroup(ICommonMenuConstants.GROUP_SEARCH, new DFSAction(
+          DFSActions.SEARCH));
+      menu.appendToGroup(ICommonMenuConstants.GROUP_SEARCH, new DFSAction(
+          DFSActions.DISK_USAGE));
 
     } else if (element instanceof DFSLocation) {
       menu.appendToGroup(ICommonMenuConstants.GROUP_OPEN, new DFSAction(
           DFSActions.RECONNECT));
+      menu.appendToGroup(ICommonMenuConstants.GROUP_SEARCH, new DFSAction(
+          DFSActions.SEARCH));
+      menu.appendToGroup(ICommonMenuConstants.GROUP_SEARCH, new DFSAction(
+          DFSActions.DISK_USAGE));
 
     } else if (element instanceof DFSLocationsRoot) {
       menu.appendToGroup(ICommonMenuConstants.GROUP_OPEN, new DFSAction(
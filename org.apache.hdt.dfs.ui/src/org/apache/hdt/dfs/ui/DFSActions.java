@@ -20,10 +20,15 @@ package org.apache.hdt.dfs.ui;
 
 public enum DFSActions {
 
-  DELETE("Delete"), REFRESH("Refresh"), DOWNLOAD("Download from DFS..."), OPEN(
-      "View"), MKDIR("Create new directory..."), UPLOAD_FILES(
-      "Upload files to DFS..."), UPLOAD_DIR("Upload directory to DFS..."), RECONNECT(
-      "Reconnect"), DISCONNECT("Disconnect");
+  DELETE("Delete"), REFRESH("Refresh"), WATCH("Watch for changes"), DOWNLOAD(
+      "Download from DFS..."), OPEN("View"), MKDIR("Create new directory..."), UPLOAD_FILES(
+      "Upload files to DFS..."), UPLOAD_DIR("Upload directory to DFS..."), SYNC_TO_DFS(
+      "Synchronize directory to DFS..."), SYNC_FROM_DFS(
+      "Synchronize to local directory..."), MERGE_DOWNLOAD(
+      "Merge parts to local file..."), SEARCH("Search..."), DISK_USAGE(
+      "Disk usage"), BLOCK_REPORT("Block report..."), COPY_TO_LOCATION(
+      "Copy to Hadoop location..."), RECONNECT("Reconnect"), DISCONNECT(
+      "Disconnect");
 
   final String title;
 
@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.ui;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hdt.core.dialogs.ErrorMessageDialog;
+import org.apache.hdt.dfs.core.DFSBlockReport;
+import org.apache.hdt.dfs.core.DFSProgressMonitor;
+import org.eclipse.jface.dialogs.Dialog;
+import org.eclipse.jface.dialogs.IDialogConstants;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.FileDialog;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+
+/**
+ * Display of a {@link DFSBlockReport}, with the DataNodes most loaded first
+ */
+class DFSBlockReportDialog extends Dialog {
+
+  private static final int EXPORT_ID = IDialogConstants.CLIENT_ID + 1;
+
+  private final DFSBlockReport report;
+
+  /**
+   * @param shell the parent shell
+   * @param report the completed report
+   */
+  DFSBlockReportDialog(Shell shell, DFSBlockReport report) {
+    super(shell);
+    this.report = report;
+    setShellStyle(getShellStyle() | SWT.RESIZE);
+  }
+
+  /* @inheritDoc */
+  @Override
+  protected void configureShell(Shell shell) {
+    super.configureShell(shell);
+    shell.setText("Block report of " + report.getRoot().getPath());
+  }
+
+  /* @inheritDoc */
+  @Override
+  protected Control createDialogArea(Composite parent) {
+    Composite area = (Composite) super.createDialogArea(parent);
+
+    StringBuilder summary = new StringBuilder();
+    summary.append(String.format("%d files, %d blocks, %s%n", report
+        .getFiles(), report.getBlocks(), DFSProgressMonitor.formatSize(report
+        .getBytes())));
+    summary.append(String.format(
+        "%d blocks under-replicated, %d missing, %d corrupt%n", report
+            .getUnderReplicated(), report.getMissing(), report.getCorrupt()));
+    for (Map.Entry<Integer, Long> entry : report.getRackSpread().entrySet())
+      summary.append(String.format("%d blocks on %d rack%s%n", entry
+          .getValue(), entry.getKey(), (entry.getKey() > 1) ? "s" : ""));
+    int errors = report.getErrors().size();
+    if (errors > 0)
+      summary.append(String.format("%d directories could not be listed%n",
+          errors));
+    new Label(area, SWT.NONE).setText(summary.toString().trim());
+
+    Table table = new Table(area, SWT.BORDER | SWT.FULL_SELECTION);
+    table.setHeaderVisible(true);
+    GridData data = new GridData(SWT.FILL, SWT.FILL, true, true);
+    data.heightHint = 300;
+    table.setLayoutData(data);
+    createColumn(table, "DataNode", 200);
+    createColumn(table, "Rack", 120);
+    createColumn(table, "Blocks", 80);
+    createColumn(table, "Size", 90);
+    createColumn(table, "Share", 60);
+
+    List<DFSBlockReport.Host> hosts = report.getHosts();
+    long replicas = 0;
+    for (DFSBlockReport.Host host : hosts)
+      replicas += host.getBlocks();
+    for (DFSBlockReport.Host host : hosts) {
+      TableItem item = new TableItem(table, SWT.NONE);
+      item.setText(new String[] {
+          host.getName(),
+          host.getRack(),
+          Long.toString(host.getBlocks()),
+          DFSProgressMonitor.formatSize(host.getBytes()),
+          String.format("%.1f%%", 100.0 * host.getBlocks()
+              / Math.max(1, replicas)) });
+    }
+
+    return area;
+  }
+
+  /* @inheritDoc */
+  @Override
+  protected void createButtonsForButtonBar(Composite parent) {
+    createButton(parent, EXPORT_ID, "Export...", false);
+    createButton(parent, IDialogConstants.OK_ID, IDialogConstants.OK_LABEL,
+        true);
+  }
+
+  /* @inheritDoc */
+  @Override
+  protected void buttonPressed(int buttonId) {
+    if (buttonId == EXPORT_ID)
+      export();
+    else
+      super.buttonPressed(buttonId);
+  }
+
+  /*
+   * Internals
+   */
+
+  private static void createColumn(Table table, String name, int width) {
+    TableColumn column = new TableColumn(table, SWT.NONE);
+    column.setText(name);
+    column.setWidth(width);
+  }
+
+  private void export() {
+    FileDialog dialog = new FileDialog(getShell(), SWT.SAVE);
+    dialog.setText("Export block report");
+    dialog.setFilterExtensions(new String[] { "*.csv" });
+    dialog.setFileName(report.getRoot().getPath().getName() + "-blocks.csv");
+    dialog.setOverwrite(true);
+    String fileName = dialog.open();
+    if (fileName == null)
+      return;
+
+    try {
+      report.export(new File(fileName));
+    } catch (IOException ioe) {
+      ErrorMessageDialog.display("Export block report", ioe
+          .getLocalizedMessage());
+    }
+  }
+
+}
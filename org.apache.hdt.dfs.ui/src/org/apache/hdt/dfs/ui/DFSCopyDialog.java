@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hdt.core.cluster.HadoopCluster;
+import org.apache.hdt.core.cluster.ServerRegistry;
+import org.eclipse.jface.dialogs.Dialog;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Combo;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
+
+/**
+ * Choice of the destination of a copy between Hadoop locations
+ */
+class DFSCopyDialog extends Dialog {
+
+  private final String message;
+
+  private final List<HadoopCluster> locations =
+      new ArrayList<HadoopCluster>();
+
+  private Combo locationCombo;
+
+  private Text folderText;
+
+  private HadoopCluster location;
+
+  private String folder;
+
+  /**
+   * @param shell the parent shell
+   * @param message the description of the copy
+   * @param folder the initial destination folder
+   */
+  DFSCopyDialog(Shell shell, String message, String folder) {
+    super(shell);
+    this.message = message;
+    this.folder = folder;
+    this.locations.addAll(ServerRegistry.getInstance().getServers());
+  }
+
+  /**
+   * @return the destination location
+   */
+  HadoopCluster getLocation() {
+    return location;
+  }
+
+  /**
+   * @return the destination folder
+   */
+  String getFolder() {
+    return folder;
+  }
+
+  /* @inheritDoc */
+  @Override
+  protected void configureShell(Shell shell) {
+    super.configureShell(shell);
+    shell.setText("Copy to Hadoop location");
+  }
+
+  /* @inheritDoc */
+  @Override
+  protected Control createDialogArea(Composite parent) {
+    Composite area = (Composite) super.createDialogArea(parent);
+    area.setLayout(new GridLayout(2, false));
+
+    Label label = new Label(area, SWT.WRAP);
+    label.setText(message);
+    label.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 2,
+        1));
+
+    new Label(area, SWT.NONE).setText("Destination location:");
+    locationCombo = new Combo(area, SWT.READ_ONLY);
+    locationCombo.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true,
+        false));
+    for (HadoopCluster location : locations)
+      locationCombo.add(location.getLocationName());
+    if (!locations.isEmpty())
+      locationCombo.select(0);
+
+    new Label(area, SWT.NONE).setText("Destination folder:");
+    folderText = new Text(area, SWT.SINGLE | SWT.BORDER);
+    folderText.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+    folderText.setText(folder);
+
+    return area;
+  }
+
+  /* @inheritDoc */
+  @Override
+  protected void okPressed() {
+    int index = locationCombo.getSelectionIndex();
+    if ((index < 0) || (folderText.getText().trim().length() == 0))
+      return;
+
+    location = locations.get(index);
+    folder = folderText.getText().trim();
+    super.okPressed();
+  }
+
+}
@@ -0,0 +1,264 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.ui;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hdt.dfs.core.DFSDiskUsage;
+import org.apache.hdt.dfs.core.DFSFolder;
+import org.apache.hdt.dfs.core.DFSProgressMonitor;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.viewers.ITableLabelProvider;
+import org.eclipse.jface.viewers.ITreeContentProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.TreeViewer;
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Tree;
+import org.eclipse.swt.widgets.TreeColumn;
+import org.eclipse.ui.part.ViewPart;
+
+/**
+ * Disk usage of a DFS folder, one level at a time: expanding a sub-folder
+ * computes the disk usage of its children (see {@link DFSDiskUsage}).
+ * Children are sorted by space consumed, largest first.
+ */
+public class DFSDiskUsageView extends ViewPart {
+
+  /**
+   * Identifier of the view, as declared in plugin.xml
+   */
+  public static final String ID = "org.apache.hdt.dfs.ui.DFSDiskUsageView";
+
+  private TreeViewer viewer;
+
+  /**
+   * Children of the folders computed so far, indexed by folder
+   */
+  private final Map<DFSFolder, Object[]> children =
+      new HashMap<DFSFolder, Object[]>();
+
+  /**
+   * Folders whose children are being computed
+   */
+  private final Set<DFSFolder> loading = new HashSet<DFSFolder>();
+
+  private final Action refreshAction = new Action("Refresh") {
+    @Override
+    public void run() {
+      children.clear();
+      viewer.refresh();
+    }
+  };
+
+  /* @inheritDoc */
+  @Override
+  public void createPartControl(Composite parent) {
+    Tree tree =
+        new Tree(parent, SWT.SINGLE | SWT.FULL_SELECTION | SWT.H_SCROLL
+            | SWT.V_SCROLL);
+    tree.setHeaderVisible(true);
+    tree.setLayoutData(new GridData(GridData.FILL_BOTH));
+    createColumn(tree, "Name", 300);
+    createColumn(tree, "Space consumed", 110);
+    createColumn(tree, "Size", 90);
+    createColumn(tree, "Files", 80);
+    createColumn(tree, "Directories", 80);
+    createColumn(tree, "Quota", 80);
+    createColumn(tree, "Space quota", 90);
+
+    viewer = new TreeViewer(tree);
+    viewer.setContentProvider(new UsageContentProvider());
+    viewer.setLabelProvider(new UsageLabelProvider());
+    getViewSite().setSelectionProvider(viewer);
+    getViewSite().getActionBars().getToolBarManager().add(refreshAction);
+  }
+
+  /* @inheritDoc */
+  @Override
+  public void setFocus() {
+    viewer.getControl().setFocus();
+  }
+
+  /**
+   * Shows the disk usage of a folder
+   *
+   * @param folder the DFS folder
+   */
+  public void show(DFSFolder folder) {
+    setContentDescription("Disk usage of " + folder.getPath());
+    children.clear();
+    viewer.setInput(folder);
+  }
+
+  /*
+   * Internals
+   */
+
+  private static void createColumn(Tree tree, String name, int width) {
+    TreeColumn column = new TreeColumn(tree, SWT.NONE);
+    column.setText(name);
+    column.setWidth(width);
+    column.setResizable(true);
+  }
+
+  private static DFSFolder getFolder(Object element) {
+    if (element instanceof DFSFolder)
+      return (DFSFolder) element;
+    if ((element instanceof DFSDiskUsage.Entry)
+        && (((DFSDiskUsage.Entry) element).getPath() instanceof DFSFolder))
+      return (DFSFolder) ((DFSDiskUsage.Entry) element).getPath();
+    return null;
+  }
+
+  /**
+   * Gets the computed children of a folder, or starts computing them
+   *
+   * @param element the element of the folder in the tree
+   */
+  private Object[] getChildren(final Object element) {
+    final DFSFolder folder = getFolder(element);
+    if (folder == null)
+      return new Object[0];
+
+    Object[] computed = children.get(folder);
+    if (computed != null)
+      return computed;
+
+    if (loading.add(folder)) {
+      Job job = new Job("Computing the disk usage of " + folder.getPath()) {
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+          Object[] result;
+          try {
+            List<DFSDiskUsage.Entry> entries =
+                DFSDiskUsage.list(folder, monitor);
+            result = entries.toArray();
+
+          } catch (IOException ioe) {
+            result = new Object[] { "Error: " + ioe.getLocalizedMessage() };
+
+          } catch (InterruptedException ie) {
+            result = new Object[] { "Cancelled" };
+          }
+
+          final Object[] done = result;
+          Display.getDefault().asyncExec(new Runnable() {
+            public void run() {
+              loading.remove(folder);
+              if (viewer.getControl().isDisposed())
+                return;
+              children.put(folder, done);
+              viewer.refresh(element);
+            }
+          });
+          return Status.OK_STATUS;
+        }
+      };
+      job.schedule();
+    }
+    return new Object[] { "Computing..." };
+  }
+
+  /**
+   * Folders and their children, computed in the background
+   */
+  private class UsageContentProvider implements ITreeContentProvider {
+
+    public Object[] getElements(Object input) {
+      return DFSDiskUsageView.this.getChildren(input);
+    }
+
+    public Object[] getChildren(Object parent) {
+      return DFSDiskUsageView.this.getChildren(parent);
+    }
+
+    public Object getParent(Object element) {
+      return null;
+    }
+
+    public boolean hasChildren(Object element) {
+      return getFolder(element) != null;
+    }
+
+    public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
+    }
+
+    public void dispose() {
+    }
+  }
+
+  /**
+   * Columns of a file or directory
+   */
+  private static class UsageLabelProvider extends LabelProvider implements
+      ITableLabelProvider {
+
+    public Image getColumnImage(Object element, int columnIndex) {
+      return null;
+    }
+
+    public String getColumnText(Object element, int columnIndex) {
+      if (!(element instanceof DFSDiskUsage.Entry))
+        return (columnIndex == 0) ? element.toString() : "";
+
+      DFSDiskUsage.Entry entry = (DFSDiskUsage.Entry) element;
+      ContentSummary summary = entry.getSummary();
+      if (columnIndex == 0)
+        return entry.getPath().getPath().getName();
+      if (summary == null)
+        return (columnIndex == 1) ? "Error: "
+            + entry.getError().getLocalizedMessage() : "";
+
+      switch (columnIndex) {
+        case 1:
+          return DFSProgressMonitor.formatSize(summary.getSpaceConsumed());
+        case 2:
+          return DFSProgressMonitor.formatSize(summary.getLength());
+        case 3:
+          return Long.toString(summary.getFileCount());
+        case 4:
+          return Long.toString(summary.getDirectoryCount());
+        case 5:
+          return (summary.getQuota() < 0) ? "none" : Long.toString(summary
+              .getQuota());
+        case 6:
+          return (summary.getSpaceQuota() < 0) ? "none" : DFSProgressMonitor
+              .formatSize(summary.getSpaceQuota());
+        default:
+          return "";
+      }
+    }
+  }
+
+}
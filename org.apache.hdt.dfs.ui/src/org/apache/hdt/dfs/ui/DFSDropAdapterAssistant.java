@@ -0,0 +1,285 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.ui;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hdt.core.cluster.ConfProp;
+import org.apache.hdt.core.dialogs.ErrorMessageDialog;
+import org.apache.hdt.dfs.core.DFSFolder;
+import org.apache.hdt.dfs.core.DFSPath;
+import org.apache.hdt.dfs.core.DFSProgressMonitor;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.operation.IRunnableWithProgress;
+import org.eclipse.jface.util.LocalSelectionTransfer;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.swt.dnd.DND;
+import org.eclipse.swt.dnd.DropTargetEvent;
+import org.eclipse.swt.dnd.TransferData;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.PlatformUI;
+import org.eclipse.ui.navigator.CommonDropAdapter;
+import org.eclipse.ui.navigator.CommonDropAdapterAssistant;
+
+/**
+ * Moves or copies the DFS files and directories dropped on a folder of the
+ * same location.
+ *
+ * <p>
+ * A move only renames the paths on the NameNode. A copy streams the data
+ * through this workstation, or, for copies larger than
+ * {@link ConfProp#PI_DFS_DISTCP_THRESHOLD} and if the user agrees, runs as a
+ * DistCp job on the cluster.
+ */
+public class DFSDropAdapterAssistant extends CommonDropAdapterAssistant {
+
+  /* @inheritDoc */
+  @Override
+  public IStatus validateDrop(Object target, int operation,
+      TransferData transferType) {
+
+    if (!(target instanceof DFSFolder)
+        || !LocalSelectionTransfer.getTransfer().isSupportedType(
+            transferType))
+      return Status.CANCEL_STATUS;
+
+    if ((operation != DND.DROP_MOVE) && (operation != DND.DROP_COPY))
+      return Status.CANCEL_STATUS;
+
+    DFSFolder folder = (DFSFolder) target;
+    List<DFSPath> paths = getDraggedPaths();
+    if (paths.isEmpty())
+      return Status.CANCEL_STATUS;
+
+    for (DFSPath path : paths) {
+      // Copies to other locations go through "Copy to Hadoop location..."
+      if (path.getLocation() != folder.getLocation())
+        return Status.CANCEL_STATUS;
+
+      // A folder cannot go inside itself
+      if (isAncestor(path.getPath(), folder.getPath()))
+        return Status.CANCEL_STATUS;
+
+      Path parent = path.getPath().getParent();
+      if ((operation == DND.DROP_MOVE) && (parent != null)
+          && samePath(folder.getPath(), parent))
+        return Status.CANCEL_STATUS;
+    }
+    return Status.OK_STATUS;
+  }
+
+  /* @inheritDoc */
+  @Override
+  public IStatus handleDrop(CommonDropAdapter dropAdapter,
+      DropTargetEvent event, Object target) {
+
+    DFSFolder folder = (DFSFolder) target;
+    List<DFSPath> paths = getDraggedPaths();
+    try {
+      if (event.detail == DND.DROP_MOVE)
+        move(folder, paths);
+      else
+        copy(folder, paths);
+      return Status.OK_STATUS;
+
+    } catch (InvocationTargetException ite) {
+      Throwable cause = ite.getCause();
+      cause.printStackTrace();
+      MessageDialog.openError(Display.getDefault().getActiveShell(),
+          "DFS Action error",
+          "An error occurred while performing DFS operation: "
+              + cause.getMessage());
+      return Status.CANCEL_STATUS;
+
+    } catch (InterruptedException ie) {
+      return Status.CANCEL_STATUS;
+    }
+  }
+
+  /*
+   * Internals
+   */
+
+  private void move(final DFSFolder folder, final List<DFSPath> paths)
+      throws InvocationTargetException, InterruptedException {
+
+    final List<Map<Path, IOException>> result =
+        new ArrayList<Map<Path, IOException>>();
+    PlatformUI.getWorkbench().getProgressService().busyCursorWhile(
+        new IRunnableWithProgress() {
+          public void run(IProgressMonitor monitor) {
+            monitor.beginTask("Moving files to " + folder.getPath(),
+                IProgressMonitor.UNKNOWN);
+            result.add(folder.move(paths));
+            monitor.done();
+          }
+        });
+
+    Set<DFSPath> toRefresh = new HashSet<DFSPath>();
+    toRefresh.add(folder);
+    for (DFSPath path : paths) {
+      if (path.getParent() != null)
+        toRefresh.add(path.getParent());
+    }
+    for (DFSPath path : toRefresh)
+      path.refresh();
+
+    if (!result.isEmpty() && !result.get(0).isEmpty())
+      ErrorMessageDialog.display("Move in distributed file system",
+          DFSActionImpl.describeErrors(result.get(0)));
+  }
+
+  private void copy(final DFSFolder folder, final List<DFSPath> paths)
+      throws InvocationTargetException, InterruptedException {
+
+    // Size the copy first, to decide how to run it
+    final ContentSummary[] summary = new ContentSummary[1];
+    PlatformUI.getWorkbench().getProgressService().busyCursorWhile(
+        new IRunnableWithProgress() {
+          public void run(IProgressMonitor monitor)
+              throws InvocationTargetException, InterruptedException {
+            monitor.beginTask("Computing the size of the copy",
+                IProgressMonitor.UNKNOWN);
+            try {
+              summary[0] = DFSPath.getContentSummary(paths);
+            } catch (IOException ioe) {
+              throw new InvocationTargetException(ioe);
+            }
+            monitor.done();
+          }
+        });
+
+    long threshold =
+        folder.getLocation().getConfPropLong(ConfProp.PI_DFS_DISTCP_THRESHOLD)
+            * 1024L * 1024L;
+    if ((summary[0].getLength() >= threshold)
+        && MessageDialog.openQuestion(Display.getDefault().getActiveShell(),
+            "Copy in distributed file system", String.format(
+                "The copy holds %d files (%s).\n\nSubmit a DistCp job to "
+                    + "copy them on the cluster instead of streaming "
+                    + "them through this workstation?", summary[0]
+                    .getFileCount(), DFSProgressMonitor.formatSize(summary[0]
+                    .getLength())))) {
+      distCp(folder, paths);
+      return;
+    }
+
+    PlatformUI.getWorkbench().getProgressService().busyCursorWhile(
+        new IRunnableWithProgress() {
+          public void run(IProgressMonitor monitor)
+              throws InvocationTargetException {
+
+            DFSProgressMonitor progress = new DFSProgressMonitor(monitor);
+            progress.beginTask(String.format("Copying %d files (%s) to %s",
+                summary[0].getFileCount(), DFSProgressMonitor
+                    .formatSize(summary[0].getLength()), folder.getPath()),
+                summary[0].getLength());
+            try {
+              Map<Path, IOException> errors = folder.copy(progress, paths);
+
+              // Report all the failures at once
+              if (!errors.isEmpty())
+                ErrorMessageDialog.display(
+                    "Copy in distributed file system", DFSActionImpl
+                        .describeErrors(errors));
+
+            } catch (IOException ioe) {
+              throw new InvocationTargetException(ioe);
+
+            } finally {
+              progress.done();
+            }
+          }
+        });
+    folder.refresh();
+  }
+
+  private void distCp(final DFSFolder folder, final List<DFSPath> paths)
+      throws InvocationTargetException, InterruptedException {
+
+    final Job[] job = new Job[1];
+    PlatformUI.getWorkbench().getProgressService().busyCursorWhile(
+        new IRunnableWithProgress() {
+          public void run(IProgressMonitor monitor)
+              throws InvocationTargetException {
+            monitor.beginTask("Submitting DistCp job",
+                IProgressMonitor.UNKNOWN);
+            try {
+              job[0] = folder.distCp(paths);
+            } catch (IOException ioe) {
+              throw new InvocationTargetException(ioe);
+            }
+            monitor.done();
+          }
+        });
+
+    MessageDialog.openInformation(Display.getDefault().getActiveShell(),
+        "Copy in distributed file system", String.format(
+            "DistCp job %s submitted.\n\nRefresh %s once it completes.",
+            job[0].getJobID(), folder.getPath()));
+  }
+
+  /**
+   * Gets the DFS files and directories being dragged
+   */
+  private static List<DFSPath> getDraggedPaths() {
+    List<DFSPath> paths = new ArrayList<DFSPath>();
+    ISelection selection = LocalSelectionTransfer.getTransfer().getSelection();
+    if (selection instanceof IStructuredSelection) {
+      for (Object obj : ((IStructuredSelection) selection).toList()) {
+        if (obj instanceof DFSPath)
+          paths.add((DFSPath) obj);
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * Checks whether a path is an ancestor of another path, or the same path
+   */
+  private static boolean isAncestor(Path ancestor, Path path) {
+    for (Path p = path; p != null; p = p.getParent()) {
+      if (samePath(p, ancestor))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Compares paths of the same location, whether qualified or not: the root
+   * folder has an unqualified path while its children are qualified
+   */
+  private static boolean samePath(Path a, Path b) {
+    return a.toUri().getPath().equals(b.toUri().getPath());
+  }
+
+}
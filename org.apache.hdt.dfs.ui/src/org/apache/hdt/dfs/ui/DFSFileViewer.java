@@ -0,0 +1,669 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.ui;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.apache.hdt.dfs.core.DFSFile;
+import org.apache.hdt.dfs.core.DFSFileReader;
+import org.apache.hdt.dfs.core.DFSProgressMonitor;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.dialogs.IInputValidator;
+import org.eclipse.jface.dialogs.InputDialog;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.resource.JFaceResources;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Text;
+import org.eclipse.ui.IEditorInput;
+import org.eclipse.ui.IEditorSite;
+import org.eclipse.ui.PartInitException;
+import org.eclipse.ui.part.EditorPart;
+
+/**
+ * Read-only viewer for DFS files of any size.
+ *
+ * <p>
+ * Only a window of the file is shown at a time: moving around the file
+ * fetches the new window through a {@link DFSFileReader}, in a background
+ * job. Searches stream over the file on the DFS and then move the window to
+ * the match.
+ *
+ * <p>
+ * In follow mode, the viewer shows the end of the file and appends the
+ * bytes written since the last check. The length of the file is checked
+ * less and less often while it does not grow.
+ */
+public class DFSFileViewer extends EditorPart {
+
+  /**
+   * Identifier of the viewer, as declared in plugin.xml
+   */
+  public static final String ID = "org.apache.hdt.dfs.ui.DFSFileViewer";
+
+  /**
+   * Maximum number of bytes shown at once
+   */
+  private static final int WINDOW_SIZE = 4 * DFSFileReader.PAGE_SIZE;
+
+  private static final Charset CHARSET = Charset.forName("UTF-8");
+
+  /**
+   * Shortest and longest delays between two checks of a followed file, in
+   * milliseconds
+   */
+  private static final long MIN_FOLLOW_DELAY = 1000;
+
+  private static final long MAX_FOLLOW_DELAY = 30 * 1000;
+
+  private DFSFile file;
+
+  private DFSFileReader reader;
+
+  /**
+   * Whether the viewer was closed: the reader is not opened again
+   */
+  private boolean disposed = false;
+
+  private StyledText text;
+
+  private Text searchText;
+
+  private Label status;
+
+  private Button followButton;
+
+  /**
+   * Window currently shown, in bytes
+   */
+  private long windowStart = 0;
+
+  private long windowEnd = 0;
+
+  /**
+   * Whether the window shows the end of the file
+   */
+  private boolean atEnd = false;
+
+  /**
+   * Offset of the last match found, -1 if none
+   */
+  private volatile long lastMatch = -1;
+
+  /**
+   * Job moving the window, only the latest request matters
+   */
+  private Job loadJob;
+
+  /**
+   * Job checking the length of the followed file, null if not following
+   */
+  private Job followJob;
+
+  /**
+   * Job of the last search, null if none
+   */
+  private Job searchJob;
+
+  /* @inheritDoc */
+  @Override
+  public void init(IEditorSite site, IEditorInput input)
+      throws PartInitException {
+    if (!(input instanceof DFSFileEditorInput))
+      throw new PartInitException("Not a DFS file: " + input.getName());
+
+    setSite(site);
+    setInput(input);
+    setPartName(input.getName());
+    setTitleToolTip(input.getToolTipText());
+    this.file = ((DFSFileEditorInput) input).getFile();
+  }
+
+  /* @inheritDoc */
+  @Override
+  public void createPartControl(Composite parent) {
+    parent.setLayout(new GridLayout(1, false));
+
+    Composite bar = new Composite(parent, SWT.NONE);
+    bar.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+    bar.setLayout(new GridLayout(9, false));
+
+    createButton(bar, "Head", new Runnable() {
+      public void run() {
+        showFrom(0);
+      }
+    });
+    createButton(bar, "Previous", new Runnable() {
+      public void run() {
+        showBefore(windowStart);
+      }
+    });
+    createButton(bar, "Next", new Runnable() {
+      public void run() {
+        showFrom(windowEnd);
+      }
+    });
+    createButton(bar, "Tail", new Runnable() {
+      public void run() {
+        showBefore(Long.MAX_VALUE);
+      }
+    });
+    createButton(bar, "Go to offset...", new Runnable() {
+      public void run() {
+        goToOffset();
+      }
+    });
+
+    followButton = new Button(bar, SWT.TOGGLE);
+    followButton.setText("Follow");
+    followButton.setToolTipText("Show the data appended to the file");
+    followButton.addSelectionListener(new SelectionAdapter() {
+      @Override
+      public void widgetSelected(SelectionEvent e) {
+        setFollow(followButton.getSelection());
+      }
+    });
+
+    searchText = new Text(bar, SWT.SINGLE | SWT.BORDER | SWT.SEARCH);
+    searchText.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true,
+        false));
+    searchText.addSelectionListener(new SelectionAdapter() {
+      @Override
+      public void widgetDefaultSelected(SelectionEvent e) {
+        find();
+      }
+    });
+    createButton(bar, "Find next", new Runnable() {
+      public void run() {
+        find();
+      }
+    });
+
+    status = new Label(bar, SWT.NONE);
+    status.setLayoutData(new GridData(SWT.END, SWT.CENTER, false, false));
+
+    text =
+        new StyledText(parent, SWT.MULTI | SWT.READ_ONLY | SWT.V_SCROLL
+            | SWT.H_SCROLL);
+    text.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+    text.setFont(JFaceResources.getTextFont());
+
+    showFrom(0);
+  }
+
+  /* @inheritDoc */
+  @Override
+  public void setFocus() {
+    text.setFocus();
+  }
+
+  /* @inheritDoc */
+  @Override
+  public void dispose() {
+    if (loadJob != null)
+      loadJob.cancel();
+    if (followJob != null)
+      followJob.cancel();
+    if (searchJob != null)
+      searchJob.cancel();
+
+    final DFSFileReader closed;
+    synchronized (this) {
+      disposed = true;
+      closed = reader;
+      reader = null;
+    }
+
+    // Closing waits for the read in progress, if any
+    if (closed != null) {
+      Job job = new Job("Closing " + file.getPath()) {
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+          try {
+            closed.close();
+          } catch (IOException ioe) {
+            ioe.printStackTrace();
+          }
+          return Status.OK_STATUS;
+        }
+      };
+      job.setSystem(true);
+      job.schedule();
+    }
+    super.dispose();
+  }
+
+  /* @inheritDoc */
+  @Override
+  public boolean isDirty() {
+    return false;
+  }
+
+  /* @inheritDoc */
+  @Override
+  public boolean isSaveAsAllowed() {
+    return false;
+  }
+
+  /* @inheritDoc */
+  @Override
+  public void doSave(IProgressMonitor monitor) {
+  }
+
+  /* @inheritDoc */
+  @Override
+  public void doSaveAs() {
+  }
+
+  /*
+   * Internals
+   */
+
+  private Button createButton(Composite bar, String label,
+      final Runnable action) {
+    Button button = new Button(bar, SWT.PUSH);
+    button.setText(label);
+    button.addSelectionListener(new SelectionAdapter() {
+      @Override
+      public void widgetSelected(SelectionEvent e) {
+        action.run();
+      }
+    });
+    return button;
+  }
+
+  /**
+   * Gets the reader of the file, opening it on first use
+   *
+   * @throws OperationCanceledException if the viewer was closed, which
+   *         cancels the job asking for the reader
+   */
+  private synchronized DFSFileReader getReader() throws IOException {
+    if (disposed)
+      throw new OperationCanceledException();
+    if (reader == null)
+      reader = new DFSFileReader(file);
+    return reader;
+  }
+
+  /**
+   * Shows the window starting with the line containing the given offset
+   */
+  private void showFrom(final long offset) {
+    load(new Window() {
+      long[] locate(DFSFileReader reader) throws IOException {
+        long start = reader.lineStart(Math.min(offset, reader.getLength()));
+        return new long[] { start, end(reader, start) };
+      }
+    }, -1, 0);
+  }
+
+  /**
+   * Shows the window ending with the line preceding the given offset
+   */
+  private void showBefore(final long offset) {
+    load(new Window() {
+      long[] locate(DFSFileReader reader) throws IOException {
+        long end = Math.min(offset, reader.getLength());
+        long start = reader.nextLineStart(Math.max(0, end - WINDOW_SIZE));
+        if (start >= end)
+          start = Math.max(0, end - WINDOW_SIZE);
+        return new long[] { start, end };
+      }
+    }, -1, 0);
+  }
+
+  /**
+   * Shows the window starting with the line containing a match, and
+   * selects the match
+   */
+  private void showMatch(final long match, final int length) {
+    load(new Window() {
+      long[] locate(DFSFileReader reader) throws IOException {
+        long start = reader.lineStart(match);
+        return new long[] { start,
+            Math.max(end(reader, start), match + length) };
+      }
+    }, match, length);
+  }
+
+  /**
+   * Finds the end of the window starting at the given offset: the last line
+   * that fits, or the window size if the line is longer
+   */
+  private static long end(DFSFileReader reader, long start)
+      throws IOException {
+    long end = Math.min(reader.getLength(), start + WINDOW_SIZE);
+    if (end == reader.getLength())
+      return end;
+
+    long line = reader.lineStart(end);
+    return (line > start) ? line : end;
+  }
+
+  /**
+   * Locates a window in the file
+   */
+  private abstract static class Window {
+    /**
+     * @return the start and end offsets of the window
+     */
+    abstract long[] locate(DFSFileReader reader) throws IOException;
+  }
+
+  /**
+   * Moves the window in the background and displays it
+   *
+   * @param window the window to display
+   * @param match the offset of a match to select in the window, -1 if none
+   * @param matchLength the length of the match in bytes
+   */
+  private void load(final Window window, final long match,
+      final int matchLength) {
+    if (loadJob != null)
+      loadJob.cancel();
+
+    loadJob = new Job("Reading " + file.getPath()) {
+      @Override
+      protected IStatus run(IProgressMonitor monitor) {
+        try {
+          DFSFileReader reader = getReader();
+          long[] range = window.locate(reader);
+          byte[] data = reader.read(range[0], (int) (range[1] - range[0]));
+          if (monitor.isCanceled())
+            return Status.CANCEL_STATUS;
+
+          display(range[0], data, reader.getLength(), match, matchLength);
+          return Status.OK_STATUS;
+
+        } catch (IOException ioe) {
+          return new Status(IStatus.ERROR, Activator.PLUGIN_ID,
+              "Unable to read " + file.getPath(), ioe);
+        }
+      }
+    };
+    loadJob.setSystem(true);
+    loadJob.schedule();
+  }
+
+  /**
+   * Displays a window of the file
+   */
+  private void display(final long start, final byte[] data,
+      final long length, final long match, final int matchLength) {
+    final String content = new String(data, CHARSET);
+    final int selStart, selEnd;
+    if (match >= start) {
+      int from = (int) (match - start);
+      selStart = new String(data, 0, from, CHARSET).length();
+      selEnd =
+          selStart
+              + new String(data, from, Math.min(matchLength, data.length
+                  - from), CHARSET).length();
+    } else {
+      selStart = selEnd = 0;
+    }
+
+    Display.getDefault().asyncExec(new Runnable() {
+      public void run() {
+        if (text.isDisposed())
+          return;
+
+        windowStart = start;
+        windowEnd = start + data.length;
+        atEnd = (windowEnd >= length);
+        text.setText(content);
+        if (selEnd > selStart) {
+          text.setSelection(selStart, selEnd);
+          text.showSelection();
+        } else if (followJob != null) {
+          text.setTopIndex(text.getLineCount() - 1);
+        } else {
+          text.setTopIndex(0);
+        }
+        updateStatus(length);
+      }
+    });
+  }
+
+  private void updateStatus(long length) {
+    status.setText(String.format("Bytes %d-%d of %d (%s)", windowStart,
+        windowEnd, length, DFSProgressMonitor.formatSize(length)));
+    status.getParent().layout();
+  }
+
+  /**
+   * Starts or stops following the file
+   */
+  private void setFollow(boolean follow) {
+    if (followJob != null) {
+      followJob.cancel();
+      followJob = null;
+    }
+    if (!follow)
+      return;
+
+    followJob = new Job("Following " + file.getPath()) {
+      private long delay = MIN_FOLLOW_DELAY;
+
+      @Override
+      protected IStatus run(IProgressMonitor monitor) {
+        try {
+          DFSFileReader reader = getReader();
+          long before = reader.getLength();
+          final long after = reader.refresh();
+          if (after != before) {
+            delay = MIN_FOLLOW_DELAY;
+            Display.getDefault().asyncExec(new Runnable() {
+              public void run() {
+                if (!text.isDisposed())
+                  followed(after);
+              }
+            });
+          } else {
+            delay = Math.min(2 * delay, MAX_FOLLOW_DELAY);
+          }
+
+        } catch (IOException ioe) {
+          Display.getDefault().asyncExec(new Runnable() {
+            public void run() {
+              if (!text.isDisposed()) {
+                followButton.setSelection(false);
+                setFollow(false);
+              }
+            }
+          });
+          return new Status(IStatus.ERROR, Activator.PLUGIN_ID,
+              "Unable to follow " + file.getPath(), ioe);
+        }
+
+        if (!monitor.isCanceled())
+          schedule(delay);
+        return Status.OK_STATUS;
+      }
+    };
+    followJob.setSystem(true);
+
+    showBefore(Long.MAX_VALUE);
+    followJob.schedule(MIN_FOLLOW_DELAY);
+  }
+
+  /**
+   * Updates the viewer after the length of the followed file changed
+   *
+   * @param after the new length of the file
+   */
+  private void followed(long after) {
+    if (followJob == null)
+      return;
+
+    // Leave the window alone if the user moved away from the end
+    if (!atEnd)
+      return;
+
+    if ((after < windowEnd) || (after - windowStart > 2 * WINDOW_SIZE))
+      showBefore(Long.MAX_VALUE);
+    else
+      append(windowEnd);
+  }
+
+  /**
+   * Reads the complete lines following the window and appends them to it
+   *
+   * @param offset the end of the window
+   */
+  private void append(final long offset) {
+    if (loadJob != null)
+      loadJob.cancel();
+
+    loadJob = new Job("Reading " + file.getPath()) {
+      @Override
+      protected IStatus run(IProgressMonitor monitor) {
+        try {
+          DFSFileReader reader = getReader();
+          final long length = reader.getLength();
+          byte[] data =
+              reader.read(offset, (int) Math.min(WINDOW_SIZE, length
+                  - offset));
+
+          // Wait for the end of the last line, unless it is huge
+          int size = data.length;
+          while ((size > 0) && (data[size - 1] != '\n'))
+            --size;
+          if (size == 0)
+            size = (data.length == WINDOW_SIZE) ? data.length : 0;
+          if ((size == 0) || monitor.isCanceled())
+            return Status.OK_STATUS;
+
+          final int appended = size;
+          final String content = new String(data, 0, size, CHARSET);
+          Display.getDefault().asyncExec(new Runnable() {
+            public void run() {
+              if (text.isDisposed() || (windowEnd != offset))
+                return;
+
+              windowEnd += appended;
+              text.append(content);
+              text.setTopIndex(text.getLineCount() - 1);
+              updateStatus(length);
+            }
+          });
+          return Status.OK_STATUS;
+
+        } catch (IOException ioe) {
+          return new Status(IStatus.ERROR, Activator.PLUGIN_ID,
+              "Unable to read " + file.getPath(), ioe);
+        }
+      }
+    };
+    loadJob.setSystem(true);
+    loadJob.schedule();
+  }
+
+  private void goToOffset() {
+    InputDialog dialog =
+        new InputDialog(getSite().getShell(), "Go to offset",
+            "Enter the byte offset to display", Long.toString(windowStart),
+            new IInputValidator() {
+              public String isValid(String value) {
+                try {
+                  return (Long.parseLong(value.trim()) >= 0) ? null
+                      : "The offset cannot be negative";
+                } catch (NumberFormatException nfe) {
+                  return "Not a number";
+                }
+              }
+            });
+    if (dialog.open() == InputDialog.OK)
+      showFrom(Long.parseLong(dialog.getValue().trim()));
+  }
+
+  /**
+   * Searches for the text of the search box after the last match, or from
+   * the start of the window
+   */
+  private void find() {
+    final String query = searchText.getText();
+    if (query.length() == 0)
+      return;
+
+    final byte[] pattern = query.getBytes(CHARSET);
+    final long from = (lastMatch >= windowStart) ? lastMatch + 1 : windowStart;
+
+    if (searchJob != null)
+      searchJob.cancel();
+
+    searchJob = new Job("Searching " + file.getPath()) {
+      @Override
+      protected IStatus run(IProgressMonitor monitor) {
+        try {
+          DFSFileReader reader = getReader();
+          DFSProgressMonitor progress = new DFSProgressMonitor(monitor);
+          progress.beginTask("Searching for \"" + query + "\"", Math.max(0,
+              reader.getLength() - from));
+          final long match = reader.find(pattern, from, progress);
+          progress.done();
+
+          if (monitor.isCanceled())
+            return Status.CANCEL_STATUS;
+
+          if (match < 0) {
+            Display.getDefault().asyncExec(new Runnable() {
+              public void run() {
+                MessageDialog.openInformation(getSite().getShell(),
+                    "Find", "\"" + query + "\" not found after offset "
+                        + from);
+              }
+            });
+            return Status.OK_STATUS;
+          }
+
+          lastMatch = match;
+          Display.getDefault().asyncExec(new Runnable() {
+            public void run() {
+              if (!text.isDisposed())
+                showMatch(match, pattern.length);
+            }
+          });
+          return Status.OK_STATUS;
+
+        } catch (IOException ioe) {
+          return new Status(IStatus.ERROR, Activator.PLUGIN_ID,
+              "Unable to search " + file.getPath(), ioe);
+        }
+      }
+    };
+    searchJob.setUser(true);
+    searchJob.schedule();
+  }
+
+}
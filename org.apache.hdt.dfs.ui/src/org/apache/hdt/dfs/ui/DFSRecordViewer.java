@@ -0,0 +1,364 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.ui;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hdt.dfs.core.DFSFile;
+import org.apache.hdt.dfs.core.DFSProgressMonitor;
+import org.apache.hdt.dfs.core.DFSRecordReader;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.dialogs.IInputValidator;
+import org.eclipse.jface.dialogs.InputDialog;
+import org.eclipse.jface.resource.JFaceResources;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.ui.IEditorInput;
+import org.eclipse.ui.IEditorSite;
+import org.eclipse.ui.PartInitException;
+import org.eclipse.ui.part.EditorPart;
+
+/**
+ * Read-only viewer for SequenceFiles and compressed text files on the DFS.
+ *
+ * <p>
+ * Records are decoded by a {@link DFSRecordReader} one page at a time, in a
+ * background job: the file is only read as far as the pages displayed.
+ */
+public class DFSRecordViewer extends EditorPart {
+
+  /**
+   * Identifier of the viewer, as declared in plugin.xml
+   */
+  public static final String ID = "org.apache.hdt.dfs.ui.DFSRecordViewer";
+
+  /**
+   * Number of records shown at once
+   */
+  private static final int PAGE_RECORDS = 100;
+
+  private DFSFile file;
+
+  private DFSRecordReader reader;
+
+  /**
+   * Whether the viewer was closed: the reader is not opened again
+   */
+  private boolean disposed = false;
+
+  /**
+   * Serializes the reads of the pages, held while reading from the DFS. The
+   * viewer lock only guards the reader field, so closing the viewer never
+   * waits for a read.
+   */
+  private final Object readLock = new Object();
+
+  /**
+   * Job reading the last page requested, null if none
+   */
+  private Job loadJob;
+
+  private StyledText text;
+
+  private Label status;
+
+  private Button nextButton;
+
+  private Button seekButton;
+
+  /* @inheritDoc */
+  @Override
+  public void init(IEditorSite site, IEditorInput input)
+      throws PartInitException {
+    if (!(input instanceof DFSFileEditorInput))
+      throw new PartInitException("Not a DFS file: " + input.getName());
+
+    setSite(site);
+    setInput(input);
+    setPartName(input.getName());
+    setTitleToolTip(input.getToolTipText());
+    this.file = ((DFSFileEditorInput) input).getFile();
+  }
+
+  /* @inheritDoc */
+  @Override
+  public void createPartControl(Composite parent) {
+    parent.setLayout(new GridLayout(1, false));
+
+    Composite bar = new Composite(parent, SWT.NONE);
+    bar.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+    bar.setLayout(new GridLayout(4, false));
+
+    createButton(bar, "First records", new Runnable() {
+      public void run() {
+        load(0);
+      }
+    });
+    nextButton = createButton(bar, "Next records", new Runnable() {
+      public void run() {
+        load(-1);
+      }
+    });
+    seekButton = createButton(bar, "Seek to offset...", new Runnable() {
+      public void run() {
+        seek();
+      }
+    });
+    seekButton.setEnabled(false);
+
+    status = new Label(bar, SWT.NONE);
+    status.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+
+    text =
+        new StyledText(parent, SWT.MULTI | SWT.READ_ONLY | SWT.V_SCROLL
+            | SWT.H_SCROLL);
+    text.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+    text.setFont(JFaceResources.getTextFont());
+
+    load(0);
+  }
+
+  /* @inheritDoc */
+  @Override
+  public void setFocus() {
+    text.setFocus();
+  }
+
+  /* @inheritDoc */
+  @Override
+  public void dispose() {
+    if (loadJob != null)
+      loadJob.cancel();
+
+    final DFSRecordReader closed;
+    synchronized (this) {
+      disposed = true;
+      closed = reader;
+      reader = null;
+    }
+
+    // Closing waits for the read in progress, if any
+    if (closed != null) {
+      Job job = new Job("Closing " + file.getPath()) {
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+          try {
+            closed.close();
+          } catch (IOException ioe) {
+            ioe.printStackTrace();
+          }
+          return Status.OK_STATUS;
+        }
+      };
+      job.setSystem(true);
+      job.schedule();
+    }
+    super.dispose();
+  }
+
+  /* @inheritDoc */
+  @Override
+  public boolean isDirty() {
+    return false;
+  }
+
+  /* @inheritDoc */
+  @Override
+  public boolean isSaveAsAllowed() {
+    return false;
+  }
+
+  /* @inheritDoc */
+  @Override
+  public void doSave(IProgressMonitor monitor) {
+  }
+
+  /* @inheritDoc */
+  @Override
+  public void doSaveAs() {
+  }
+
+  /*
+   * Internals
+   */
+
+  private Button createButton(Composite bar, String label,
+      final Runnable action) {
+    Button button = new Button(bar, SWT.PUSH);
+    button.setText(label);
+    button.addSelectionListener(new SelectionAdapter() {
+      @Override
+      public void widgetSelected(SelectionEvent e) {
+        action.run();
+      }
+    });
+    return button;
+  }
+
+  private void seek() {
+    InputDialog dialog =
+        new InputDialog(getSite().getShell(), "Seek to offset",
+            "Enter a byte offset: records are shown from the first "
+                + "sync marker following it", "0", new IInputValidator() {
+              public String isValid(String value) {
+                try {
+                  return (Long.parseLong(value.trim()) >= 0) ? null
+                      : "The offset cannot be negative";
+                } catch (NumberFormatException nfe) {
+                  return "Not a number";
+                }
+              }
+            });
+    if (dialog.open() == InputDialog.OK)
+      load(Long.parseLong(dialog.getValue().trim()));
+  }
+
+  /**
+   * Gets the reader positioned where the next page starts, opening it on
+   * first use. Called with the read lock held.
+   *
+   * @param position the offset to restart from: 0 for the start of the
+   *        file, -1 to continue after the page shown
+   * @throws OperationCanceledException if the viewer was closed, which
+   *         cancels the job asking for the reader
+   */
+  private DFSRecordReader getReader(long position) throws IOException {
+    DFSRecordReader current;
+    DFSRecordReader stale = null;
+    synchronized (this) {
+      if (disposed)
+        throw new OperationCanceledException();
+      current = reader;
+      if ((current != null) && (position >= 0) && !current.isSeekable()) {
+        // Compressed streams can only restart from the beginning
+        stale = current;
+        current = null;
+        reader = null;
+      }
+    }
+    if (stale != null)
+      stale.close();
+
+    if (current != null) {
+      if (position >= 0)
+        current.seek(position);
+      return current;
+    }
+
+    current = DFSRecordReader.open(file);
+    if (current == null)
+      throw new IOException("Not a SequenceFile nor a compressed file: "
+          + file.getPath());
+    synchronized (this) {
+      if (!disposed) {
+        reader = current;
+        return current;
+      }
+    }
+    current.close();
+    throw new OperationCanceledException();
+  }
+
+  private synchronized boolean isClosed() {
+    return disposed;
+  }
+
+  /**
+   * Reads and displays a page of records in the background
+   *
+   * @param position the offset to restart from: 0 for the start of the
+   *        file, -1 to continue after the page shown
+   */
+  private void load(final long position) {
+    nextButton.setEnabled(false);
+
+    loadJob = new Job("Reading " + file.getPath()) {
+      @Override
+      protected IStatus run(IProgressMonitor monitor) {
+        try {
+          final List<String> records;
+          final String format;
+          final long first, offset;
+          final boolean seekable;
+
+          synchronized (readLock) {
+            DFSRecordReader current = getReader(position);
+            first = current.getCount();
+            records = current.next(PAGE_RECORDS);
+            offset = current.getPosition();
+            format = current.getFormat();
+            seekable = current.isSeekable();
+          }
+
+          final StringBuilder content = new StringBuilder();
+          for (String record : records)
+            content.append(record).append('\n');
+
+          Display.getDefault().asyncExec(new Runnable() {
+            public void run() {
+              if (text.isDisposed())
+                return;
+
+              text.setText(content.toString());
+              text.setTopIndex(0);
+              nextButton.setEnabled(records.size() == PAGE_RECORDS);
+              seekButton.setEnabled(seekable);
+              status.setText(String.format(
+                  "%s - records %d-%d, read up to byte %d of %s", format,
+                  first + 1, first + records.size(), offset,
+                  DFSProgressMonitor.formatSize(file.getLength())));
+              status.getParent().layout();
+            }
+          });
+          return Status.OK_STATUS;
+
+        } catch (IOException ioe) {
+          // The reader was closed under the job
+          if (isClosed())
+            return Status.CANCEL_STATUS;
+
+          Display.getDefault().asyncExec(new Runnable() {
+            public void run() {
+              if (!text.isDisposed())
+                nextButton.setEnabled(true);
+            }
+          });
+          return new Status(IStatus.ERROR, Activator.PLUGIN_ID,
+              "Unable to read " + file.getPath(), ioe);
+        }
+      }
+    };
+    loadJob.setUser(true);
+    loadJob.schedule();
+  }
+
+}
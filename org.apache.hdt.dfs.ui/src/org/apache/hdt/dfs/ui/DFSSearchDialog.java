@@ -0,0 +1,207 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.ui;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.hdt.dfs.core.DFSFolder;
+import org.apache.hdt.dfs.core.DFSSearch;
+import org.eclipse.jface.dialogs.Dialog;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
+
+/**
+ * Criteria of a search in a DFS folder
+ */
+class DFSSearchDialog extends Dialog {
+
+  private static final String DATE_FORMAT = "yyyy-MM-dd";
+
+  private final DFSFolder folder;
+
+  private Text nameText;
+
+  private Button regexButton;
+
+  private Text minSizeText;
+
+  private Text maxSizeText;
+
+  private Text afterText;
+
+  private Text beforeText;
+
+  private Text ownerText;
+
+  private Text depthText;
+
+  private Label errorLabel;
+
+  private DFSSearch search;
+
+  /**
+   * @param shell the parent shell
+   * @param folder the folder to search
+   */
+  DFSSearchDialog(Shell shell, DFSFolder folder) {
+    super(shell);
+    this.folder = folder;
+  }
+
+  /**
+   * @return the search configured with the criteria entered
+   */
+  DFSSearch getSearch() {
+    return search;
+  }
+
+  /* @inheritDoc */
+  @Override
+  protected void configureShell(Shell shell) {
+    super.configureShell(shell);
+    shell.setText("Search in " + folder.getPath());
+  }
+
+  /* @inheritDoc */
+  @Override
+  protected Control createDialogArea(Composite parent) {
+    Composite area = (Composite) super.createDialogArea(parent);
+    area.setLayout(new GridLayout(2, false));
+
+    nameText = createText(area, "Name (glob pattern):");
+    new Label(area, SWT.NONE);
+    regexButton = new Button(area, SWT.CHECK);
+    regexButton.setText("Regular expression");
+
+    minSizeText = createText(area, "Minimum size (e.g. 10m):");
+    maxSizeText = createText(area, "Maximum size (e.g. 2g):");
+    afterText = createText(area, "Modified after (" + DATE_FORMAT + "):");
+    beforeText = createText(area, "Modified before (" + DATE_FORMAT + "):");
+    ownerText = createText(area, "Owner:");
+    depthText = createText(area, "Maximum depth:");
+
+    errorLabel = new Label(area, SWT.WRAP);
+    errorLabel.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false,
+        2, 1));
+
+    return area;
+  }
+
+  /* @inheritDoc */
+  @Override
+  protected void okPressed() {
+    DFSSearch search = new DFSSearch(folder);
+    try {
+      String name = nameText.getText().trim();
+      if (name.length() > 0) {
+        if (regexButton.getSelection())
+          search.setNameRegex(name);
+        else
+          search.setGlob(name);
+      }
+
+      search.setSizeRange(parseSize(minSizeText), parseSize(maxSizeText));
+      search.setModifiedRange(parseDate(afterText), parseDate(beforeText));
+
+      String owner = ownerText.getText().trim();
+      if (owner.length() > 0)
+        search.setOwner(owner);
+
+      String depth = depthText.getText().trim();
+      if (depth.length() > 0)
+        search.setMaxDepth(Integer.parseInt(depth));
+
+    } catch (PatternSyntaxException pse) {
+      showError("Invalid name pattern: " + pse.getDescription());
+      return;
+
+    } catch (IllegalArgumentException iae) {
+      showError(iae.getMessage());
+      return;
+    }
+
+    this.search = search;
+    super.okPressed();
+  }
+
+  /*
+   * Internals
+   */
+
+  private Text createText(Composite area, String label) {
+    new Label(area, SWT.NONE).setText(label);
+    Text text = new Text(area, SWT.SINGLE | SWT.BORDER);
+    text.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+    return text;
+  }
+
+  private void showError(String message) {
+    errorLabel.setText(message);
+    errorLabel.getParent().layout();
+  }
+
+  /**
+   * Parses a size in bytes, with an optional k, m, g or t unit
+   *
+   * @return the size, -1 if the text is empty
+   */
+  private static long parseSize(Text text) {
+    String value = text.getText().trim().toLowerCase();
+    if (value.length() == 0)
+      return -1;
+
+    long unit = 1;
+    int index = "kmgt".indexOf(value.charAt(value.length() - 1));
+    if (index >= 0) {
+      unit = 1L << (10 * (index + 1));
+      value = value.substring(0, value.length() - 1).trim();
+    }
+    try {
+      return (long) (Double.parseDouble(value) * unit);
+    } catch (NumberFormatException nfe) {
+      throw new IllegalArgumentException("Invalid size: " + text.getText());
+    }
+  }
+
+  /**
+   * @return the time in ms, -1 if the text is empty
+   */
+  private static long parseDate(Text text) {
+    String value = text.getText().trim();
+    if (value.length() == 0)
+      return -1;
+    try {
+      SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT);
+      format.setLenient(false);
+      return format.parse(value).getTime();
+    } catch (ParseException pe) {
+      throw new IllegalArgumentException("Invalid date: " + value);
+    }
+  }
+
+}
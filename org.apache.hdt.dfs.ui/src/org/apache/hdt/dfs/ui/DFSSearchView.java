@@ -0,0 +1,275 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.ui;
+
+import java.io.IOException;
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hdt.core.dialogs.ErrorMessageDialog;
+import org.apache.hdt.dfs.core.DFSFile;
+import org.apache.hdt.dfs.core.DFSProgressMonitor;
+import org.apache.hdt.dfs.core.DFSSearch;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.viewers.DoubleClickEvent;
+import org.eclipse.jface.viewers.IDoubleClickListener;
+import org.eclipse.jface.viewers.IStructuredContentProvider;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.jface.viewers.ITableLabelProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.ui.part.ViewPart;
+
+/**
+ * Results of a search in a DFS folder (see {@link DFSSearch}). The results
+ * are added as the crawl finds them.
+ */
+public class DFSSearchView extends ViewPart {
+
+  /**
+   * Identifier of the view, as declared in plugin.xml
+   */
+  public static final String ID = "org.apache.hdt.dfs.ui.DFSSearchView";
+
+  /**
+   * Maximum number of results shown: the crawl stops beyond
+   */
+  private static final int MAX_RESULTS = 10000;
+
+  private TableViewer viewer;
+
+  private Label status;
+
+  private final Action stopAction = new Action("Stop") {
+    @Override
+    public void run() {
+      Job job = current;
+      if (job != null)
+        job.cancel();
+    }
+  };
+
+  /**
+   * The search running, null if none
+   */
+  private volatile Job current;
+
+  private int count;
+
+  /* @inheritDoc */
+  @Override
+  public void createPartControl(Composite parent) {
+    parent.setLayout(new GridLayout(1, false));
+
+    status = new Label(parent, SWT.NONE);
+    status.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+
+    Table table =
+        new Table(parent, SWT.MULTI | SWT.FULL_SELECTION | SWT.H_SCROLL
+            | SWT.V_SCROLL);
+    table.setHeaderVisible(true);
+    table.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+    createColumn(table, "Path", 400);
+    createColumn(table, "Size", 90);
+    createColumn(table, "Modified", 150);
+    createColumn(table, "Owner", 90);
+
+    viewer = new TableViewer(table);
+    viewer.setContentProvider(new IStructuredContentProvider() {
+      public Object[] getElements(Object input) {
+        return new Object[0];
+      }
+
+      public void inputChanged(Viewer viewer, Object oldInput,
+          Object newInput) {
+      }
+
+      public void dispose() {
+      }
+    });
+    viewer.setLabelProvider(new MatchLabelProvider());
+    viewer.addDoubleClickListener(new IDoubleClickListener() {
+      public void doubleClick(DoubleClickEvent event) {
+        open((IStructuredSelection) event.getSelection());
+      }
+    });
+    viewer.setInput(this);
+    getViewSite().setSelectionProvider(viewer);
+
+    stopAction.setEnabled(false);
+    getViewSite().getActionBars().getToolBarManager().add(stopAction);
+  }
+
+  /* @inheritDoc */
+  @Override
+  public void setFocus() {
+    viewer.getControl().setFocus();
+  }
+
+  /* @inheritDoc */
+  @Override
+  public void dispose() {
+    stopAction.run();
+    super.dispose();
+  }
+
+  /**
+   * Runs a search, replacing the results of the previous one
+   *
+   * @param search the search to run
+   */
+  public void search(final DFSSearch search) {
+    stopAction.run();
+    viewer.getTable().removeAll();
+    count = 0;
+    status.setText("Searching " + search.getRoot().getPath() + "...");
+
+    Job job = new Job("Searching " + search.getRoot().getPath()) {
+      @Override
+      protected IStatus run(final IProgressMonitor monitor) {
+        monitor.beginTask(getName(), IProgressMonitor.UNKNOWN);
+        final Job job = this;
+        Map<Path, IOException> errors =
+            search.run(new DFSSearch.Listener() {
+              public void found(final List<DFSSearch.Match> matches) {
+                Display.getDefault().asyncExec(new Runnable() {
+                  public void run() {
+                    if ((current == job) && !viewer.getControl().isDisposed())
+                      add(matches, monitor);
+                  }
+                });
+              }
+            }, monitor);
+
+        finished(this, monitor.isCanceled(), errors);
+        monitor.done();
+        return Status.OK_STATUS;
+      }
+    };
+    job.setUser(true);
+    current = job;
+    stopAction.setEnabled(true);
+    job.schedule();
+  }
+
+  /*
+   * Internals
+   */
+
+  private static void createColumn(Table table, String name, int width) {
+    TableColumn column = new TableColumn(table, SWT.NONE);
+    column.setText(name);
+    column.setWidth(width);
+    column.setResizable(true);
+  }
+
+  private void add(List<DFSSearch.Match> matches, IProgressMonitor monitor) {
+    int room = MAX_RESULTS - count;
+    if (matches.size() > room) {
+      matches = matches.subList(0, Math.max(0, room));
+      monitor.setCanceled(true);
+    }
+    viewer.add(matches.toArray());
+    count += matches.size();
+    status.setText(String.format("%d matches so far", count));
+  }
+
+  private void finished(final Job job, final boolean canceled,
+      final Map<Path, IOException> errors) {
+    Display.getDefault().asyncExec(new Runnable() {
+      public void run() {
+        if ((current != job) || viewer.getControl().isDisposed())
+          return;
+
+        current = null;
+        stopAction.setEnabled(false);
+        if (count >= MAX_RESULTS)
+          status.setText(String.format("Search stopped after %d matches",
+              count));
+        else
+          status.setText(String.format("%d matches%s", count,
+              canceled ? " (search stopped)" : ""));
+
+        if (!errors.isEmpty())
+          ErrorMessageDialog.display("Search in DFS", DFSActionImpl
+              .describeErrors(errors));
+      }
+    });
+  }
+
+  private void open(IStructuredSelection selection) {
+    for (Object obj : selection.toList()) {
+      DFSSearch.Match match = (DFSSearch.Match) obj;
+      if (!(match.getPath() instanceof DFSFile))
+        continue;
+      DFSActionImpl.openEditor(getSite().getPage(), (DFSFile) match
+          .getPath());
+    }
+  }
+
+  /**
+   * Columns of a match
+   */
+  private static class MatchLabelProvider extends LabelProvider implements
+      ITableLabelProvider {
+
+    public Image getColumnImage(Object element, int columnIndex) {
+      return null;
+    }
+
+    public String getColumnText(Object element, int columnIndex) {
+      FileStatus status = ((DFSSearch.Match) element).getStatus();
+      switch (columnIndex) {
+        case 0:
+          return status.getPath().toUri().getPath()
+              + (status.isDir() ? "/" : "");
+        case 1:
+          return status.isDir() ? "" : DFSProgressMonitor.formatSize(status
+              .getLen());
+        case 2:
+          return DateFormat.getDateTimeInstance(DateFormat.SHORT,
+              DateFormat.SHORT).format(
+              new Date(status.getModificationTime()));
+        case 3:
+          return status.getOwner();
+        default:
+          return "";
+      }
+    }
+  }
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.dfs.ui;
+
+import org.eclipse.jface.dialogs.Dialog;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Shell;
+
+/**
+ * Options of a synchronization between a DFS folder and a local directory
+ */
+class DFSSyncDialog extends Dialog {
+
+  private final String title;
+
+  private final String message;
+
+  private Button verifyButton;
+
+  private Button deleteButton;
+
+  private boolean verifyChecksums = false;
+
+  private boolean deleteExtras = false;
+
+  /**
+   * @param shell the parent shell
+   * @param title the title of the dialog
+   * @param message the description of the synchronization
+   */
+  DFSSyncDialog(Shell shell, String title, String message) {
+    super(shell);
+    this.title = title;
+    this.message = message;
+  }
+
+  boolean isVerifyChecksums() {
+    return verifyChecksums;
+  }
+
+  boolean isDeleteExtras() {
+    return deleteExtras;
+  }
+
+  /* @inheritDoc */
+  @Override
+  protected void configureShell(Shell shell) {
+    super.configureShell(shell);
+    shell.setText(title);
+  }
+
+  /* @inheritDoc */
+  @Override
+  protected Control createDialogArea(Composite parent) {
+    Composite area = (Composite) super.createDialogArea(parent);
+    area.setLayout(new GridLayout(1, false));
+
+    new Label(area, SWT.WRAP).setText(message);
+
+    verifyButton = new Button(area, SWT.CHECK);
+    verifyButton
+        .setText("Compare files of the same size by checksum (slower)");
+    verifyButton.setSelection(verifyChecksums);
+
+    deleteButton = new Button(area, SWT.CHECK);
+    deleteButton
+        .setText("Delete destination files missing from the source");
+    deleteButton.setSelection(deleteExtras);
+
+    return area;
+  }
+
+  /* @inheritDoc */
+  @Override
+  protected void okPressed() {
+    verifyChecksums = verifyButton.getSelection();
+    deleteExtras = deleteButton.getSelection();
+    super.okPressed();
+  }
+
+}
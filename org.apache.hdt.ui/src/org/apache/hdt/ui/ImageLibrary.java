@@ -122,9 +122,18 @@ public class ImageLibrary {
     newImage("dfs.browser.action.download", "download.png");
     newImage("dfs.browser.action.upload_files", "upload.png");
     newImage("dfs.browser.action.upload_dir", "upload.png");
+    newImage("dfs.browser.action.sync_to_dfs", "upload.png");
+    newImage("dfs.browser.action.sync_from_dfs", "download.png");
+    newImage("dfs.browser.action.merge_download", "download.png");
+    newImage("dfs.browser.action.search", "files.gif");
+    newImage("dfs.browser.action.disk_usage", "files.gif");
+    newImage("dfs.browser.action.block_report", "files.gif");
+    newSharedImage("dfs.browser.action.copy_to_location",
+        ISharedImages.IMG_TOOL_COPY);
     newSharedImage("dfs.browser.action.delete",
         ISharedImages.IMG_TOOL_DELETE);
     newImage("dfs.browser.action.refresh", "refresh.png");
+    newImage("dfs.browser.action.watch", "refresh.png");
 
     /*
      * Wizards
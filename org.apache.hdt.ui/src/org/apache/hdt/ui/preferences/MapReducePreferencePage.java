@@ -20,6 +20,7 @@ package org.apache.hdt.ui.preferences;
 import org.apache.hdt.ui.Activator;
 import org.eclipse.jface.preference.DirectoryFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
 
@@ -55,6 +56,22 @@ public class MapReducePreferencePage extends FieldEditorPreferencePage
     addField(new DirectoryFieldEditor(PreferenceConstants.P_PATH,
         "&Hadoop installation directory:", getFieldEditorParent()));
 
+    addField(new IntegerFieldEditor(PreferenceConstants.P_DFS_REFRESH_INTERVAL,
+        "DFS browser &refresh interval (ms):", getFieldEditorParent()));
+
+    IntegerFieldEditor minInterval =
+        new IntegerFieldEditor(PreferenceConstants.P_JOB_STATUS_MIN_INTERVAL,
+            "&Job status interval while jobs run (ms):",
+            getFieldEditorParent());
+    minInterval.setValidRange(100, Integer.MAX_VALUE);
+    addField(minInterval);
+
+    IntegerFieldEditor maxInterval =
+        new IntegerFieldEditor(PreferenceConstants.P_JOB_STATUS_MAX_INTERVAL,
+            "Job status interval when &idle (max, ms):",
+            getFieldEditorParent());
+    maxInterval.setValidRange(100, Integer.MAX_VALUE);
+    addField(maxInterval);
   }
 
   /* @inheritDoc */
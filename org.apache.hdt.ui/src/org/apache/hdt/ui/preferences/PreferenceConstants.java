@@ -25,6 +25,26 @@ public class PreferenceConstants {
 
   public static final String P_PATH = "pathPreference";
 
+  /**
+   * Minimum delay in milliseconds between two updates of the DFS browser
+   */
+  public static final String P_DFS_REFRESH_INTERVAL =
+      "dfsRefreshIntervalPreference";
+
+  /**
+   * Delay in milliseconds between two observations of the jobs of a
+   * Map/Reduce location while jobs are running on it
+   */
+  public static final String P_JOB_STATUS_MIN_INTERVAL =
+      "jobStatusMinIntervalPreference";
+
+  /**
+   * Maximum delay in milliseconds between two observations of the jobs of
+   * an idle or unreachable Map/Reduce location
+   */
+  public static final String P_JOB_STATUS_MAX_INTERVAL =
+      "jobStatusMaxIntervalPreference";
+
   // public static final String P_BOOLEAN = "booleanPreference";
   //
   // public static final String P_CHOICE = "choicePreference";
@@ -18,7 +18,10 @@
 
 package org.apache.hdt.ui.preferences;
 
+import org.apache.hdt.core.cluster.LocationStatusScheduler;
+import org.apache.hdt.ui.Activator;
 import org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer;
+import org.eclipse.jface.preference.IPreferenceStore;
 
 /**
  * Class used to initialize default preference values.
@@ -28,6 +31,12 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer {
   /* @inheritDoc */
   @Override
   public void initializeDefaultPreferences() {
+    IPreferenceStore store = Activator.getDefault().getPreferenceStore();
+    store.setDefault(PreferenceConstants.P_DFS_REFRESH_INTERVAL, 50);
+    store.setDefault(PreferenceConstants.P_JOB_STATUS_MIN_INTERVAL,
+        LocationStatusScheduler.DEFAULT_MIN_DELAY);
+    store.setDefault(PreferenceConstants.P_JOB_STATUS_MAX_INTERVAL,
+        LocationStatusScheduler.DEFAULT_MAX_DELAY);
   }
 
 }
@@ -24,17 +24,23 @@ import org.apache.hdt.core.cluster.HadoopCluster;
 import org.apache.hdt.core.cluster.HadoopJob;
 import org.apache.hdt.core.cluster.IHadoopClusterListener;
 import org.apache.hdt.core.cluster.IJobListener;
+import org.apache.hdt.core.cluster.LocationStatusScheduler;
 import org.apache.hdt.core.cluster.ServerRegistry;
 import org.apache.hdt.core.cluster.utils.JarModule;
+import org.apache.hdt.ui.Activator;
 import org.apache.hdt.ui.ImageLibrary;
 import org.apache.hdt.ui.actions.EditLocationAction;
 import org.apache.hdt.ui.actions.NewLocationAction;
+import org.apache.hdt.ui.preferences.PreferenceConstants;
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.action.IAction;
 import org.eclipse.jface.action.IMenuListener;
 import org.eclipse.jface.action.IMenuManager;
 import org.eclipse.jface.action.MenuManager;
 import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.jface.viewers.ILabelProviderListener;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.ISelectionChangedListener;
@@ -53,7 +59,9 @@ import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Menu;
 import org.eclipse.swt.widgets.Tree;
 import org.eclipse.swt.widgets.TreeColumn;
+import org.eclipse.ui.IPartListener2;
 import org.eclipse.ui.IViewSite;
+import org.eclipse.ui.IWorkbenchPartReference;
 import org.eclipse.ui.PartInitException;
 import org.eclipse.ui.actions.ActionFactory;
 import org.eclipse.ui.part.ViewPart;
@@ -126,8 +134,86 @@ public class ClusterView extends ViewPart implements ITreeContentProvider,
 
   private final IAction newLocationAction = new NewLocationAction();
 
+  /**
+   * Shows the task attempts of the selected job
+   */
+  private final IAction showTasksAction = new Action("Show task attempts") {
+    @Override
+    public void run() {
+      ISelection selection =
+          getViewSite().getSelectionProvider().getSelection();
+      if (!(selection instanceof IStructuredSelection))
+        return;
+      Object selItem = ((IStructuredSelection) selection).getFirstElement();
+      if (!(selItem instanceof HadoopJob))
+        return;
+
+      try {
+        TaskView view =
+            (TaskView) getSite().getPage().showView(TaskView.ID);
+        view.show((HadoopJob) selItem);
+
+      } catch (PartInitException pie) {
+        MessageDialog.openError(Display.getDefault().getActiveShell(),
+            "Show task attempts", pie.getMessage());
+      }
+    }
+  };
+
   private TreeViewer viewer;
 
+  /**
+   * Whether this view holds the job status scheduler
+   */
+  private boolean visible = false;
+
+  /**
+   * Applies the job status intervals set in the preferences
+   */
+  private final IPropertyChangeListener preferenceListener =
+      new IPropertyChangeListener() {
+        public void propertyChange(PropertyChangeEvent event) {
+          if (PreferenceConstants.P_JOB_STATUS_MIN_INTERVAL.equals(event
+              .getProperty())
+              || PreferenceConstants.P_JOB_STATUS_MAX_INTERVAL.equals(event
+                  .getProperty()))
+            applyStatusIntervals();
+        }
+      };
+
+  /**
+   * Suspends the observation of the jobs while this view is hidden
+   */
+  private final IPartListener2 partListener = new IPartListener2() {
+    public void partVisible(IWorkbenchPartReference ref) {
+      if (ref.getPart(false) == ClusterView.this)
+        setVisible(true);
+    }
+
+    public void partHidden(IWorkbenchPartReference ref) {
+      if (ref.getPart(false) == ClusterView.this)
+        setVisible(false);
+    }
+
+    public void partActivated(IWorkbenchPartReference ref) {
+    }
+
+    public void partBroughtToTop(IWorkbenchPartReference ref) {
+    }
+
+    public void partClosed(IWorkbenchPartReference ref) {
+    }
+
+    public void partDeactivated(IWorkbenchPartReference ref) {
+    }
+
+    public void partOpened(IWorkbenchPartReference ref) {
+    }
+
+    public void partInputChanged(IWorkbenchPartReference ref) {
+    }
+  };
+
   public ClusterView() {
   }
 
@@ -135,11 +221,19 @@ public class ClusterView extends ViewPart implements ITreeContentProvider,
   @Override
   public void init(IViewSite site) throws PartInitException {
     super.init(site);
+    applyStatusIntervals();
+    Activator.getDefault().getPreferenceStore().addPropertyChangeListener(
+        preferenceListener);
+    site.getPage().addPartListener(partListener);
   }
 
   /* @inheritDoc */
   @Override
   public void dispose() {
+    getSite().getPage().removePartListener(partListener);
+    Activator.getDefault().getPreferenceStore()
+        .removePropertyChangeListener(preferenceListener);
+    setVisible(false);
     ServerRegistry.getInstance().removeListener(this);
   }
 
@@ -189,6 +283,28 @@ public class ClusterView extends ViewPart implements ITreeContentProvider,
 
     createActions();
     createContextMenu();
+    setVisible(true);
+  }
+
+  /*
+   * Observation of the jobs
+   */
+
+  private static void applyStatusIntervals() {
+    IPreferenceStore store = Activator.getDefault().getPreferenceStore();
+    LocationStatusScheduler.getInstance().setDelays(
+        store.getLong(PreferenceConstants.P_JOB_STATUS_MIN_INTERVAL),
+        store.getLong(PreferenceConstants.P_JOB_STATUS_MAX_INTERVAL));
+  }
+
+  private void setVisible(boolean visible) {
+    if (this.visible == visible)
+      return;
+    this.visible = visible;
+    if (visible)
+      LocationStatusScheduler.getInstance().acquire();
+    else
+      LocationStatusScheduler.getInstance().release();
   }
 
   /**
@@ -250,6 +366,10 @@ public class ClusterView extends ViewPart implements ITreeContentProvider,
     mgr.add(newLocationAction);
     mgr.add(editServerAction);
     mgr.add(deleteAction);
+    Object selItem =
+        ((IStructuredSelection) viewer.getSelection()).getFirstElement();
+    if (selItem instanceof HadoopJob)
+      mgr.add(showTasksAction);
     /*
      * mgr.add(new GroupMarker(IWorkbenchActionConstants.MB_ADDITIONS));
      * mgr.add(deleteItemAction); mgr.add(new Separator());
@@ -0,0 +1,266 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hdt.ui.views;
+
+import java.util.List;
+
+import org.apache.hdt.core.cluster.HadoopJob;
+import org.apache.hdt.core.cluster.IJobListener;
+import org.apache.hdt.core.cluster.LocationStatusScheduler;
+import org.apache.hdt.core.cluster.TaskEventLog;
+import org.apache.hdt.core.cluster.utils.JarModule;
+import org.eclipse.jface.viewers.IStructuredContentProvider;
+import org.eclipse.jface.viewers.ITableLabelProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.ui.IPartListener2;
+import org.eclipse.ui.IViewSite;
+import org.eclipse.ui.IWorkbenchPartReference;
+import org.eclipse.ui.PartInitException;
+import org.eclipse.ui.part.ViewPart;
+
+/**
+ * Task attempts of a Map/Reduce job, as reported by its task completion
+ * events. The events received at each update of the job are appended, the
+ * rows already displayed are left alone.
+ */
+public class TaskView extends ViewPart implements IJobListener {
+
+  /**
+   * Identifier of the view, as declared in plugin.xml
+   */
+  public static final String ID = "org.apache.hdt.ui.TaskView";
+
+  private TableViewer viewer;
+
+  /**
+   * The job displayed, null if none
+   */
+  private HadoopJob job;
+
+  /**
+   * Number of events of the job displayed
+   */
+  private int shown = 0;
+
+  /**
+   * Whether this view holds the job status scheduler
+   */
+  private boolean visible = false;
+
+  /**
+   * Keeps the jobs observed while this view is visible, even if the view of
+   * the Map/Reduce locations is hidden
+   */
+  private final IPartListener2 partListener = new IPartListener2() {
+    public void partVisible(IWorkbenchPartReference ref) {
+      if (ref.getPart(false) == TaskView.this)
+        setVisible(true);
+    }
+
+    public void partHidden(IWorkbenchPartReference ref) {
+      if (ref.getPart(false) == TaskView.this)
+        setVisible(false);
+    }
+
+    public void partActivated(IWorkbenchPartReference ref) {
+    }
+
+    public void partBroughtToTop(IWorkbenchPartReference ref) {
+    }
+
+    public void partClosed(IWorkbenchPartReference ref) {
+    }
+
+    public void partDeactivated(IWorkbenchPartReference ref) {
+    }
+
+    public void partOpened(IWorkbenchPartReference ref) {
+    }
+
+    public void partInputChanged(IWorkbenchPartReference ref) {
+    }
+  };
+
+  /* @inheritDoc */
+  @Override
+  public void init(IViewSite site) throws PartInitException {
+    super.init(site);
+    site.getPage().addPartListener(partListener);
+  }
+
+  /* @inheritDoc */
+  @Override
+  public void createPartControl(Composite parent) {
+    Table table =
+        new Table(parent, SWT.MULTI | SWT.FULL_SELECTION | SWT.H_SCROLL
+            | SWT.V_SCROLL);
+    table.setHeaderVisible(true);
+    createColumn(table, "Attempt", 260);
+    createColumn(table, "Type", 70);
+    createColumn(table, "Status", 90);
+    createColumn(table, "Duration", 90);
+    createColumn(table, "TaskTracker", 200);
+
+    viewer = new TableViewer(table);
+    viewer.setContentProvider(new IStructuredContentProvider() {
+      public Object[] getElements(Object input) {
+        return new Object[0];
+      }
+
+      public void inputChanged(Viewer viewer, Object oldInput,
+          Object newInput) {
+      }
+
+      public void dispose() {
+      }
+    });
+    viewer.setLabelProvider(new EventLabelProvider());
+    viewer.setInput(this);
+    getViewSite().setSelectionProvider(viewer);
+    setVisible(true);
+  }
+
+  /* @inheritDoc */
+  @Override
+  public void setFocus() {
+    viewer.getControl().setFocus();
+  }
+
+  /* @inheritDoc */
+  @Override
+  public void dispose() {
+    getSite().getPage().removePartListener(partListener);
+    setVisible(false);
+    if (job != null)
+      job.getLocation().removeJobListener(this);
+    super.dispose();
+  }
+
+  /**
+   * Shows the task attempts of a job, replacing the job displayed
+   *
+   * @param job the job
+   */
+  public void show(HadoopJob job) {
+    if (this.job != null)
+      this.job.getLocation().removeJobListener(this);
+
+    this.job = job;
+    this.shown = 0;
+    viewer.getTable().removeAll();
+    setContentDescription("Task attempts of " + job.getJobID());
+    job.getLocation().addJobListener(this);
+    append();
+  }
+
+  /*
+   * IJobListener implementation
+   */
+
+  /* @inheritDoc */
+  public void jobChanged(HadoopJob job) {
+    if ((job == this.job) && !viewer.getControl().isDisposed())
+      append();
+  }
+
+  /* @inheritDoc */
+  public void jobAdded(HadoopJob job) {
+  }
+
+  /* @inheritDoc */
+  public void jobRemoved(HadoopJob job) {
+  }
+
+  /* @inheritDoc */
+  public void publishStart(JarModule jar) {
+  }
+
+  /* @inheritDoc */
+  public void publishDone(JarModule jar) {
+  }
+
+  /*
+   * Internals
+   */
+
+  private static void createColumn(Table table, String name, int width) {
+    TableColumn column = new TableColumn(table, SWT.NONE);
+    column.setText(name);
+    column.setWidth(width);
+    column.setResizable(true);
+  }
+
+  private void setVisible(boolean visible) {
+    if (this.visible == visible)
+      return;
+    this.visible = visible;
+    if (visible)
+      LocationStatusScheduler.getInstance().acquire();
+    else
+      LocationStatusScheduler.getInstance().release();
+  }
+
+  /**
+   * Appends the events received since the last ones displayed
+   */
+  private void append() {
+    List<TaskEventLog.Event> events = job.getTaskEvents().getEvents(shown);
+    if (events.isEmpty())
+      return;
+    viewer.add(events.toArray());
+    shown += events.size();
+  }
+
+  /**
+   * Columns of a task completion event
+   */
+  private static class EventLabelProvider extends LabelProvider implements
+      ITableLabelProvider {
+
+    public Image getColumnImage(Object element, int columnIndex) {
+      return null;
+    }
+
+    public String getColumnText(Object element, int columnIndex) {
+      TaskEventLog.Event event = (TaskEventLog.Event) element;
+      switch (columnIndex) {
+        case 0:
+          return event.getTaskAttemptId().toString();
+        case 1:
+          return event.isMap() ? "Map" : "Reduce";
+        case 2:
+          return event.getStatus().toString();
+        case 3:
+          return String.format("%.1f s", event.getRunTime() / 1000.0);
+        case 4:
+          return event.getTrackerHost();
+        default:
+          return "";
+      }
+    }
+  }
+
+}